@@ -192,6 +192,65 @@ public class AppConfiguration implements Configuration {
     private Boolean useLocalCache = false;
     private Boolean fapiCompatibility = false;
 
+    private Boolean jwksCacheEnabled = true;
+    private int jwksCacheMinTtl = 60;
+    private int jwksCacheMaxTtl = 86400;
+    private int jwksCacheKidMissRefetchInterval = 30;
+
+    private Boolean sectorIdentifierCacheEnabled = true;
+    private int sectorIdentifierCacheLifetime = 600;
+    private int sectorIdentifierCacheFailureLifetime = 60;
+    private int sectorIdentifierCacheMaxSize = 1000;
+
+    private Boolean requestObjectCacheEnabled = true;
+    private int requestObjectCacheLifetime = 60;
+    private int requestObjectCacheMaxSize = 1000;
+
+    private Boolean userCacheEnabled = false;
+    private int userCacheLifetime = 30;
+    private int userCacheMaxSize = 10000;
+    private Boolean userCacheDistributedInvalidation = false;
+    private int userCacheModificationCheckInterval = 5;
+
+    private int tokenIndexBucketCount = 8;
+
+    private int auditLogQueueCapacity = 10000;
+    private int auditLogBatchSize = 100;
+    private String auditLogOverflowPolicy = "spill";
+    private int auditLogOverflowBlockTimeout = 1000;
+
+    private int backchannelLogoutThreads = 20;
+    private int backchannelLogoutQueueCapacity = 1000;
+    private int backchannelLogoutTimeout = 5000;
+    private int backchannelLogoutRetries = 2;
+    private int backchannelLogoutRetryDelay = 500;
+    private Boolean backchannelLogoutAsynchronous = false;
+
+    private Boolean wellKnownDocumentCacheEnabled = true;
+    private int wellKnownDocumentCacheLifetime = 60;
+    private int wellKnownDocumentMaxAge = 3600;
+
+    private Boolean introspectionCacheEnabled = false;
+    private int introspectionCacheLifetime = 10;
+    private int introspectionCacheMaxSize = 10000;
+
+    private int introspectionBatchMaxSize = 100;
+
+    private int cleanServiceWorkers = 4;
+    private int cleanServiceMaxChunkSize = 10000;
+    private int cleanServiceChunkTargetDuration = 1000;
+    private int cleanServiceRateLimit = 0;
+
+    private Boolean sessionIdLastUsedAtSeparateKey = true;
+    private int sessionIdLastUsedAtGranularity = 5000;
+
+    private int accessTimeFlushInterval = 30;
+    private int accessTimeFlushBatchSize = 1000;
+
+    private Boolean authenticationParallelLookupEnabled = false;
+    private int authenticationParallelLookupThreads = 16;
+    private int authenticationParallelLookupTimeout = 5000;
+
     private AuthenticationProtectionConfiguration authenticationProtectionConfiguration;
     private Fido2Configuration fido2Configuration;
 
@@ -1647,4 +1706,570 @@ public class AppConfiguration implements Configuration {
     public void setCibaEndUserNotificationConfig(CIBAEndUserNotificationConfig cibaEndUserNotificationConfig) {
         this.cibaEndUserNotificationConfig = cibaEndUserNotificationConfig;
     }
-}
\ No newline at end of file
+
+    public Boolean getJwksCacheEnabled() {
+        if (jwksCacheEnabled == null) jwksCacheEnabled = true;
+        return jwksCacheEnabled;
+    }
+
+    public void setJwksCacheEnabled(Boolean jwksCacheEnabled) {
+        this.jwksCacheEnabled = jwksCacheEnabled;
+    }
+
+    /**
+     * Returns lower bound (in seconds) of the lifetime of a cached client JWKS document.
+     * Cache-Control/Expires values returned by the jwks_uri below this bound are ignored.
+     *
+     * @return Minimal lifetime of cached JWKS in seconds.
+     */
+    public int getJwksCacheMinTtl() {
+        return jwksCacheMinTtl;
+    }
+
+    public void setJwksCacheMinTtl(int jwksCacheMinTtl) {
+        this.jwksCacheMinTtl = jwksCacheMinTtl;
+    }
+
+    /**
+     * Returns upper bound (in seconds) of the lifetime of a cached client JWKS document.
+     * It is also used as lifetime when the jwks_uri response has no caching headers.
+     *
+     * @return Maximal lifetime of cached JWKS in seconds.
+     */
+    public int getJwksCacheMaxTtl() {
+        return jwksCacheMaxTtl;
+    }
+
+    public void setJwksCacheMaxTtl(int jwksCacheMaxTtl) {
+        this.jwksCacheMaxTtl = jwksCacheMaxTtl;
+    }
+
+    /**
+     * Returns minimal interval (in seconds) between two refetches of the same jwks_uri caused by unknown kid.
+     *
+     * @return Kid miss refetch interval in seconds.
+     */
+    public int getJwksCacheKidMissRefetchInterval() {
+        return jwksCacheKidMissRefetchInterval;
+    }
+
+    public void setJwksCacheKidMissRefetchInterval(int jwksCacheKidMissRefetchInterval) {
+        this.jwksCacheKidMissRefetchInterval = jwksCacheKidMissRefetchInterval;
+    }
+
+    public Boolean getSectorIdentifierCacheEnabled() {
+        if (sectorIdentifierCacheEnabled == null) sectorIdentifierCacheEnabled = true;
+        return sectorIdentifierCacheEnabled;
+    }
+
+    public void setSectorIdentifierCacheEnabled(Boolean sectorIdentifierCacheEnabled) {
+        this.sectorIdentifierCacheEnabled = sectorIdentifierCacheEnabled;
+    }
+
+    /**
+     * Returns lifetime (in seconds) of a cached sector_identifier_uri document. After it passes the
+     * document is revalidated with a conditional request.
+     *
+     * @return Lifetime of cached sector identifier document in seconds.
+     */
+    public int getSectorIdentifierCacheLifetime() {
+        return sectorIdentifierCacheLifetime;
+    }
+
+    public void setSectorIdentifierCacheLifetime(int sectorIdentifierCacheLifetime) {
+        this.sectorIdentifierCacheLifetime = sectorIdentifierCacheLifetime;
+    }
+
+    /**
+     * Returns lifetime (in seconds) of a cached sector_identifier_uri fetch failure.
+     *
+     * @return Lifetime of cached sector identifier fetch failure in seconds.
+     */
+    public int getSectorIdentifierCacheFailureLifetime() {
+        return sectorIdentifierCacheFailureLifetime;
+    }
+
+    public void setSectorIdentifierCacheFailureLifetime(int sectorIdentifierCacheFailureLifetime) {
+        this.sectorIdentifierCacheFailureLifetime = sectorIdentifierCacheFailureLifetime;
+    }
+
+    public int getSectorIdentifierCacheMaxSize() {
+        return sectorIdentifierCacheMaxSize;
+    }
+
+    public void setSectorIdentifierCacheMaxSize(int sectorIdentifierCacheMaxSize) {
+        this.sectorIdentifierCacheMaxSize = sectorIdentifierCacheMaxSize;
+    }
+
+    public Boolean getRequestObjectCacheEnabled() {
+        if (requestObjectCacheEnabled == null) requestObjectCacheEnabled = true;
+        return requestObjectCacheEnabled;
+    }
+
+    public void setRequestObjectCacheEnabled(Boolean requestObjectCacheEnabled) {
+        this.requestObjectCacheEnabled = requestObjectCacheEnabled;
+    }
+
+    /**
+     * Returns lifetime (in seconds) of request objects fetched from request_uri and of parsed
+     * JWT authorization requests.
+     *
+     * @return Lifetime of cached request objects in seconds.
+     */
+    public int getRequestObjectCacheLifetime() {
+        return requestObjectCacheLifetime;
+    }
+
+    public void setRequestObjectCacheLifetime(int requestObjectCacheLifetime) {
+        this.requestObjectCacheLifetime = requestObjectCacheLifetime;
+    }
+
+    public int getRequestObjectCacheMaxSize() {
+        return requestObjectCacheMaxSize;
+    }
+
+    public void setRequestObjectCacheMaxSize(int requestObjectCacheMaxSize) {
+        this.requestObjectCacheMaxSize = requestObjectCacheMaxSize;
+    }
+
+    /**
+     * Returns whether full user entries loaded by uid or DN are cached in node local cache.
+     *
+     * @return Whether local user cache is enabled.
+     */
+    public Boolean getUserCacheEnabled() {
+        if (userCacheEnabled == null) userCacheEnabled = false;
+        return userCacheEnabled;
+    }
+
+    public void setUserCacheEnabled(Boolean userCacheEnabled) {
+        this.userCacheEnabled = userCacheEnabled;
+    }
+
+    /**
+     * Returns lifetime (in seconds) of user entries in node local cache.
+     *
+     * @return Lifetime of cached user entries in seconds.
+     */
+    public int getUserCacheLifetime() {
+        return userCacheLifetime;
+    }
+
+    public void setUserCacheLifetime(int userCacheLifetime) {
+        this.userCacheLifetime = userCacheLifetime;
+    }
+
+    public int getUserCacheMaxSize() {
+        return userCacheMaxSize;
+    }
+
+    public void setUserCacheMaxSize(int userCacheMaxSize) {
+        this.userCacheMaxSize = userCacheMaxSize;
+    }
+
+    /**
+     * Returns whether user modifications are published via cache provider, so other nodes drop their
+     * local copies of modified user before lifetime ends.
+     *
+     * @return Whether user cache invalidation is propagated to other nodes.
+     */
+    public Boolean getUserCacheDistributedInvalidation() {
+        if (userCacheDistributedInvalidation == null) userCacheDistributedInvalidation = false;
+        return userCacheDistributedInvalidation;
+    }
+
+    public void setUserCacheDistributedInvalidation(Boolean userCacheDistributedInvalidation) {
+        this.userCacheDistributedInvalidation = userCacheDistributedInvalidation;
+    }
+
+    /**
+     * Returns how often cached user is checked for modification on other nodes, so local cache hits don't call
+     * cache provider every time.
+     *
+     * @return Interval in seconds between modification checks of cached user.
+     */
+    public int getUserCacheModificationCheckInterval() {
+        return userCacheModificationCheckInterval;
+    }
+
+    public void setUserCacheModificationCheckInterval(int userCacheModificationCheckInterval) {
+        this.userCacheModificationCheckInterval = userCacheModificationCheckInterval;
+    }
+
+    /**
+     * Returns number of buckets cached client and session token indexes are split into. All nodes of the
+     * cluster must use the same value.
+     *
+     * @return Number of token index buckets.
+     */
+    public int getTokenIndexBucketCount() {
+        return tokenIndexBucketCount;
+    }
+
+    public void setTokenIndexBucketCount(int tokenIndexBucketCount) {
+        this.tokenIndexBucketCount = tokenIndexBucketCount;
+    }
+
+    /**
+     * Returns capacity of in-memory queue of audit log entries waiting to be sent to JMS broker.
+     *
+     * @return Capacity of audit log queue.
+     */
+    public int getAuditLogQueueCapacity() {
+        return auditLogQueueCapacity;
+    }
+
+    public void setAuditLogQueueCapacity(int auditLogQueueCapacity) {
+        this.auditLogQueueCapacity = auditLogQueueCapacity;
+    }
+
+    /**
+     * Returns max number of audit log entries sent to JMS broker in one transaction.
+     *
+     * @return Audit log batch size.
+     */
+    public int getAuditLogBatchSize() {
+        return auditLogBatchSize;
+    }
+
+    public void setAuditLogBatchSize(int auditLogBatchSize) {
+        this.auditLogBatchSize = auditLogBatchSize;
+    }
+
+    /**
+     * Returns what happens with audit log entry when queue is full: "drop" - entry is dropped,
+     * "spill" - entry is written to log file, "block" - caller waits up to auditLogOverflowBlockTimeout
+     * milliseconds and then entry is written to log file.
+     *
+     * @return Audit log overflow policy.
+     */
+    public String getAuditLogOverflowPolicy() {
+        return auditLogOverflowPolicy;
+    }
+
+    public void setAuditLogOverflowPolicy(String auditLogOverflowPolicy) {
+        this.auditLogOverflowPolicy = auditLogOverflowPolicy;
+    }
+
+    public int getAuditLogOverflowBlockTimeout() {
+        return auditLogOverflowBlockTimeout;
+    }
+
+    public void setAuditLogOverflowBlockTimeout(int auditLogOverflowBlockTimeout) {
+        this.auditLogOverflowBlockTimeout = auditLogOverflowBlockTimeout;
+    }
+
+    /**
+     * Returns number of threads delivering back-channel logout requests to RPs.
+     *
+     * @return Number of back-channel logout threads.
+     */
+    public int getBackchannelLogoutThreads() {
+        return backchannelLogoutThreads;
+    }
+
+    public void setBackchannelLogoutThreads(int backchannelLogoutThreads) {
+        this.backchannelLogoutThreads = backchannelLogoutThreads;
+    }
+
+    /**
+     * Returns max number of pending back-channel logout deliveries, deliveries above it are rejected.
+     *
+     * @return Capacity of back-channel logout queue.
+     */
+    public int getBackchannelLogoutQueueCapacity() {
+        return backchannelLogoutQueueCapacity;
+    }
+
+    public void setBackchannelLogoutQueueCapacity(int backchannelLogoutQueueCapacity) {
+        this.backchannelLogoutQueueCapacity = backchannelLogoutQueueCapacity;
+    }
+
+    /**
+     * Returns connect and read timeout (in milliseconds) of one back-channel logout call to RP.
+     *
+     * @return Back-channel logout call timeout in milliseconds.
+     */
+    public int getBackchannelLogoutTimeout() {
+        return backchannelLogoutTimeout;
+    }
+
+    public void setBackchannelLogoutTimeout(int backchannelLogoutTimeout) {
+        this.backchannelLogoutTimeout = backchannelLogoutTimeout;
+    }
+
+    public int getBackchannelLogoutRetries() {
+        return backchannelLogoutRetries;
+    }
+
+    public void setBackchannelLogoutRetries(int backchannelLogoutRetries) {
+        this.backchannelLogoutRetries = backchannelLogoutRetries;
+    }
+
+    /**
+     * Returns delay (in milliseconds) before first retry of failed back-channel logout call, delay is doubled
+     * for each next retry.
+     *
+     * @return Back-channel logout retry delay in milliseconds.
+     */
+    public int getBackchannelLogoutRetryDelay() {
+        return backchannelLogoutRetryDelay;
+    }
+
+    public void setBackchannelLogoutRetryDelay(int backchannelLogoutRetryDelay) {
+        this.backchannelLogoutRetryDelay = backchannelLogoutRetryDelay;
+    }
+
+    /**
+     * Returns whether end_session responds without waiting till back-channel logout calls are delivered.
+     *
+     * @return Whether back-channel logout is delivered asynchronously.
+     */
+    public Boolean getBackchannelLogoutAsynchronous() {
+        if (backchannelLogoutAsynchronous == null) backchannelLogoutAsynchronous = false;
+        return backchannelLogoutAsynchronous;
+    }
+
+    public void setBackchannelLogoutAsynchronous(Boolean backchannelLogoutAsynchronous) {
+        this.backchannelLogoutAsynchronous = backchannelLogoutAsynchronous;
+    }
+
+    /**
+     * Returns whether discovery and JWKS documents are built once and served as pre-encoded bytes till
+     * configuration changes.
+     *
+     * @return Whether well-known documents are cached.
+     */
+    public Boolean getWellKnownDocumentCacheEnabled() {
+        if (wellKnownDocumentCacheEnabled == null) wellKnownDocumentCacheEnabled = true;
+        return wellKnownDocumentCacheEnabled;
+    }
+
+    public void setWellKnownDocumentCacheEnabled(Boolean wellKnownDocumentCacheEnabled) {
+        this.wellKnownDocumentCacheEnabled = wellKnownDocumentCacheEnabled;
+    }
+
+    /**
+     * Returns max lifetime (in seconds) of cached well-known document if configuration is not changed.
+     *
+     * @return Lifetime of cached well-known documents in seconds.
+     */
+    public int getWellKnownDocumentCacheLifetime() {
+        return wellKnownDocumentCacheLifetime;
+    }
+
+    public void setWellKnownDocumentCacheLifetime(int wellKnownDocumentCacheLifetime) {
+        this.wellKnownDocumentCacheLifetime = wellKnownDocumentCacheLifetime;
+    }
+
+    /**
+     * Returns upper bound of Cache-Control max-age (in seconds) of discovery and JWKS responses. If keys
+     * regeneration is enabled max-age does not exceed time left till next key rotation.
+     *
+     * @return Max-age of well-known documents in seconds.
+     */
+    public int getWellKnownDocumentMaxAge() {
+        return wellKnownDocumentMaxAge;
+    }
+
+    public void setWellKnownDocumentMaxAge(int wellKnownDocumentMaxAge) {
+        this.wellKnownDocumentMaxAge = wellKnownDocumentMaxAge;
+    }
+
+    /**
+     * Returns whether introspection responses are cached in node local cache. Cached response is dropped when
+     * token is removed on this node, on other nodes it lives up to introspectionCacheLifetime seconds.
+     *
+     * @return Whether introspection response cache is enabled.
+     */
+    public Boolean getIntrospectionCacheEnabled() {
+        if (introspectionCacheEnabled == null) introspectionCacheEnabled = false;
+        return introspectionCacheEnabled;
+    }
+
+    public void setIntrospectionCacheEnabled(Boolean introspectionCacheEnabled) {
+        this.introspectionCacheEnabled = introspectionCacheEnabled;
+    }
+
+    /**
+     * Returns max lifetime (in seconds) of cached introspection response. Lifetime is also bounded by
+     * expiration of introspected token and token used to call introspection endpoint.
+     *
+     * @return Lifetime of cached introspection responses in seconds.
+     */
+    public int getIntrospectionCacheLifetime() {
+        return introspectionCacheLifetime;
+    }
+
+    public void setIntrospectionCacheLifetime(int introspectionCacheLifetime) {
+        this.introspectionCacheLifetime = introspectionCacheLifetime;
+    }
+
+    public int getIntrospectionCacheMaxSize() {
+        return introspectionCacheMaxSize;
+    }
+
+    public void setIntrospectionCacheMaxSize(int introspectionCacheMaxSize) {
+        this.introspectionCacheMaxSize = introspectionCacheMaxSize;
+    }
+
+    /**
+     * Returns max number of tokens which can be introspected by one call of batch introspection endpoint.
+     *
+     * @return Max number of tokens in batch introspection request.
+     */
+    public int getIntrospectionBatchMaxSize() {
+        return introspectionBatchMaxSize;
+    }
+
+    public void setIntrospectionBatchMaxSize(int introspectionBatchMaxSize) {
+        this.introspectionBatchMaxSize = introspectionBatchMaxSize;
+    }
+
+    /**
+     * Returns number of threads which clean base DNs in parallel.
+     *
+     * @return Number of clean up worker threads.
+     */
+    public int getCleanServiceWorkers() {
+        return cleanServiceWorkers;
+    }
+
+    public void setCleanServiceWorkers(int cleanServiceWorkers) {
+        this.cleanServiceWorkers = cleanServiceWorkers;
+    }
+
+    /**
+     * Returns upper bound of adaptive clean up chunk size. cleanServiceBatchChunkSize is used as initial chunk size.
+     *
+     * @return Max number of entries removed by one clean up chunk.
+     */
+    public int getCleanServiceMaxChunkSize() {
+        return cleanServiceMaxChunkSize;
+    }
+
+    public void setCleanServiceMaxChunkSize(int cleanServiceMaxChunkSize) {
+        this.cleanServiceMaxChunkSize = cleanServiceMaxChunkSize;
+    }
+
+    /**
+     * Returns desired duration (in milliseconds) of one clean up chunk. Chunk size of each base DN is tuned to it,
+     * 0 or negative value keeps chunk size fixed.
+     *
+     * @return Target duration of clean up chunk in milliseconds.
+     */
+    public int getCleanServiceChunkTargetDuration() {
+        return cleanServiceChunkTargetDuration;
+    }
+
+    public void setCleanServiceChunkTargetDuration(int cleanServiceChunkTargetDuration) {
+        this.cleanServiceChunkTargetDuration = cleanServiceChunkTargetDuration;
+    }
+
+    /**
+     * Returns max number of entries removed per second by all clean up workers, 0 or negative value means no limit.
+     *
+     * @return Clean up rate limit in entries per second.
+     */
+    public int getCleanServiceRateLimit() {
+        return cleanServiceRateLimit;
+    }
+
+    public void setCleanServiceRateLimit(int cleanServiceRateLimit) {
+        this.cleanServiceRateLimit = cleanServiceRateLimit;
+    }
+
+    /**
+     * Returns whether session lastUsedAt is written to small separate cache key when nothing else in session
+     * is changed. Session itself is rewritten only when its content is changed. All nodes of cluster must
+     * use the same value.
+     *
+     * @return Whether lastUsedAt of session is kept in separate cache key.
+     */
+    public Boolean getSessionIdLastUsedAtSeparateKey() {
+        if (sessionIdLastUsedAtSeparateKey == null) sessionIdLastUsedAtSeparateKey = true;
+        return sessionIdLastUsedAtSeparateKey;
+    }
+
+    public void setSessionIdLastUsedAtSeparateKey(Boolean sessionIdLastUsedAtSeparateKey) {
+        this.sessionIdLastUsedAtSeparateKey = sessionIdLastUsedAtSeparateKey;
+    }
+
+    /**
+     * Returns min interval (in milliseconds) between two writes of session lastUsedAt. Touches within
+     * interval are coalesced.
+     *
+     * @return Granularity of session lastUsedAt in milliseconds.
+     */
+    public int getSessionIdLastUsedAtGranularity() {
+        return sessionIdLastUsedAtGranularity;
+    }
+
+    public void setSessionIdLastUsedAtGranularity(int sessionIdLastUsedAtGranularity) {
+        this.sessionIdLastUsedAtGranularity = sessionIdLastUsedAtGranularity;
+    }
+
+    /**
+     * Returns interval (in seconds) of writing coalesced oxLastAccessTime/oxLastLogonTime updates of clients and
+     * users. 0 or negative value makes updates written immediately. Change requires restart.
+     *
+     * @return Access time flush interval in seconds.
+     */
+    public int getAccessTimeFlushInterval() {
+        return accessTimeFlushInterval;
+    }
+
+    public void setAccessTimeFlushInterval(int accessTimeFlushInterval) {
+        this.accessTimeFlushInterval = accessTimeFlushInterval;
+    }
+
+    /**
+     * Returns max number of entries written by one flush of access time updates, the rest stay pending.
+     *
+     * @return Max number of access time updates written per flush.
+     */
+    public int getAccessTimeFlushBatchSize() {
+        return accessTimeFlushBatchSize;
+    }
+
+    public void setAccessTimeFlushBatchSize(int accessTimeFlushBatchSize) {
+        this.accessTimeFlushBatchSize = accessTimeFlushBatchSize;
+    }
+
+    /**
+     * If true and more than one authentication backend is configured, user is looked up in all backends at the same
+     * time and bind is done only against the first backend which found the user.
+     */
+    public Boolean getAuthenticationParallelLookupEnabled() {
+        if (authenticationParallelLookupEnabled == null) authenticationParallelLookupEnabled = false;
+        return authenticationParallelLookupEnabled;
+    }
+
+    public void setAuthenticationParallelLookupEnabled(Boolean authenticationParallelLookupEnabled) {
+        this.authenticationParallelLookupEnabled = authenticationParallelLookupEnabled;
+    }
+
+    /**
+     * Size of thread pool used for parallel lookup in authentication backends. Change requires restart.
+     */
+    public int getAuthenticationParallelLookupThreads() {
+        return authenticationParallelLookupThreads;
+    }
+
+    public void setAuthenticationParallelLookupThreads(int authenticationParallelLookupThreads) {
+        this.authenticationParallelLookupThreads = authenticationParallelLookupThreads;
+    }
+
+    /**
+     * Time each authentication backend has to find the user during parallel lookup. Slower backends are cancelled.
+     *
+     * @return Lookup timeout in milliseconds.
+     */
+    public int getAuthenticationParallelLookupTimeout() {
+        return authenticationParallelLookupTimeout;
+    }
+
+    public void setAuthenticationParallelLookupTimeout(int authenticationParallelLookupTimeout) {
+        this.authenticationParallelLookupTimeout = authenticationParallelLookupTimeout;
+    }
+}
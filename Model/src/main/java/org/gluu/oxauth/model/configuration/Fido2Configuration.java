@@ -20,6 +20,7 @@ public class Fido2Configuration {
 
     private int unfinishedRequestExpiration = 120; // 120 seconds
     private int authenticationHistoryExpiration = 15 * 24 * 3600; // 15 days
+    private boolean authenticationHistoryEnabled = true;
 
     private String serverMetadataFolder;
 
@@ -81,6 +82,14 @@ public class Fido2Configuration {
         this.authenticationHistoryExpiration = authenticationHistoryExpiration;
     }
 
+    public boolean isAuthenticationHistoryEnabled() {
+        return authenticationHistoryEnabled;
+    }
+
+    public void setAuthenticationHistoryEnabled(boolean authenticationHistoryEnabled) {
+        this.authenticationHistoryEnabled = authenticationHistoryEnabled;
+    }
+
     public String getServerMetadataFolder() {
         return serverMetadataFolder;
     }
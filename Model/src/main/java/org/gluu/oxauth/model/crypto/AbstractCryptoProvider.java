@@ -5,35 +5,28 @@
  */
 package org.gluu.oxauth.model.crypto;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import org.apache.log4j.Logger;
 import org.gluu.oxauth.model.configuration.AppConfiguration;
 import org.gluu.oxauth.model.crypto.signature.AlgorithmFamily;
-import org.gluu.oxauth.model.crypto.signature.ECEllipticCurve;
 import org.gluu.oxauth.model.crypto.signature.SignatureAlgorithm;
 import org.gluu.oxauth.model.jwk.Algorithm;
 import org.gluu.oxauth.model.jwk.JSONWebKey;
 import org.gluu.oxauth.model.jwk.JSONWebKeySet;
 import org.gluu.oxauth.model.jwk.Use;
-import org.gluu.oxauth.model.util.Base64Util;
 import org.gluu.oxeleven.model.JwksRequestParam;
 import org.gluu.oxeleven.model.KeyRequestParam;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import sun.security.rsa.RSAPublicKeyImpl;
 
-import java.math.BigInteger;
-import java.security.AlgorithmParameters;
-import java.security.KeyFactory;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.spec.ECGenParameterSpec;
-import java.security.spec.ECParameterSpec;
-import java.security.spec.ECPoint;
-import java.security.spec.ECPublicKeySpec;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 import static org.gluu.oxauth.model.jwk.JWKParameter.*;
 
@@ -45,8 +38,14 @@ public abstract class AbstractCryptoProvider {
 
     protected static final Logger LOG = Logger.getLogger(AbstractCryptoProvider.class);
 
+    private static final long KEY_EXPIRATION_CHECK_INTERVAL_IN_MINUTES = 60;
+
     private int keyRegenerationIntervalInDays = -1;
 
+    // Keys which expiration was checked recently, key is alias + expiration time
+    private final Cache<String, Boolean> checkedKeyExpirations = CacheBuilder.newBuilder().maximumSize(1000)
+            .expireAfterWrite(KEY_EXPIRATION_CHECK_INTERVAL_IN_MINUTES, TimeUnit.MINUTES).build();
+
     public JSONObject generateKey(Algorithm algorithm, Long expirationTime) throws Exception {
         return generateKey(algorithm, expirationTime, Use.SIGNATURE);
     }
@@ -188,52 +187,30 @@ public abstract class AbstractCryptoProvider {
     }
 
     public PublicKey getPublicKey(String alias, JSONObject jwks, Algorithm requestedAlgorithm) throws Exception {
-        java.security.PublicKey publicKey = null;
-
-        JSONArray webKeys = jwks.getJSONArray(JSON_WEB_KEY_SET);
-        for (int i = 0; i < webKeys.length(); i++) {
-            JSONObject key = webKeys.getJSONObject(i);
-            if (alias.equals(key.getString(KEY_ID))) {
-                AlgorithmFamily family = null;
-                if (key.has(ALGORITHM)) {
-                    Algorithm algorithm = Algorithm.fromString(key.optString(ALGORITHM));
-
-                    if (requestedAlgorithm != null && algorithm != requestedAlgorithm) {
-                        LOG.trace("kid matched but algorithm does not match. kid algorithm:" + algorithm + ", requestedAlgorithm:" + requestedAlgorithm + ", kid:" + alias);
-                        continue;
-                    }
-                    family = algorithm.getFamily();
-                } else if (key.has(KEY_TYPE)) {
-                    family = AlgorithmFamily.fromString(key.getString(KEY_TYPE));
-                }
-
-                if (AlgorithmFamily.RSA.equals(family)) {
-                    publicKey = new RSAPublicKeyImpl(
-                            new BigInteger(1, Base64Util.base64urldecode(key.getString(MODULUS))),
-                            new BigInteger(1, Base64Util.base64urldecode(key.getString(EXPONENT))));
-                } else if (AlgorithmFamily.EC.equals(family)) {
-                    ECEllipticCurve curve = ECEllipticCurve.fromString(key.optString(CURVE));
-                    AlgorithmParameters parameters = AlgorithmParameters.getInstance(AlgorithmFamily.EC.toString());
-                    parameters.init(new ECGenParameterSpec(curve.getAlias()));
-                    ECParameterSpec ecParameters = parameters.getParameterSpec(ECParameterSpec.class);
-
-                    publicKey = KeyFactory.getInstance(AlgorithmFamily.EC.toString()).generatePublic(new ECPublicKeySpec(
-                            new ECPoint(
-                                    new BigInteger(1, Base64Util.base64urldecode(key.getString(X))),
-                                    new BigInteger(1, Base64Util.base64urldecode(key.getString(Y)))
-                            ), ecParameters));
-                }
-
-                if (key.has(EXPIRATION_TIME)) {
-                    checkKeyExpiration(alias, key.getLong(EXPIRATION_TIME));
-                }
-            }
+        PublicKeyIndex.IndexedPublicKey indexedPublicKey = PublicKeyIndex.of(jwks).getPublicKey(alias, requestedAlgorithm);
+        if (indexedPublicKey == null) {
+            return null;
+        }
+
+        if (indexedPublicKey.getExpirationTime() != null) {
+            checkKeyExpiration(alias, indexedPublicKey.getExpirationTime());
         }
 
-        return publicKey;
+        return indexedPublicKey.getPublicKey();
     }
 
     protected void checkKeyExpiration(String alias, Long expirationTime) {
+        if (expirationTime == null) {
+            return;
+        }
+
+        // Expiration warning is evaluated once per key within check interval
+        final String checkKey = alias + "_" + expirationTime;
+        if (checkedKeyExpirations.getIfPresent(checkKey) != null) {
+            return;
+        }
+        checkedKeyExpirations.put(checkKey, Boolean.TRUE);
+
         try {
             Date expirationDate = new Date(expirationTime);
             SimpleDateFormat ft = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
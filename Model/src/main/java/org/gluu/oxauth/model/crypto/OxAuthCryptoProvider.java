@@ -53,7 +53,9 @@ import java.security.interfaces.RSAPublicKey;
 import java.security.spec.ECGenParameterSpec;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -73,6 +75,12 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
     private String keyStoreSecret;
     private String dnName;
 
+    // Decrypted keys of keystore. It's rebuilt on each keystore change
+    private volatile Map<String, KeyEntry> keyEntries = Collections.emptyMap();
+
+    // Initialized Signature/Mac instances are not thread safe, hence they are reused per thread
+    private final ThreadLocal<CryptoInstances> cryptoInstances = new ThreadLocal<CryptoInstances>();
+
     public OxAuthCryptoProvider() throws Exception {
         this(null, null, null);
     }
@@ -94,6 +102,7 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
                 }
                 final InputStream is = new FileInputStream(keyStoreFile);
                 keyStore.load(is, keyStoreSecret.toCharArray());
+                reloadKeyEntries();
             } catch (Exception e) {
                 LOG.error(e.getMessage(), e);
             }
@@ -105,6 +114,7 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
         try(InputStream is = new FileInputStream(keyStoreFile)) {
             keyStore = KeyStore.getInstance("JKS");
             keyStore.load(is, keyStoreSecret.toCharArray());
+            reloadKeyEntries();
             LOG.debug("Loaded keys from JKS.");
             LOG.trace("Loaded keys:"+ getKeys());
         } catch (Exception e) {
@@ -167,6 +177,7 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
 
         FileOutputStream stream = new FileOutputStream(keyStoreFile);
         keyStore.store(stream, keyStoreSecret.toCharArray());
+        reloadKeyEntries();
 
         PublicKey publicKey = keyPair.getPublic();
 
@@ -218,6 +229,10 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
                 return false;
             }
 
+            if (keyEntries.containsKey(keyId)) {
+                return true;
+            }
+
             return keyStore.getKey(keyId, keyStoreSecret.toCharArray()) != null;
         } catch (Exception e) {
             LOG.error(e.getMessage(), e);
@@ -231,7 +246,7 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
             return "";
         } else if (AlgorithmFamily.HMAC.equals(signatureAlgorithm.getFamily())) {
             SecretKey secretKey = new SecretKeySpec(sharedSecret.getBytes(Util.UTF8_STRING_ENCODING), signatureAlgorithm.getAlgorithm());
-            Mac mac = Mac.getInstance(signatureAlgorithm.getAlgorithm());
+            Mac mac = getCryptoInstances().getMac(signatureAlgorithm.getAlgorithm());
             mac.init(secretKey);
             byte[] sig = mac.doFinal(signingInput.getBytes());
             return Base64Util.base64urlencode(sig);
@@ -245,11 +260,7 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
                 throw new RuntimeException(error);
             }
 
-            Signature signer = Signature.getInstance(signatureAlgorithm.getAlgorithm(), "BC");
-            signer.initSign(privateKey);
-            signer.update(signingInput.getBytes());
-
-            byte[] signature = signer.sign();
+            byte[] signature = sign(alias, privateKey, signatureAlgorithm, signingInput.getBytes());
             if (AlgorithmFamily.EC.equals(signatureAlgorithm.getFamily())) {
             	int signatureLenght = ECDSA.getSignatureByteArrayLength(JWSAlgorithm.parse(signatureAlgorithm.getName()));
                 signature = ECDSA.transcodeSignatureToConcat(signature, signatureLenght);
@@ -287,7 +298,7 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
                 	signatureDer = ECDSA.transcodeSignatureToDER(signatureDer);
                 }
 
-                Signature verifier = Signature.getInstance(signatureAlgorithm.getAlgorithm(), "BC");
+                Signature verifier = getCryptoInstances().getSignature(signatureAlgorithm.getAlgorithm());
                 verifier.initVerify(publicKey);
                 verifier.update(signingInput.getBytes());
                 try {
@@ -329,6 +340,7 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
         keyStore.deleteEntry(alias);
         FileOutputStream stream = new FileOutputStream(keyStoreFile);
         keyStore.store(stream, keyStoreSecret.toCharArray());
+        reloadKeyEntries();
         return true;
     }
 
@@ -340,6 +352,12 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
                 return null;
             }
 
+            KeyEntry keyEntry = keyEntries.get(alias);
+            if (keyEntry != null) {
+                checkKeyExpiration(alias, keyEntry.getExpirationTime());
+                return keyEntry.getPublicKey();
+            }
+
             java.security.cert.Certificate certificate = keyStore.getCertificate(alias);
             if (certificate == null) {
                 return null;
@@ -360,19 +378,22 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
         }
 
         String kid = null;
-        LOG.trace("WebKeys:" + jsonWebKeySet.getKeys().stream().map(JSONWebKey::getKid).collect(Collectors.toList()));
-        LOG.trace("KeyStoreKeys:" + getKeys());
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("WebKeys:" + jsonWebKeySet.getKeys().stream().map(JSONWebKey::getKid).collect(Collectors.toList()));
+            LOG.trace("KeyStoreKeys:" + getKeys());
+        }
         for (JSONWebKey key : jsonWebKeySet.getKeys()) {
             if (algorithm == key.getAlg() && (use == null || use == key.getUse())) {
                 kid = key.getKid();
-                Key keyFromStore = keyStore.getKey(kid, keyStoreSecret.toCharArray());
-                if (keyFromStore != null) {
+                if (keyEntries.containsKey(kid) || keyStore.getKey(kid, keyStoreSecret.toCharArray()) != null) {
                     return kid;
                 }
             }
         }
 
-        LOG.trace("kid is not in keystore, algorithm: " + algorithm + ", kid: " + kid + ", keyStorePath:" + keyStoreFile);
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("kid is not in keystore, algorithm: " + algorithm + ", kid: " + kid + ", keyStorePath:" + keyStoreFile);
+        }
         return kid;
     }
 
@@ -382,6 +403,12 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
             return null;
         }
 
+        KeyEntry keyEntry = keyEntries.get(alias);
+        if (keyEntry != null && keyEntry.getPrivateKey() != null) {
+            checkKeyExpiration(alias, keyEntry.getExpirationTime());
+            return keyEntry.getPrivateKey();
+        }
+
         Key key = keyStore.getKey(alias, keyStoreSecret.toCharArray());
         if (key == null) {
             return null;
@@ -457,6 +484,74 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
     }
 
 
+    private byte[] sign(String alias, PrivateKey privateKey, SignatureAlgorithm signatureAlgorithm, byte[] signingInput) throws Exception {
+        KeyEntry keyEntry = keyEntries.get(alias);
+        if (keyEntry == null || keyEntry.getPrivateKey() != privateKey) {
+            Signature signer = Signature.getInstance(signatureAlgorithm.getAlgorithm(), "BC");
+            signer.initSign(privateKey);
+            signer.update(signingInput);
+            return signer.sign();
+        }
+
+        // Signature returns to state after initSign when signing is done, so it can be reused for the same key
+        final CryptoInstances instances = getCryptoInstances();
+        final Signature signer = instances.getSigner(keyEntry, signatureAlgorithm.getAlgorithm());
+        try {
+            signer.update(signingInput);
+            return signer.sign();
+        } catch (Exception e) {
+            instances.removeSigner(keyEntry, signatureAlgorithm.getAlgorithm());
+            throw e;
+        }
+    }
+
+    private CryptoInstances getCryptoInstances() {
+        CryptoInstances instances = cryptoInstances.get();
+        if (instances == null) {
+            instances = new CryptoInstances();
+            cryptoInstances.set(instances);
+        }
+
+        // Drop signers of rotated keys
+        final Map<String, KeyEntry> currentKeyEntries = keyEntries;
+        if (instances.keyEntries != currentKeyEntries) {
+            instances.signers.clear();
+            instances.signerKeys.clear();
+            instances.keyEntries = currentKeyEntries;
+        }
+
+        return instances;
+    }
+
+    private void reloadKeyEntries() {
+        if (keyStore == null) {
+            return;
+        }
+
+        Map<String, KeyEntry> entries = new HashMap<String, KeyEntry>();
+        try {
+            for (String alias : Collections.list(keyStore.aliases())) {
+                try {
+                    Key key = keyStore.getKey(alias, keyStoreSecret.toCharArray());
+                    java.security.cert.Certificate certificate = keyStore.getCertificate(alias);
+                    if (certificate == null) {
+                        continue;
+                    }
+
+                    PrivateKey privateKey = key instanceof PrivateKey ? (PrivateKey) key : null;
+                    Long expirationTime = certificate instanceof X509Certificate ? ((X509Certificate) certificate).getNotAfter().getTime() : null;
+                    entries.put(alias, new KeyEntry(alias, privateKey, certificate.getPublicKey(), expirationTime));
+                } catch (Exception e) {
+                    LOG.error("Failed to load key: " + alias, e);
+                }
+            }
+        } catch (KeyStoreException e) {
+            LOG.error(e.getMessage(), e);
+        }
+
+        this.keyEntries = Collections.unmodifiableMap(entries);
+    }
+
     private void checkKeyExpiration(String alias) {
         try {
             Date expirationDate = ((X509Certificate) keyStore.getCertificate(alias)).getNotAfter();
@@ -470,4 +565,87 @@ public class OxAuthCryptoProvider extends AbstractCryptoProvider {
         return keyStore;
     }
 
+    private static class KeyEntry {
+
+        private final String alias;
+        private final PrivateKey privateKey;
+        private final PublicKey publicKey;
+        private final Long expirationTime;
+
+        KeyEntry(String alias, PrivateKey privateKey, PublicKey publicKey, Long expirationTime) {
+            this.alias = alias;
+            this.privateKey = privateKey;
+            this.publicKey = publicKey;
+            this.expirationTime = expirationTime;
+        }
+
+        String getAlias() {
+            return alias;
+        }
+
+        PrivateKey getPrivateKey() {
+            return privateKey;
+        }
+
+        PublicKey getPublicKey() {
+            return publicKey;
+        }
+
+        Long getExpirationTime() {
+            return expirationTime;
+        }
+    }
+
+    private static class CryptoInstances {
+
+        private final Map<String, Signature> signatures = new HashMap<String, Signature>();
+        private final Map<String, Mac> macs = new HashMap<String, Mac>();
+        private final Map<String, Signature> signers = new HashMap<String, Signature>();
+
+        // Key entry which signer was initialized with
+        private final Map<String, KeyEntry> signerKeys = new HashMap<String, KeyEntry>();
+
+        private Map<String, KeyEntry> keyEntries;
+
+        Signature getSignature(String algorithm) throws NoSuchAlgorithmException, NoSuchProviderException {
+            Signature signature = signatures.get(algorithm);
+            if (signature == null) {
+                signature = Signature.getInstance(algorithm, "BC");
+                signatures.put(algorithm, signature);
+            }
+
+            return signature;
+        }
+
+        Mac getMac(String algorithm) throws NoSuchAlgorithmException {
+            Mac mac = macs.get(algorithm);
+            if (mac == null) {
+                mac = Mac.getInstance(algorithm);
+                macs.put(algorithm, mac);
+            }
+
+            return mac;
+        }
+
+        Signature getSigner(KeyEntry keyEntry, String algorithm) throws NoSuchAlgorithmException, NoSuchProviderException, InvalidKeyException {
+            final String key = keyEntry.getAlias() + "|" + algorithm;
+
+            Signature signer = signers.get(key);
+            if (signer == null || signerKeys.get(key) != keyEntry) {
+                signer = Signature.getInstance(algorithm, "BC");
+                signer.initSign(keyEntry.getPrivateKey());
+                signers.put(key, signer);
+                signerKeys.put(key, keyEntry);
+            }
+
+            return signer;
+        }
+
+        void removeSigner(KeyEntry keyEntry, String algorithm) {
+            final String key = keyEntry.getAlias() + "|" + algorithm;
+            signers.remove(key);
+            signerKeys.remove(key);
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.model.crypto;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.log4j.Logger;
+import org.gluu.oxauth.model.crypto.signature.AlgorithmFamily;
+import org.gluu.oxauth.model.crypto.signature.ECEllipticCurve;
+import org.gluu.oxauth.model.jwk.Algorithm;
+import org.gluu.oxauth.model.util.Base64Util;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import static org.gluu.oxauth.model.jwk.JWKParameter.*;
+
+/**
+ * Immutable kid index of JWKS document. Public keys are decoded once per kid and algorithm and reused
+ * by all subsequent lookups.
+ * <p>
+ * Indexes are cached by identity of JWKS JSONObject (weak keys), so index lives as long as the JWKS
+ * document instance it was built from. JWKS passed here must not be modified afterwards.
+ */
+public class PublicKeyIndex {
+
+    private static final Logger LOG = Logger.getLogger(PublicKeyIndex.class);
+
+    private static final Cache<JSONObject, PublicKeyIndex> INDEXES = CacheBuilder.newBuilder().weakKeys().maximumSize(10000).build();
+
+    private final Map<String, List<JSONObject>> keysByKid;
+    private final ConcurrentMap<String, IndexedPublicKey> resolvedKeys = new ConcurrentHashMap<String, IndexedPublicKey>();
+
+    private PublicKeyIndex(JSONObject jwks) {
+        Map<String, List<JSONObject>> index = new HashMap<String, List<JSONObject>>();
+
+        JSONArray webKeys = jwks.getJSONArray(JSON_WEB_KEY_SET);
+        for (int i = 0; i < webKeys.length(); i++) {
+            JSONObject key = webKeys.getJSONObject(i);
+            String kid = key.optString(KEY_ID, null);
+            if (kid == null) {
+                continue;
+            }
+
+            List<JSONObject> keys = index.get(kid);
+            if (keys == null) {
+                keys = new ArrayList<JSONObject>(1);
+                index.put(kid, keys);
+            }
+            keys.add(key);
+        }
+
+        this.keysByKid = Collections.unmodifiableMap(index);
+    }
+
+    public static PublicKeyIndex of(final JSONObject jwks) {
+        try {
+            return INDEXES.get(jwks, () -> new PublicKeyIndex(jwks));
+        } catch (ExecutionException e) {
+            throw new IllegalArgumentException("Failed to index JWKS", e.getCause());
+        }
+    }
+
+    public Set<String> getKeyIds() {
+        return keysByKid.keySet();
+    }
+
+    /**
+     * Returns decoded key by kid and algorithm.
+     *
+     * @param alias              kid
+     * @param requestedAlgorithm algorithm of the key, if null any key with specified kid matches
+     * @return indexed key or null if there is no such key in JWKS
+     */
+    public IndexedPublicKey getPublicKey(String alias, Algorithm requestedAlgorithm) throws Exception {
+        // Unknown kids are not memoized, otherwise kids chosen by caller would grow the map without bound
+        if (alias == null || !keysByKid.containsKey(alias)) {
+            return null;
+        }
+
+        final String lookupKey = requestedAlgorithm == null ? alias : alias + "|" + requestedAlgorithm.getParamName();
+        IndexedPublicKey result = resolvedKeys.get(lookupKey);
+        if (result != null) {
+            return result.isEmpty() ? null : result;
+        }
+
+        result = decodePublicKey(alias, requestedAlgorithm);
+        resolvedKeys.putIfAbsent(lookupKey, result);
+
+        return result.isEmpty() ? null : result;
+    }
+
+    private IndexedPublicKey decodePublicKey(String alias, Algorithm requestedAlgorithm) throws Exception {
+        List<JSONObject> keys = keysByKid.get(alias);
+        if (keys == null) {
+            return IndexedPublicKey.EMPTY;
+        }
+
+        PublicKey publicKey = null;
+        Long expirationTime = null;
+        for (JSONObject key : keys) {
+            AlgorithmFamily family = null;
+            if (key.has(ALGORITHM)) {
+                Algorithm algorithm = Algorithm.fromString(key.optString(ALGORITHM));
+
+                if (requestedAlgorithm != null && algorithm != requestedAlgorithm) {
+                    LOG.trace("kid matched but algorithm does not match. kid algorithm:" + algorithm + ", requestedAlgorithm:" + requestedAlgorithm + ", kid:" + alias);
+                    continue;
+                }
+                family = algorithm != null ? algorithm.getFamily() : null;
+            } else if (key.has(KEY_TYPE)) {
+                family = AlgorithmFamily.fromString(key.getString(KEY_TYPE));
+            }
+
+            if (AlgorithmFamily.RSA.equals(family)) {
+                publicKey = KeyFactory.getInstance(AlgorithmFamily.RSA.toString()).generatePublic(new RSAPublicKeySpec(
+                        new BigInteger(1, Base64Util.base64urldecode(key.getString(MODULUS))),
+                        new BigInteger(1, Base64Util.base64urldecode(key.getString(EXPONENT)))));
+            } else if (AlgorithmFamily.EC.equals(family)) {
+                ECEllipticCurve curve = ECEllipticCurve.fromString(key.optString(CURVE));
+                AlgorithmParameters parameters = AlgorithmParameters.getInstance(AlgorithmFamily.EC.toString());
+                parameters.init(new ECGenParameterSpec(curve.getAlias()));
+                ECParameterSpec ecParameters = parameters.getParameterSpec(ECParameterSpec.class);
+
+                publicKey = KeyFactory.getInstance(AlgorithmFamily.EC.toString()).generatePublic(new ECPublicKeySpec(
+                        new ECPoint(
+                                new BigInteger(1, Base64Util.base64urldecode(key.getString(X))),
+                                new BigInteger(1, Base64Util.base64urldecode(key.getString(Y)))
+                        ), ecParameters));
+            }
+
+            if (key.has(EXPIRATION_TIME)) {
+                expirationTime = key.getLong(EXPIRATION_TIME);
+            }
+        }
+
+        if (publicKey == null && expirationTime == null) {
+            return IndexedPublicKey.EMPTY;
+        }
+
+        return new IndexedPublicKey(publicKey, expirationTime);
+    }
+
+    public static class IndexedPublicKey {
+
+        private static final IndexedPublicKey EMPTY = new IndexedPublicKey(null, null);
+
+        private final PublicKey publicKey;
+        private final Long expirationTime;
+
+        private IndexedPublicKey(PublicKey publicKey, Long expirationTime) {
+            this.publicKey = publicKey;
+            this.expirationTime = expirationTime;
+        }
+
+        public PublicKey getPublicKey() {
+            return publicKey;
+        }
+
+        public Long getExpirationTime() {
+            return expirationTime;
+        }
+
+        private boolean isEmpty() {
+            return this == EMPTY;
+        }
+    }
+}
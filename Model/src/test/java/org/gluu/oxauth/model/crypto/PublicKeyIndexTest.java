@@ -0,0 +1,80 @@
+package org.gluu.oxauth.model.crypto;
+
+import org.gluu.oxauth.model.jwk.Algorithm;
+import org.gluu.oxauth.model.util.Base64Util;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.annotations.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+
+import static org.gluu.oxauth.model.jwk.JWKParameter.*;
+import static org.testng.Assert.*;
+
+public class PublicKeyIndexTest {
+
+    @Test
+    public void decodedKeyIsReused() throws Exception {
+        RSAPublicKey rsaPublicKey = generateRsaPublicKey();
+        JSONObject jwks = jwks(rsaKey("kid1", Algorithm.RS256, rsaPublicKey));
+
+        PublicKeyIndex index = PublicKeyIndex.of(jwks);
+        assertSame(PublicKeyIndex.of(jwks), index);
+
+        PublicKeyIndex.IndexedPublicKey key = index.getPublicKey("kid1", Algorithm.RS256);
+        assertNotNull(key);
+        assertEquals(key.getPublicKey().getEncoded(), rsaPublicKey.getEncoded());
+        assertSame(index.getPublicKey("kid1", Algorithm.RS256), key);
+        assertNotNull(index.getPublicKey("kid1", null));
+    }
+
+    @Test
+    public void unknownKidOrAlgorithm() throws Exception {
+        JSONObject jwks = jwks(rsaKey("kid1", Algorithm.RS256, generateRsaPublicKey()));
+
+        PublicKeyIndex index = PublicKeyIndex.of(jwks);
+        assertNull(index.getPublicKey("kid2", Algorithm.RS256));
+        assertNull(index.getPublicKey("kid1", Algorithm.RS512));
+    }
+
+    @Test
+    public void indexFollowsDocumentIdentity() throws Exception {
+        JSONObject key = rsaKey("kid1", Algorithm.RS256, generateRsaPublicKey());
+
+        JSONObject jwks1 = jwks(key);
+        JSONObject jwks2 = new JSONObject(jwks1.toString());
+
+        assertNotSame(PublicKeyIndex.of(jwks1), PublicKeyIndex.of(jwks2));
+        assertEquals(PublicKeyIndex.of(jwks2).getKeyIds().size(), 1);
+    }
+
+    private static RSAPublicKey generateRsaPublicKey() throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
+        keyGen.initialize(2048);
+        KeyPair keyPair = keyGen.generateKeyPair();
+        return (RSAPublicKey) keyPair.getPublic();
+    }
+
+    private static JSONObject rsaKey(String kid, Algorithm algorithm, RSAPublicKey publicKey) {
+        JSONObject key = new JSONObject();
+        key.put(KEY_TYPE, "RSA");
+        key.put(KEY_ID, kid);
+        key.put(ALGORITHM, algorithm.getParamName());
+        key.put(MODULUS, Base64Util.base64urlencodeUnsignedBigInt(publicKey.getModulus()));
+        key.put(EXPONENT, Base64Util.base64urlencodeUnsignedBigInt(publicKey.getPublicExponent()));
+        return key;
+    }
+
+    private static JSONObject jwks(JSONObject... keys) {
+        JSONArray array = new JSONArray();
+        for (JSONObject key : keys) {
+            array.put(key);
+        }
+
+        JSONObject jwks = new JSONObject();
+        jwks.put(JSON_WEB_KEY_SET, array);
+        return jwks;
+    }
+}
@@ -58,12 +58,27 @@ class PersonAuthentication(PersonAuthenticationType):
             crl_max_response_size = StringHelper.toInteger(configurationAttributes.get("crl_max_response_size").getValue2(), crl_max_response_size)
             print "Cert. Initialization. CRL max response size is '%d'" % crl_max_response_size
 
+        crl_cache_size = 10
+        if configurationAttributes.containsKey("crl_cache_size"):
+            crl_cache_size = StringHelper.toInteger(configurationAttributes.get("crl_cache_size").getValue2(), crl_cache_size)
+            print "Cert. Initialization. CRL cache size is '%d'" % crl_cache_size
+
+        crl_folder = None
+        if configurationAttributes.containsKey("crl_folder"):
+            crl_folder = configurationAttributes.get("crl_folder").getValue2()
+            print "Cert. Initialization. CRL folder is '%s'" % crl_folder
+
+        ocsp_cache_size = 10000
+        if configurationAttributes.containsKey("ocsp_cache_size"):
+            ocsp_cache_size = StringHelper.toInteger(configurationAttributes.get("ocsp_cache_size").getValue2(), ocsp_cache_size)
+            print "Cert. Initialization. OCSP cache size is '%d'" % ocsp_cache_size
+
         # Define array to order methods correctly
         self.validator_types = [ 'generic', 'path', 'ocsp', 'crl']
         self.validators = { 'generic' : [GenericCertificateVerifier(), False],
                             'path' : [PathCertificateVerifier(False), False],
-                            'ocsp' : [OCSPCertificateVerifier(), False],
-                            'crl' : [CRLCertificateVerifier(crl_max_response_size), False] }
+                            'ocsp' : [OCSPCertificateVerifier(ocsp_cache_size), False],
+                            'crl' : [CRLCertificateVerifier(crl_max_response_size, crl_cache_size, crl_folder), False] }
 
         for type in self.validator_types:
             validator_param_name = "use_%s_validator" % type
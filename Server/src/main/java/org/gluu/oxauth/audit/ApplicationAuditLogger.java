@@ -1,9 +1,16 @@
 package org.gluu.oxauth.audit;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.annotation.PostConstruct;
@@ -18,21 +25,30 @@ import javax.jms.MessageProducer;
 import javax.jms.QueueConnection;
 import javax.jms.QueueSession;
 import javax.jms.Session;
-import javax.jms.TextMessage;
 
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.apache.activemq.pool.PooledConnectionFactory;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.BooleanUtils;
+import org.apache.commons.lang.StringUtils;
 import org.gluu.oxauth.model.audit.OAuth2AuditLog;
 import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.gluu.oxauth.service.MetricService;
 import org.gluu.oxauth.util.ServerUtil;
-import org.gluu.service.cdi.async.Asynchronous;
 import org.gluu.service.cdi.event.ConfigurationUpdate;
 import org.slf4j.Logger;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.base.Objects;
 
+/**
+ * Sends audit log entries to JMS broker. Request threads only put entries into bounded in-memory queue,
+ * dedicated sender thread drains it and sends entries in transacted batches over long-lived session and
+ * producer. When queue is full entry is handled according to auditLogOverflowPolicy.
+ */
 @Named
 @ApplicationScoped
 @DependsOn("appInitializer")
@@ -43,9 +59,18 @@ public class ApplicationAuditLogger {
 
 	private final String BROKER_URL_PREFIX = "failover:(";
 	private final String BROKER_URL_SUFFIX = ")?timeout=5000&jms.useAsyncSend=true";
-	private final int ACK_MODE = Session.AUTO_ACKNOWLEDGE;
 	private final String CLIENT_QUEUE_NAME = "oauth2.audit.logging";
-	private final boolean transacted = false;
+
+	private static final String OVERFLOW_POLICY_DROP = "drop";
+	private static final String OVERFLOW_POLICY_BLOCK = "block";
+
+	private static final String METRIC_QUEUE_DEPTH = "audit_log_queue_depth";
+	private static final String METRIC_DROPPED = "audit_log_dropped";
+	private static final String METRIC_SPILLED = "audit_log_spilled";
+	private static final String METRIC_SEND = "audit_log_send";
+
+	private static final ObjectWriter JSON_WRITER = ServerUtil.createJsonMapper()
+			.configure(SerializationFeature.WRAP_ROOT_VALUE, false).writer();
 
 	private volatile PooledConnectionFactory pooledConnectionFactory;
 
@@ -56,42 +81,221 @@ public class ApplicationAuditLogger {
 	@Inject
 	private AppConfiguration appConfiguration;
 
+	@Inject
+	private MetricService metricService;
+
 	private final ReentrantLock lock = new ReentrantLock();
 
 	private boolean updateState;
 	private Boolean enabledOAuthAuditnLogging;
 
+	private final ReentrantLock senderLock = new ReentrantLock();
+	private volatile BlockingQueue<OAuth2AuditLog> queue;
+	private ExecutorService sender;
+	private volatile boolean stopped;
+
+	// Accessed only from sender thread
+	private QueueConnection senderConnection;
+	private QueueSession senderSession;
+	private MessageProducer senderProducer;
+
 	public void updateConfiguration(@Observes @ConfigurationUpdate AppConfiguration appConfiguration) {
 		this.updateState = true;
 	}
 
     @PostConstruct
 	public void init() {
+		metricService.registerComponentGauge(METRIC_QUEUE_DEPTH, new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				final BlockingQueue<OAuth2AuditLog> current = queue;
+				return current != null ? current.size() : 0;
+			}
+		});
+
 		if (BooleanUtils.isNotTrue(isEnabledOAuthAuditnLogging())) {
 			return;
 		}
 
 		tryToEstablishJMSConnection();
+		startSender();
 	}
 
-	@Asynchronous
 	public void sendMessage(OAuth2AuditLog oAuth2AuditLog) {
 		if (BooleanUtils.isNotTrue(isEnabledOAuthAuditnLogging())) {
 			return;
 		}
 
-		if ((this.pooledConnectionFactory == null) || isJmsConfigChanged()) {
-			if (tryToEstablishJMSConnection())
-				loggingThroughJMS(oAuth2AuditLog);
-			else
-				loggingThroughFile(oAuth2AuditLog);
-		} else {
-			loggingThroughJMS(oAuth2AuditLog);
+		final BlockingQueue<OAuth2AuditLog> queue = startSender();
+		if (queue == null) {
+			loggingThroughFile(oAuth2AuditLog);
+			return;
 		}
+
+		if (!queue.offer(oAuth2AuditLog)) {
+			handleOverflow(queue, oAuth2AuditLog);
+		}
+	}
+
+	private void handleOverflow(BlockingQueue<OAuth2AuditLog> queue, OAuth2AuditLog oAuth2AuditLog) {
+		final String policy = StringUtils.defaultString(appConfiguration.getAuditLogOverflowPolicy()).trim();
+		if (OVERFLOW_POLICY_DROP.equalsIgnoreCase(policy)) {
+			metricService.getComponentCounter(METRIC_DROPPED).inc();
+			log.trace("Audit log queue is full, entry is dropped");
+			return;
+		}
+
+		if (OVERFLOW_POLICY_BLOCK.equalsIgnoreCase(policy)) {
+			try {
+				if (queue.offer(oAuth2AuditLog, appConfiguration.getAuditLogOverflowBlockTimeout(), TimeUnit.MILLISECONDS)) {
+					return;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		metricService.getComponentCounter(METRIC_SPILLED).inc();
+		loggingThroughFile(oAuth2AuditLog);
 	}
 
 	@PreDestroy
 	public void destroy() {
+		stopSender();
+		closeConnectionFactory();
+	}
+
+	private BlockingQueue<OAuth2AuditLog> startSender() {
+		if (this.queue != null || this.stopped) {
+			return this.queue;
+		}
+
+		senderLock.lock();
+		try {
+			if (this.queue == null && !this.stopped) {
+				final BlockingQueue<OAuth2AuditLog> newQueue = new ArrayBlockingQueue<OAuth2AuditLog>(Math.max(1, appConfiguration.getAuditLogQueueCapacity()));
+				this.sender = Executors.newSingleThreadExecutor(ServerUtil.daemonThreadFactory());
+				this.sender.execute(() -> sendLoop(newQueue));
+				this.queue = newQueue;
+			}
+			return this.queue;
+		} finally {
+			senderLock.unlock();
+		}
+	}
+
+	private void stopSender() {
+		senderLock.lock();
+		try {
+			this.stopped = true;
+			if (this.sender == null) {
+				return;
+			}
+
+			this.sender.shutdownNow();
+			try {
+				if (!this.sender.awaitTermination(5, TimeUnit.SECONDS)) {
+					log.warn("Audit log sender did not stop in time, not sent entries: {}", this.queue.size());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.sender = null;
+		} finally {
+			senderLock.unlock();
+		}
+	}
+
+	private void sendLoop(BlockingQueue<OAuth2AuditLog> queue) {
+		final List<OAuth2AuditLog> batch = new ArrayList<OAuth2AuditLog>();
+		while (!this.stopped || !queue.isEmpty()) {
+			try {
+				final OAuth2AuditLog first = queue.poll(1, TimeUnit.SECONDS);
+				if (first == null) {
+					continue;
+				}
+
+				batch.add(first);
+				queue.drainTo(batch, Math.max(1, appConfiguration.getAuditLogBatchSize()) - 1);
+				sendBatch(batch);
+			} catch (InterruptedException e) {
+				// Stop is requested, remaining entries are sent before exit
+			} catch (Exception e) {
+				log.error("Failed to send audit log batch", e);
+			} finally {
+				batch.clear();
+			}
+		}
+		closeSender();
+	}
+
+	private void sendBatch(List<OAuth2AuditLog> batch) {
+		final Timer.Context timerContext = metricService.getComponentTimer(METRIC_SEND).time();
+		try {
+			if (!prepareSender()) {
+				for (OAuth2AuditLog oAuth2AuditLog : batch) {
+					loggingThroughFile(oAuth2AuditLog);
+				}
+				return;
+			}
+
+			for (OAuth2AuditLog oAuth2AuditLog : batch) {
+				final String message;
+				try {
+					message = JSON_WRITER.writeValueAsString(oAuth2AuditLog);
+				} catch (IOException e) {
+					log.error("Can't serialize the audit log", e);
+					continue;
+				}
+				senderProducer.send(senderSession.createTextMessage(message));
+			}
+			senderSession.commit();
+		} catch (Exception e) {
+			log.error("Can't send message, please check your activeMQ configuration.", e);
+			closeSender();
+
+			for (OAuth2AuditLog oAuth2AuditLog : batch) {
+				loggingThroughFile(oAuth2AuditLog);
+			}
+		} finally {
+			timerContext.stop();
+		}
+	}
+
+	private boolean prepareSender() throws JMSException {
+		if ((this.pooledConnectionFactory == null) || isJmsConfigChanged()) {
+			closeSender();
+			if (!tryToEstablishJMSConnection()) {
+				return false;
+			}
+		}
+
+		if (this.senderProducer == null) {
+			this.senderConnection = pooledConnectionFactory.createQueueConnection();
+			this.senderConnection.start();
+
+			this.senderSession = this.senderConnection.createQueueSession(true, Session.SESSION_TRANSACTED);
+			this.senderProducer = this.senderSession.createProducer(this.senderSession.createQueue(CLIENT_QUEUE_NAME));
+		}
+		return true;
+	}
+
+	private void closeSender() {
+		this.senderProducer = null;
+		this.senderSession = null;
+		if (this.senderConnection == null) {
+			return;
+		}
+
+		try {
+			this.senderConnection.close();
+		} catch (JMSException e) {
+			log.error("Can't close connection.");
+		}
+		this.senderConnection = null;
+	}
+
+	private void closeConnectionFactory() {
 		if (this.pooledConnectionFactory == null)
 			return;
 		this.pooledConnectionFactory.clear();
@@ -102,7 +306,7 @@ public class ApplicationAuditLogger {
 		lock.lock();
 		try {
 			// Check if another thread init JMS pool already
-			if ((this.pooledConnectionFactory != null) && !isJmsConfigChanged()) {
+			if ((this.pooledConnectionFactory == null) || isJmsConfigChanged()) {
 				return tryToEstablishJMSConnectionImpl();
 			}
 
@@ -113,7 +317,7 @@ public class ApplicationAuditLogger {
 	}
 
 	private boolean tryToEstablishJMSConnectionImpl() {
-		destroy();
+		closeConnectionFactory();
 
 		Set<String> jmsBrokerURISet = getJmsBrokerURISet();
 		if (BooleanUtils.isNotTrue(isEnabledOAuthAuditnLogging()) || CollectionUtils.isEmpty(jmsBrokerURISet))
@@ -147,38 +351,9 @@ public class ApplicationAuditLogger {
 		return true;
 	}
 
-	private void loggingThroughJMS(OAuth2AuditLog oAuth2AuditLog) {
-		QueueConnection connection = null;
-		try {
-			connection = pooledConnectionFactory.createQueueConnection();
-			connection.start();
-
-			QueueSession session = connection.createQueueSession(transacted, ACK_MODE);
-			MessageProducer producer = session.createProducer(session.createQueue(CLIENT_QUEUE_NAME));
-
-			TextMessage txtMessage = session.createTextMessage();
-			txtMessage.setText(ServerUtil.asPrettyJson(oAuth2AuditLog));
-			producer.send(txtMessage);
-		} catch (JMSException e) {
-			log.error("Can't send message", e);
-		} catch (IOException e) {
-			log.error("Can't serialize the audit log", e);
-		} catch (Exception e) {
-			log.error("Can't send message, please check your activeMQ configuration.", e);
-		} finally {
-			if (connection == null)
-				return;
-			try {
-				connection.close();
-			} catch (JMSException e) {
-				log.error("Can't close connection.");
-			}
-		}
-	}
-
 	private void loggingThroughFile(OAuth2AuditLog oAuth2AuditLog) {
 		try {
-			log.info(ServerUtil.asPrettyJson(oAuth2AuditLog));
+			log.info(JSON_WRITER.writeValueAsString(oAuth2AuditLog));
 		} catch (IOException e) {
 			log.error("Can't serialize the audit log", e);
 		}
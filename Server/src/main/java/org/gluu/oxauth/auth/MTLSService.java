@@ -1,6 +1,5 @@
 package org.gluu.oxauth.auth;
 
-import com.google.common.base.Strings;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.gluu.oxauth.model.authorize.AuthorizeRequestParam;
@@ -15,7 +14,7 @@ import org.gluu.oxauth.model.jwk.JSONWebKeySet;
 import org.gluu.oxauth.model.registration.Client;
 import org.gluu.oxauth.model.token.TokenErrorResponseType;
 import org.gluu.oxauth.model.util.CertUtils;
-import org.gluu.oxauth.model.util.JwtUtil;
+import org.gluu.oxauth.service.JwksCacheService;
 import org.gluu.oxauth.service.SessionIdService;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -56,6 +55,9 @@ public class MTLSService {
     @Inject
     private ErrorResponseFactory errorResponseFactory;
 
+    @Inject
+    private JwksCacheService jwksCacheService;
+
     public boolean processMTLS(HttpServletRequest httpRequest, HttpServletResponse httpResponse, FilterChain filterChain, Client client) throws Exception {
         log.debug("Trying to authenticate client {} via {} ...", client.getClientId(),
                 client.getAuthenticationMethod());
@@ -102,9 +104,7 @@ public class MTLSService {
             final PublicKey publicKey = cert.getPublicKey();
             final byte[] encodedKey = publicKey.getEncoded();
 
-            JSONObject jsonWebKeys = Strings.isNullOrEmpty(client.getJwks())
-                    ? JwtUtil.getJSONWebKeys(client.getJwksUri())
-                    : new JSONObject(client.getJwks());
+            JSONObject jsonWebKeys = jwksCacheService.getJwks(client, null);
 
             if (jsonWebKeys == null) {
                 log.debug("Unable to load json web keys for client: {}, jwks_uri: {}, jks: {}", client.getClientId(),
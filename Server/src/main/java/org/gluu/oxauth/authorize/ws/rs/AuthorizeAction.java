@@ -18,7 +18,6 @@ import org.gluu.oxauth.model.authorize.*;
 import org.gluu.oxauth.model.common.*;
 import org.gluu.oxauth.model.config.Constants;
 import org.gluu.oxauth.model.configuration.AppConfiguration;
-import org.gluu.oxauth.model.crypto.AbstractCryptoProvider;
 import org.gluu.oxauth.model.error.ErrorResponseFactory;
 import org.gluu.oxauth.model.exception.AcrChangedException;
 import org.gluu.oxauth.model.exception.InvalidJweException;
@@ -26,8 +25,6 @@ import org.gluu.oxauth.model.exception.InvalidJwtException;
 import org.gluu.oxauth.model.jwt.JwtClaimName;
 import org.gluu.oxauth.model.ldap.ClientAuthorization;
 import org.gluu.oxauth.model.registration.Client;
-import org.gluu.oxauth.model.util.Base64Util;
-import org.gluu.oxauth.model.util.JwtUtil;
 import org.gluu.oxauth.model.util.LocaleUtil;
 import org.gluu.oxauth.model.util.Util;
 import org.gluu.oxauth.service.*;
@@ -37,8 +34,6 @@ import org.gluu.oxauth.util.ServerUtil;
 import org.gluu.persist.exception.EntryPersistenceException;
 import org.gluu.service.net.NetworkService;
 import org.gluu.util.StringHelper;
-import org.jboss.resteasy.client.ClientRequest;
-import org.jboss.resteasy.client.ClientResponse;
 import org.slf4j.Logger;
 import org.gluu.oxauth.model.common.User;
 import org.gluu.oxauth.service.UserService;
@@ -51,15 +46,10 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.MediaType;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URLEncoder;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.util.*;
 
 /**
@@ -77,6 +67,9 @@ public class AuthorizeAction {
     @Inject
     private ClientService clientService;
 
+    @Inject
+    private RequestObjectService requestObjectService;
+
     @Inject
     private ErrorResponseFactory errorResponseFactory;
 
@@ -137,9 +130,6 @@ public class AuthorizeAction {
     @Inject
     private ErrorHandlerService errorHandlerService;
 
-    @Inject
-    private AbstractCryptoProvider cryptoProvider;
-
     // OAuth 2.0 request parameters
     private String scope;
     private String responseType;
@@ -398,36 +388,7 @@ public class AuthorizeAction {
 
         if (StringUtils.isBlank(requestJwt) && StringUtils.isNotBlank(requestUri)) {
             try {
-                URI reqUri = new URI(requestUri);
-                String reqUriHash = reqUri.getFragment();
-                String reqUriWithoutFragment = reqUri.getScheme() + ":" + reqUri.getSchemeSpecificPart();
-
-                ClientRequest clientRequest = new ClientRequest(reqUriWithoutFragment);
-                clientRequest.setHttpMethod(HttpMethod.GET);
-
-                ClientResponse<String> clientResponse = clientRequest.get(String.class);
-                int status = clientResponse.getStatus();
-
-                if (status == 200) {
-                    String entity = clientResponse.getEntity(String.class);
-
-                    if (StringUtils.isBlank(reqUriHash)) {
-                        requestJwt = entity;
-                    } else {
-                        String hash = Base64Util.base64urlencode(JwtUtil.getMessageDigestSHA256(entity));
-                        if (StringUtils.equals(reqUriHash, hash)) {
-                            requestJwt = entity;
-                        }
-                    }
-                }
-            } catch (NoSuchAlgorithmException e) {
-                log.error(e.getMessage(), e);
-            } catch (URISyntaxException e) {
-                log.error(e.getMessage(), e);
-            } catch (UnsupportedEncodingException e) {
-                log.error(e.getMessage(), e);
-            } catch (NoSuchProviderException e) {
-                log.error(e.getMessage(), e);
+                requestJwt = requestObjectService.getRequestObject(requestUri);
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
             }
@@ -438,7 +399,7 @@ public class AuthorizeAction {
                 Client client = clientService.getClient(clientId);
 
                 if (client != null) {
-                    JwtAuthorizationRequest jwtAuthorizationRequest = new JwtAuthorizationRequest(appConfiguration, cryptoProvider, request, client);
+                    JwtAuthorizationRequest jwtAuthorizationRequest = requestObjectService.getJwtAuthorizationRequest(requestJwt, client);
 
                     if (jwtAuthorizationRequest.getUserInfoMember() != null) {
                         for (Claim claim : jwtAuthorizationRequest.getUserInfoMember().getClaims()) {
@@ -32,8 +32,6 @@ import org.gluu.oxauth.model.exception.InvalidSessionStateException;
 import org.gluu.oxauth.model.jwt.JwtClaimName;
 import org.gluu.oxauth.model.ldap.ClientAuthorization;
 import org.gluu.oxauth.model.registration.Client;
-import org.gluu.oxauth.model.util.Base64Util;
-import org.gluu.oxauth.model.util.JwtUtil;
 import org.gluu.oxauth.model.util.Util;
 import org.gluu.oxauth.security.Identity;
 import org.gluu.oxauth.service.*;
@@ -43,8 +41,6 @@ import org.gluu.oxauth.util.RedirectUtil;
 import org.gluu.oxauth.util.ServerUtil;
 import org.gluu.persist.exception.EntryPersistenceException;
 import org.gluu.util.StringHelper;
-import org.jboss.resteasy.client.ClientRequest;
-import org.jboss.resteasy.client.ClientResponse;
 import org.slf4j.Logger;
 
 import javax.inject.Inject;
@@ -128,6 +124,9 @@ public class AuthorizeRestWebServiceImpl implements AuthorizeRestWebService {
     @Inject
     private CIBAPushTokenDeliveryProxy cibaPushTokenDeliveryProxy;
 
+    @Inject
+    private RequestObjectService requestObjectService;
+
     @Context
     private HttpServletRequest servletRequest;
 
@@ -610,30 +609,10 @@ public class AuthorizeRestWebServiceImpl implements AuthorizeRestWebService {
     private JwtAuthorizationRequest createJwtRequest(String request, String requestUri, Client client, RedirectUriResponse redirectUriResponse) throws InvalidJwtException, InvalidJweException {
 
         if (StringUtils.isNotBlank(requestUri)) {
-            boolean validRequestUri = false;
             try {
-                URI reqUri = new URI(requestUri);
-                String reqUriHash = reqUri.getFragment();
-                String reqUriWithoutFragment = reqUri.getScheme() + ":" + reqUri.getSchemeSpecificPart();
-
-                ClientRequest clientRequest = new ClientRequest(reqUriWithoutFragment);
-                clientRequest.setHttpMethod(HttpMethod.GET);
-
-                ClientResponse<String> clientResponse = clientRequest.get(String.class);
-                int status = clientResponse.getStatus();
-
-                if (status == 200) {
-                    request = clientResponse.getEntity(String.class);
-
-                    if (StringUtils.isBlank(reqUriHash)) {
-                        validRequestUri = true;
-                    } else {
-                        String hash = Base64Util.base64urlencode(JwtUtil.getMessageDigestSHA256(request));
-                        validRequestUri = StringUtils.equals(reqUriHash, hash);
-                    }
-                }
+                request = requestObjectService.getRequestObject(requestUri);
 
-                if (!validRequestUri) {
+                if (request == null) {
                     throw redirectUriResponse.createWebException(AuthorizeErrorResponseType.INVALID_REQUEST_URI, "Invalid request uri.");
                 }
             } catch (WebApplicationException e) {
@@ -649,7 +628,7 @@ public class AuthorizeRestWebServiceImpl implements AuthorizeRestWebService {
         }
 
         try {
-            return new JwtAuthorizationRequest(appConfiguration, cryptoProvider, request, client);
+            return requestObjectService.getJwtAuthorizationRequest(request, client);
         } catch (WebApplicationException e) {
             throw e;
         } catch (Exception e) {
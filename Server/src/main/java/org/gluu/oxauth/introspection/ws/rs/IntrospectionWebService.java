@@ -23,11 +23,13 @@ import org.gluu.oxauth.model.uma.UmaScopeType;
 import org.gluu.oxauth.model.util.Util;
 import org.gluu.oxauth.service.AttributeService;
 import org.gluu.oxauth.service.ClientService;
+import org.gluu.oxauth.service.IntrospectionCacheService;
 import org.gluu.oxauth.service.external.ExternalIntrospectionService;
 import org.gluu.oxauth.service.external.context.ExternalIntrospectionContext;
 import org.gluu.oxauth.service.token.TokenService;
 import org.gluu.oxauth.util.ServerUtil;
 import org.gluu.util.Pair;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -43,6 +45,8 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Yuriy Zabrovarnyy
@@ -75,6 +79,8 @@ public class IntrospectionWebService {
     private AttributeService attributeService;
     @Inject
     private WebKeysConfiguration webKeysConfiguration;
+    @Inject
+    private IntrospectionCacheService introspectionCacheService;
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -112,6 +118,8 @@ public class IntrospectionWebService {
                 return Response.status(Response.Status.BAD_REQUEST).type(MediaType.APPLICATION_JSON_TYPE).entity(errorResponseFactory.errorAsJson(AuthorizeErrorResponseType.INVALID_REQUEST, "")).build();
             }
 
+            final boolean isResponseAsJwt = Boolean.TRUE.toString().equalsIgnoreCase(responseAsJwt);
+
             final Pair<AuthorizationGrant, Boolean> pair = getAuthorizationGrant(p_authorization, p_token);
             final AuthorizationGrant authorizationGrant = pair.getFirst();
             if (authorizationGrant == null) {
@@ -133,56 +141,172 @@ public class IntrospectionWebService {
                 return Response.status(Response.Status.UNAUTHORIZED).entity(errorResponseFactory.errorAsJson(AuthorizeErrorResponseType.ACCESS_DENIED, reason)).type(MediaType.APPLICATION_JSON_TYPE).build();
             }
 
-            final IntrospectionResponse response = new IntrospectionResponse(false);
+            // Cached response is returned only after caller is authenticated
+            final String cacheKey = introspectionCacheService.isEnabled() ? introspectionCacheService.buildKey(p_authorization, p_token, isResponseAsJwt) : null;
+            if (cacheKey != null) {
+                final IntrospectionCacheService.CachedIntrospection cached = introspectionCacheService.get(cacheKey);
+                if (cached != null) {
+                    log.trace("Returned cached introspection response.");
+                    return createResponse(cached.getEntity(), isResponseAsJwt);
+                }
+            }
 
             final AuthorizationGrant grantOfIntrospectionToken = authorizationGrantList.getAuthorizationGrantByAccessToken(p_token);
+            final AbstractToken tokenToIntrospect = grantOfIntrospectionToken != null ? grantOfIntrospectionToken.getAccessToken(p_token) : null;
 
-            AbstractToken tokenToIntrospect = null;
-            if (grantOfIntrospectionToken != null) {
-                tokenToIntrospect = grantOfIntrospectionToken.getAccessToken(p_token);
-                final User user = grantOfIntrospectionToken.getUser();
-
-                response.setActive(tokenToIntrospect.isValid());
-                response.setExpiresAt(ServerUtil.dateToSeconds(tokenToIntrospect.getExpirationDate()));
-                response.setIssuedAt(ServerUtil.dateToSeconds(tokenToIntrospect.getCreationDate()));
-                response.setAcrValues(grantOfIntrospectionToken.getAcrValues());
-                response.setScope(grantOfIntrospectionToken.getScopes() != null ? grantOfIntrospectionToken.getScopes() : Lists.newArrayList()); // #433
-                response.setClientId(grantOfIntrospectionToken.getClientId());
-                response.setSub(grantOfIntrospectionToken.getSub());
-                response.setUsername(grantOfIntrospectionToken.getUserId());
-                response.setIssuer(appConfiguration.getIssuer());
-                response.setAudience(grantOfIntrospectionToken.getClientId());
-
-                if (tokenToIntrospect instanceof AccessToken) {
-                    AccessToken accessToken = (AccessToken) tokenToIntrospect;
-                    response.setTokenType(accessToken.getTokenType() != null ? accessToken.getTokenType().getName() : TokenType.BEARER.getName());
-                }
-            } else {
-                log.debug("Failed to find grant for access_token: " + p_token + ". Return 200 with active=false.");
+            final JSONObject responseAsJsonObject = createIntrospectionResponse(p_token, grantOfIntrospectionToken, authorizationGrant, httpRequest, httpResponse);
+
+            final String entity = isResponseAsJwt ? createResponseAsJwt(responseAsJsonObject, authorizationGrant) : responseAsJsonObject.toString();
+
+            if (cacheKey != null && !authorizationGrant.getClient().getAttributes().getIntrospectionResponseCacheDisabled()) {
+                final String callerToken = pair.getSecond() ? null : tokenService.getTokenFromAuthorizationParameter(p_authorization);
+                introspectionCacheService.put(cacheKey, p_token, callerToken, entity,
+                        tokenToIntrospect != null ? tokenToIntrospect.getExpirationDate() : null,
+                        authorizationAccessToken != null ? authorizationAccessToken.getExpirationDate() : null);
             }
-            JSONObject responseAsJsonObject = createResponseAsJsonObject(response, tokenToIntrospect);
 
-            ExternalIntrospectionContext context = new ExternalIntrospectionContext(authorizationGrant, httpRequest, httpResponse, appConfiguration, attributeService);
-            context.setGrantOfIntrospectionToken(grantOfIntrospectionToken);
-            if (externalIntrospectionService.executeExternalModifyResponse(responseAsJsonObject, context)) {
-                log.trace("Successfully run extenal introspection scripts.");
-            } else {
-                responseAsJsonObject = createResponseAsJsonObject(response, tokenToIntrospect);
-                log.trace("Canceled changes made by external introspection script since method returned `false`.");
+            return createResponse(entity, isResponseAsJwt);
+
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).type(MediaType.APPLICATION_JSON_TYPE).build();
+        }
+    }
+
+    /**
+     * Introspects several tokens in one call. Caller is authenticated once (Bearer access token or Basic client
+     * credentials), tokens are resolved together and response is JSON array of introspection responses in the
+     * order of passed tokens. In case of Basic client authentication tokens of other clients are returned as not active.
+     */
+    @POST
+    @Path("/batch")
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "invalid_request\n" +
+                    "The request is missing a required parameter or contains more tokens than allowed by introspectionBatchMaxSize."),
+            @ApiResponse(code = 401, message = "access_denied\n" +
+                    "Caller is not authenticated or is not allowed to introspect tokens."),
+            @ApiResponse(code = 500, message = "Introspection Internal Server Failed.")
+    })
+    public Response introspectBatch(@HeaderParam("Authorization") String p_authorization,
+                                    @FormParam("token") List<String> p_tokens,
+                                    @Context HttpServletRequest httpRequest,
+                                    @Context HttpServletResponse httpResponse) {
+        try {
+            log.trace("Introspect tokens in batch, authorization: {}, tokens count: {}", p_authorization, p_tokens != null ? p_tokens.size() : 0);
+            if (StringUtils.isBlank(p_authorization) || p_tokens == null || p_tokens.isEmpty()) {
+                log.trace("Bad request: Authorization header or tokens are blank.");
+                return Response.status(Response.Status.BAD_REQUEST).type(MediaType.APPLICATION_JSON_TYPE).entity(errorResponseFactory.errorAsJson(AuthorizeErrorResponseType.INVALID_REQUEST, "")).build();
             }
+            if (p_tokens.size() > appConfiguration.getIntrospectionBatchMaxSize()) {
+                log.trace("Bad request: {} tokens passed, max allowed: {}", p_tokens.size(), appConfiguration.getIntrospectionBatchMaxSize());
+                return Response.status(Response.Status.BAD_REQUEST).type(MediaType.APPLICATION_JSON_TYPE).entity(errorResponseFactory.errorAsJson(AuthorizeErrorResponseType.INVALID_REQUEST, "Too many tokens.")).build();
+            }
+
+            AuthorizationGrant callerGrant = null;
+            String callerClientId = null;
 
-            if (Boolean.TRUE.toString().equalsIgnoreCase(responseAsJwt)) {
-                return Response.status(Response.Status.OK).entity(createResponseAsJwt(responseAsJsonObject, authorizationGrant)).build();
+            final AuthorizationGrant bearerGrant = tokenService.getAuthorizationGrantByPrefix(p_authorization, "Bearer ");
+            if (bearerGrant != null) {
+                final AbstractToken callerToken = bearerGrant.getAccessToken(p_authorization.substring("Bearer ".length()));
+                if (callerToken == null || !callerToken.isValid()) {
+                    log.error("Access token is not valid.");
+                    return Response.status(Response.Status.UNAUTHORIZED).type(MediaType.APPLICATION_JSON_TYPE).entity(errorResponseFactory.errorAsJson(AuthorizeErrorResponseType.ACCESS_DENIED, "Access token is not valid")).build();
+                }
+                if (ServerUtil.isTrue(appConfiguration.getIntrospectionAccessTokenMustHaveUmaProtectionScope()) &&
+                        !bearerGrant.getScopesAsString().contains(UmaScopeType.PROTECTION.getValue())) {
+                    final String reason = "access_token used to access introspection endpoint does not have uma_protection scope, however in oxauth configuration `checkUmaProtectionScopePresenceDuringIntrospection` is true";
+                    log.trace(reason);
+                    return Response.status(Response.Status.UNAUTHORIZED).entity(errorResponseFactory.errorAsJson(AuthorizeErrorResponseType.ACCESS_DENIED, reason)).type(MediaType.APPLICATION_JSON_TYPE).build();
+                }
+                callerGrant = bearerGrant;
+            } else {
+                final Pair<String, String> credentials = getBasicCredentials(p_authorization);
+                if (credentials != null && clientService.authenticate(credentials.getFirst(), credentials.getSecond())) {
+                    callerClientId = credentials.getFirst();
+                } else {
+                    log.trace("Failed to authenticate caller of batch introspection.");
+                    return Response.status(Response.Status.UNAUTHORIZED).type(MediaType.APPLICATION_JSON_TYPE).entity(errorResponseFactory.errorAsJson(AuthorizeErrorResponseType.ACCESS_DENIED, "Failed to authenticate caller.")).build();
+                }
             }
 
-            return Response.status(Response.Status.OK).entity(responseAsJsonObject.toString()).type(MediaType.APPLICATION_JSON_TYPE).build();
+            final Map<String, AuthorizationGrant> grants = authorizationGrantList.getAuthorizationGrantsByAccessTokens(p_tokens);
+
+            final JSONArray result = new JSONArray();
+            for (String token : p_tokens) {
+                AuthorizationGrant grantOfIntrospectionToken = grants.get(token);
+                if (grantOfIntrospectionToken != null && callerClientId != null && !callerClientId.equals(grantOfIntrospectionToken.getClientId())) {
+                    log.trace("Token does not belong to authenticated client {}, return active=false.", callerClientId);
+                    grantOfIntrospectionToken = null;
+                }
+
+                final AuthorizationGrant contextGrant = callerGrant != null ? callerGrant : grantOfIntrospectionToken;
+                result.put(createIntrospectionResponse(token, grantOfIntrospectionToken, contextGrant, httpRequest, httpResponse));
+            }
 
+            return Response.status(Response.Status.OK).entity(result.toString()).type(MediaType.APPLICATION_JSON_TYPE).build();
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).type(MediaType.APPLICATION_JSON_TYPE).build();
         }
     }
 
+    /**
+     * Builds introspection response of the token and passes it through introspection scripts.
+     *
+     * @param token                     token to introspect
+     * @param grantOfIntrospectionToken grant of the token, null if token is not found (response has active=false)
+     * @param authorizationGrant        grant of the caller passed to scripts, scripts are not run if it is null
+     */
+    private JSONObject createIntrospectionResponse(String token, AuthorizationGrant grantOfIntrospectionToken, AuthorizationGrant authorizationGrant,
+                                                   HttpServletRequest httpRequest, HttpServletResponse httpResponse) throws JSONException, IOException {
+        final IntrospectionResponse response = new IntrospectionResponse(false);
+
+        AbstractToken tokenToIntrospect = null;
+        if (grantOfIntrospectionToken != null) {
+            tokenToIntrospect = grantOfIntrospectionToken.getAccessToken(token);
+
+            response.setActive(tokenToIntrospect.isValid());
+            response.setExpiresAt(ServerUtil.dateToSeconds(tokenToIntrospect.getExpirationDate()));
+            response.setIssuedAt(ServerUtil.dateToSeconds(tokenToIntrospect.getCreationDate()));
+            response.setAcrValues(grantOfIntrospectionToken.getAcrValues());
+            response.setScope(grantOfIntrospectionToken.getScopes() != null ? grantOfIntrospectionToken.getScopes() : Lists.newArrayList()); // #433
+            response.setClientId(grantOfIntrospectionToken.getClientId());
+            response.setSub(grantOfIntrospectionToken.getSub());
+            response.setUsername(grantOfIntrospectionToken.getUserId());
+            response.setIssuer(appConfiguration.getIssuer());
+            response.setAudience(grantOfIntrospectionToken.getClientId());
+
+            if (tokenToIntrospect instanceof AccessToken) {
+                AccessToken accessToken = (AccessToken) tokenToIntrospect;
+                response.setTokenType(accessToken.getTokenType() != null ? accessToken.getTokenType().getName() : TokenType.BEARER.getName());
+            }
+        } else {
+            log.debug("Failed to find grant for access_token: " + token + ". Return 200 with active=false.");
+        }
+        JSONObject responseAsJsonObject = createResponseAsJsonObject(response, tokenToIntrospect);
+        if (authorizationGrant == null) {
+            return responseAsJsonObject;
+        }
+
+        ExternalIntrospectionContext context = new ExternalIntrospectionContext(authorizationGrant, httpRequest, httpResponse, appConfiguration, attributeService);
+        context.setGrantOfIntrospectionToken(grantOfIntrospectionToken);
+        if (externalIntrospectionService.executeExternalModifyResponse(responseAsJsonObject, context)) {
+            log.trace("Successfully run extenal introspection scripts.");
+        } else {
+            responseAsJsonObject = createResponseAsJsonObject(response, tokenToIntrospect);
+            log.trace("Canceled changes made by external introspection script since method returned `false`.");
+        }
+        return responseAsJsonObject;
+    }
+
+    private static Response createResponse(String entity, boolean isResponseAsJwt) {
+        if (isResponseAsJwt) {
+            return Response.status(Response.Status.OK).entity(entity).build();
+        }
+        return Response.status(Response.Status.OK).entity(entity).type(MediaType.APPLICATION_JSON_TYPE).build();
+    }
+
     private String createResponseAsJwt(JSONObject response, AuthorizationGrant grant) throws Exception {
         final JwtSigner jwtSigner = JwtSigner.newJwtSigner(appConfiguration, webKeysConfiguration, grant.getClient());
         final Jwt jwt = jwtSigner.newJwt();
@@ -235,30 +359,45 @@ public class IntrospectionWebService {
         if (grant != null) {
             return new Pair<>(grant, false);
         }
-        if (StringUtils.startsWithIgnoreCase(authorization, "Basic ")) {
+        final Pair<String, String> credentials = getBasicCredentials(authorization);
+        if (credentials != null) {
+            String clientId = credentials.getFirst();
+            String password = credentials.getSecond();
+            if (clientService.authenticate(clientId, password)) {
+                grant = authorizationGrantList.getAuthorizationGrantByAccessToken(accessToken);
+                if (grant != null && !grant.getClientId().equals(clientId)) {
+                    log.trace("Failed to match grant object clientId and client id provided during authentication.");
+                    return EMPTY;
+                }
+                return new Pair<>(grant, true);
+            } else {
+                log.trace("Failed to perform basic authentication for client: " + clientId);
+            }
+        }
+        return EMPTY;
+    }
 
-            String encodedCredentials = authorization.substring("Basic ".length());
+    /**
+     * @return pair of client id and password decoded from Basic authorization header or null if header is not Basic or is malformed
+     * @throws UnsupportedEncodingException when encoding is not supported
+     */
+    private static Pair<String, String> getBasicCredentials(String authorization) throws UnsupportedEncodingException {
+        if (!StringUtils.startsWithIgnoreCase(authorization, "Basic ")) {
+            return null;
+        }
 
-            String token = new String(Base64.decodeBase64(encodedCredentials), Util.UTF8_STRING_ENCODING);
+        String encodedCredentials = authorization.substring("Basic ".length());
 
-            int delim = token.indexOf(":");
+        String token = new String(Base64.decodeBase64(encodedCredentials), Util.UTF8_STRING_ENCODING);
 
-            if (delim != -1) {
-                String clientId = URLDecoder.decode(token.substring(0, delim), Util.UTF8_STRING_ENCODING);
-                String password = URLDecoder.decode(token.substring(delim + 1), Util.UTF8_STRING_ENCODING);
-                if (clientService.authenticate(clientId, password)) {
-                    grant = authorizationGrantList.getAuthorizationGrantByAccessToken(accessToken);
-                    if (grant != null && !grant.getClientId().equals(clientId)) {
-                        log.trace("Failed to match grant object clientId and client id provided during authentication.");
-                        return EMPTY;
-                    }
-                    return new Pair<>(grant, true);
-                } else {
-                    log.trace("Failed to perform basic authentication for client: " + clientId);
-                }
-            }
+        int delim = token.indexOf(":");
+        if (delim == -1) {
+            return null;
         }
-        return EMPTY;
+
+        String clientId = URLDecoder.decode(token.substring(0, delim), Util.UTF8_STRING_ENCODING);
+        String password = URLDecoder.decode(token.substring(delim + 1), Util.UTF8_STRING_ENCODING);
+        return new Pair<>(clientId, password);
     }
 
 }
@@ -6,6 +6,7 @@
 
 package org.gluu.oxauth.jwk.ws.rs;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -42,11 +43,12 @@ public interface JwkRestWebService {
      *
      * @param securityContext An injectable interface that provides access to security
      *                        related information.
+     * @param request         Http request, used for conditional (If-None-Match) and compressed responses.
      * @return The JSON Web Key data structure JWK. A JWK consists of a JWK Container Object, which is a JSON object
      *         that contains an array of JWK Key Objects as a member.
      */
     @GET
     @Path("/jwks")
     @Produces({MediaType.APPLICATION_JSON})
-    Response requestJwk(@Context SecurityContext securityContext);
+    Response requestJwk(@Context SecurityContext securityContext, @Context HttpServletRequest request);
 }
\ No newline at end of file
@@ -7,11 +7,14 @@
 package org.gluu.oxauth.jwk.ws.rs;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Path;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 
-import org.gluu.oxauth.model.config.WebKeysConfiguration;
+import org.gluu.oxauth.model.config.ConfigurationFactory;
+import org.gluu.oxauth.service.WellKnownDocumentService;
+import org.gluu.oxauth.util.PrecomputedDocument;
 import org.slf4j.Logger;
 
 /**
@@ -26,16 +29,23 @@ public class JwkRestWebServiceImpl implements JwkRestWebService {
     @Inject
     private Logger log;
 
+    private static final String DOCUMENT_NAME = "jwks";
+
+    @Inject
+    private ConfigurationFactory configurationFactory;
+
     @Inject
-    private WebKeysConfiguration webKeysConfiguration;
+    private WellKnownDocumentService wellKnownDocumentService;
 
     @Override
-    public Response requestJwk(SecurityContext sec) {
+    public Response requestJwk(SecurityContext sec, HttpServletRequest request) {
         log.debug("Attempting to request JWK, Is Secure = {}", sec.isSecure());
-        Response.ResponseBuilder builder = Response.ok();
+        Response.ResponseBuilder builder;
 
         try {
-            builder.entity(webKeysConfiguration.toString());
+            final PrecomputedDocument document = wellKnownDocumentService.getDocument(DOCUMENT_NAME,
+                    () -> configurationFactory.getWebKeysConfiguration().toString());
+            builder = wellKnownDocumentService.toResponse(request, document);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             builder = Response.status(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode()); // 500
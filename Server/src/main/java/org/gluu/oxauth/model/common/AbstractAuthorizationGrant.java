@@ -6,6 +6,8 @@
 
 package org.gluu.oxauth.model.common;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import org.gluu.oxauth.model.authorize.JwtAuthorizationRequest;
 import org.gluu.oxauth.model.authorize.ScopeChecker;
 import org.gluu.oxauth.model.configuration.AppConfiguration;
@@ -61,6 +63,13 @@ public abstract class AbstractAuthorizationGrant implements IAuthorizationGrant
     private String acrValues;
     private String sessionDn;
 
+    // Loaders of lazily resolved grant (see AuthorizationGrantList.asGrant)
+    private String lazyUserId;
+    private String lazyClientId;
+    private Supplier<User> userLoader;
+    private Supplier<Client> clientLoader;
+    private Supplier<JwtAuthorizationRequest> jwtAuthorizationRequestLoader;
+
     protected final ConcurrentMap<String, AccessToken> accessTokens = new ConcurrentHashMap<String, AccessToken>();
     protected final ConcurrentMap<String, RefreshToken> refreshTokens = new ConcurrentHashMap<String, RefreshToken>();
 
@@ -82,6 +91,29 @@ public abstract class AbstractAuthorizationGrant implements IAuthorizationGrant
         this.grantId = UUID.randomUUID().toString();
     }
 
+    /**
+     * Makes user resolved on first access. User id is known without resolving user.
+     */
+    public void setUserLoader(String userId, Supplier<User> userLoader) {
+        this.lazyUserId = userId;
+        this.userLoader = Suppliers.memoize(userLoader);
+    }
+
+    /**
+     * Makes client resolved on first access. Client id is known without resolving client.
+     */
+    public void setClientLoader(String clientId, Supplier<Client> clientLoader) {
+        this.lazyClientId = clientId;
+        this.clientLoader = Suppliers.memoize(clientLoader);
+    }
+
+    /**
+     * Makes request object parsed on first access.
+     */
+    public void setJwtAuthorizationRequestLoader(Supplier<JwtAuthorizationRequest> jwtAuthorizationRequestLoader) {
+        this.jwtAuthorizationRequestLoader = Suppliers.memoize(jwtAuthorizationRequestLoader);
+    }
+
     @Override
     public synchronized String getGrantId() {
         return grantId;
@@ -235,6 +267,9 @@ public abstract class AbstractAuthorizationGrant implements IAuthorizationGrant
      */
     @Override
     public User getUser() {
+        if (user == null && userLoader != null) {
+            user = userLoader.get();
+        }
         return user;
     }
 
@@ -266,7 +301,7 @@ public abstract class AbstractAuthorizationGrant implements IAuthorizationGrant
     public String checkScopesPolicy(String requestedScopes) {
         this.scopes.clear();
 
-        Set<String> grantedScopes = scopeChecker.checkScopesPolicy(client, requestedScopes);
+        Set<String> grantedScopes = scopeChecker.checkScopesPolicy(getClient(), requestedScopes);
         this.scopes.addAll(grantedScopes);
 
         final StringBuilder grantedScopesSb = new StringBuilder();
@@ -283,6 +318,7 @@ public abstract class AbstractAuthorizationGrant implements IAuthorizationGrant
     public AccessToken createAccessToken(String certAsPem, ExecutionContext executionContext) {
         int lifetime = appConfiguration.getAccessTokenLifetime();
         // oxAuth #830 Client-specific access token expiration
+        final Client client = getClient();
         if (client != null && client.getAccessTokenLifetime() != null && client.getAccessTokenLifetime() > 0) {
             lifetime = client.getAccessTokenLifetime();
         }
@@ -298,6 +334,7 @@ public abstract class AbstractAuthorizationGrant implements IAuthorizationGrant
     @Override
     public RefreshToken createRefreshToken() {
         int lifetime = appConfiguration.getRefreshTokenLifetime();
+        final Client client = getClient();
         if (client.getRefreshTokenLifetime() != null && client.getRefreshTokenLifetime() > 0) {
             lifetime = client.getRefreshTokenLifetime();
         }
@@ -312,6 +349,11 @@ public abstract class AbstractAuthorizationGrant implements IAuthorizationGrant
 
     @Override
     public String getUserId() {
+        if (user == null && lazyUserId != null) {
+            return lazyUserId;
+        }
+
+        final User user = getUser();
         if (user == null) {
             return null;
         }
@@ -321,6 +363,7 @@ public abstract class AbstractAuthorizationGrant implements IAuthorizationGrant
 
     @Override
     public String getUserDn() {
+        final User user = getUser();
         if (user == null) {
             return null;
         }
@@ -347,11 +390,19 @@ public abstract class AbstractAuthorizationGrant implements IAuthorizationGrant
      */
     @Override
     public Client getClient() {
+        if (client == null && clientLoader != null) {
+            client = clientLoader.get();
+        }
         return client;
     }
 
     @Override
     public String getClientId() {
+        if (client == null && lazyClientId != null) {
+            return lazyClientId;
+        }
+
+        final Client client = getClient();
         if (client == null) {
             return null;
         }
@@ -361,6 +412,7 @@ public abstract class AbstractAuthorizationGrant implements IAuthorizationGrant
 
     @Override
     public String getClientDn() {
+        final Client client = getClient();
         if (client == null) {
             return null;
         }
@@ -389,12 +441,16 @@ public abstract class AbstractAuthorizationGrant implements IAuthorizationGrant
 
     @Override
     public JwtAuthorizationRequest getJwtAuthorizationRequest() {
+        if (jwtAuthorizationRequest == null && jwtAuthorizationRequestLoader != null) {
+            jwtAuthorizationRequest = jwtAuthorizationRequestLoader.get();
+        }
         return jwtAuthorizationRequest;
     }
 
     @Override
     public void setJwtAuthorizationRequest(JwtAuthorizationRequest p_jwtAuthorizationRequest) {
         jwtAuthorizationRequest = p_jwtAuthorizationRequest;
+        jwtAuthorizationRequestLoader = null;
     }
 
     @Override
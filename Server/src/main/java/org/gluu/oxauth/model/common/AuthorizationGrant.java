@@ -31,9 +31,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.util.Date;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * Base class for all the types of authorization grant.
@@ -75,6 +73,13 @@ public class AuthorizationGrant extends AbstractAuthorizationGrant {
 
     private boolean isCachedWithNoPersistence = false;
 
+    // tokens of this grant known to be in persistence (by dn), save() merges only these instead of searching by grant id
+    private final Map<String, TokenLdap> knownTokens = new LinkedHashMap<String, TokenLdap>();
+    private final Set<String> removedTokenDns = new HashSet<String>();
+
+    private boolean saveDeferred = false;
+    private boolean savePending = false;
+
     public AuthorizationGrant() {
     }
 
@@ -106,6 +111,11 @@ public class AuthorizationGrant extends AbstractAuthorizationGrant {
 
     @Override
     public void save() {
+        if (saveDeferred) {
+            savePending = true;
+            return;
+        }
+
         if (isCachedWithNoPersistence) {
             if (getAuthorizationGrantType() == AuthorizationGrantType.AUTHORIZATION_CODE) {
                 saveInCache();
@@ -125,6 +135,25 @@ public class AuthorizationGrant extends AbstractAuthorizationGrant {
         }
     }
 
+    /**
+     * Defers all following save() calls till {@link #flushSave()} is invoked. Used to coalesce multiple
+     * modifications of the grant made during one request into single write.
+     */
+    public void deferSave() {
+        saveDeferred = true;
+    }
+
+    /**
+     * Ends deferred mode and writes grant if save() was requested since {@link #deferSave()}.
+     */
+    public void flushSave() {
+        saveDeferred = false;
+        if (savePending) {
+            savePending = false;
+            save();
+        }
+    }
+
     private void saveInCache() {
         CacheGrant cachedGrant = new CacheGrant(this, appConfiguration);
         cacheService.put(Integer.toString(cachedGrant.getExpiresIn()), cachedGrant.cacheKey(), cachedGrant);
@@ -142,10 +171,8 @@ public class AuthorizationGrant extends AbstractAuthorizationGrant {
     private void saveImpl() {
         String grantId = getGrantId();
         if (grantId != null && StringUtils.isNotBlank(grantId)) {
-            final List<TokenLdap> grants = grantService.getGrantsByGrantId(grantId);
-            if (grants != null && !grants.isEmpty()) {
-                for (TokenLdap t : grants) {
-                    initTokenFromGrant(t);
+            for (TokenLdap t : getKnownTokens()) {
+                if (initTokenFromGrant(t)) {
                     log.debug("Saving grant: " + grantId + ", code_challenge: " + getCodeChallenge());
                     grantService.mergeSilently(t);
                 }
@@ -153,23 +180,70 @@ public class AuthorizationGrant extends AbstractAuthorizationGrant {
         }
     }
 
-    private void initTokenFromGrant(TokenLdap token) {
+    private Collection<TokenLdap> getKnownTokens() {
+        final TokenLdap tokenLdap = getTokenLdap();
+        if (tokenLdap == null || tokenLdap.isFromCache() || StringUtils.isBlank(tokenLdap.getDn())
+                || knownTokens.containsKey(tokenLdap.getDn()) || removedTokenDns.contains(tokenLdap.getDn())) {
+            return knownTokens.values();
+        }
+
+        final List<TokenLdap> result = new ArrayList<TokenLdap>(knownTokens.size() + 1);
+        result.add(tokenLdap);
+        result.addAll(knownTokens.values());
+        return result;
+    }
+
+    /**
+     * Copies grant state into token.
+     *
+     * @return true if any of token attributes was changed
+     */
+    private boolean initTokenFromGrant(TokenLdap token) {
+        boolean changed = false;
+
         final String nonce = getNonce();
-        if (nonce != null) {
+        if (nonce != null && !nonce.equals(token.getNonce())) {
             token.setNonce(nonce);
+            changed = true;
+        }
+
+        final String scope = getScopesAsString();
+        if (!Objects.equals(scope, token.getScope())) {
+            token.setScope(scope);
+            changed = true;
+        }
+        if (!Objects.equals(getAcrValues(), token.getAuthMode())) {
+            token.setAuthMode(getAcrValues());
+            changed = true;
+        }
+        if (!Objects.equals(getSessionDn(), token.getSessionDn())) {
+            token.setSessionDn(getSessionDn());
+            changed = true;
+        }
+        if (!Objects.equals(getAuthenticationTime(), token.getAuthenticationTime())) {
+            token.setAuthenticationTime(getAuthenticationTime());
+            changed = true;
+        }
+        if (!Objects.equals(getCodeChallenge(), token.getCodeChallenge())) {
+            token.setCodeChallenge(getCodeChallenge());
+            changed = true;
+        }
+        if (!Objects.equals(getCodeChallengeMethod(), token.getCodeChallengeMethod())) {
+            token.setCodeChallengeMethod(getCodeChallengeMethod());
+            changed = true;
+        }
+        if (!Objects.equals(getClaims(), token.getClaims())) {
+            token.setClaims(getClaims());
+            changed = true;
         }
-        token.setScope(getScopesAsString());
-        token.setAuthMode(getAcrValues());
-        token.setSessionDn(getSessionDn());
-        token.setAuthenticationTime(getAuthenticationTime());
-        token.setCodeChallenge(getCodeChallenge());
-        token.setCodeChallengeMethod(getCodeChallengeMethod());
-        token.setClaims(getClaims());
 
         final JwtAuthorizationRequest jwtRequest = getJwtAuthorizationRequest();
-        if (jwtRequest != null && StringUtils.isNotBlank(jwtRequest.getEncodedJwt())) {
+        if (jwtRequest != null && StringUtils.isNotBlank(jwtRequest.getEncodedJwt())
+                && !jwtRequest.getEncodedJwt().equals(token.getJwtRequest())) {
             token.setJwtRequest(jwtRequest.getEncodedJwt());
+            changed = true;
         }
+        return changed;
     }
 
     @Override
@@ -201,7 +275,7 @@ public class AuthorizationGrant extends AbstractAuthorizationGrant {
         }
 
         final JwtSigner jwtSigner = new JwtSigner(appConfiguration, webKeysConfiguration, signatureAlgorithm,
-                client.getClientId(), clientService.decryptSecret(client.getClientSecret()));
+                client.getClientId(), clientService.getDecryptedSecret(client));
         final Jwt jwt = jwtSigner.newJwt();
         jwt.getClaims().setClaim("scope", Lists.newArrayList(getScopes()));
         jwt.getClaims().setClaim("client_id", getClientId());
@@ -277,6 +351,20 @@ public class AuthorizationGrant extends AbstractAuthorizationGrant {
 
     public void persist(TokenLdap p_token) {
         grantService.persist(p_token);
+        if (!p_token.isFromCache() && StringUtils.isNotBlank(p_token.getDn())) {
+            knownTokens.put(p_token.getDn(), p_token);
+        }
+    }
+
+    /**
+     * Removes token of this grant by code. Removed token is not tracked anymore, so it is not merged back by save().
+     */
+    public void removeToken(String p_code) {
+        grantService.removeByCode(p_code);
+
+        final String dn = grantService.buildDn(TokenHashUtil.hash(p_code));
+        knownTokens.remove(dn);
+        removedTokenDns.add(dn);
     }
 
     public void persist(AuthorizationCode p_code) {
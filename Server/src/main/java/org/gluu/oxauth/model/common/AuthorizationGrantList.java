@@ -6,16 +6,17 @@
 
 package org.gluu.oxauth.model.common;
 
+import com.google.common.base.Supplier;
 import org.apache.commons.lang.StringUtils;
 import org.gluu.oxauth.model.authorize.JwtAuthorizationRequest;
 import org.gluu.oxauth.model.configuration.AppConfiguration;
-import org.gluu.oxauth.model.crypto.AbstractCryptoProvider;
 import org.gluu.oxauth.model.ldap.TokenLdap;
 import org.gluu.oxauth.model.ldap.TokenType;
 import org.gluu.oxauth.model.registration.Client;
 import org.gluu.oxauth.model.util.Util;
 import org.gluu.oxauth.service.ClientService;
 import org.gluu.oxauth.service.GrantService;
+import org.gluu.oxauth.service.RequestObjectService;
 import org.gluu.oxauth.service.UserService;
 import org.gluu.oxauth.util.ServerUtil;
 import org.gluu.oxauth.util.TokenHashUtil;
@@ -27,8 +28,11 @@ import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Component to hold in memory authorization grant objects.
@@ -61,7 +65,7 @@ public class AuthorizationGrantList implements IAuthorizationGrantList {
     private CacheService cacheService;
 
     @Inject
-    private AbstractCryptoProvider cryptoProvider;
+    private RequestObjectService requestObjectService;
 
     @Override
     public void removeAuthorizationGrants(List<AuthorizationGrant> authorizationGrants) {
@@ -134,7 +138,7 @@ public class AuthorizationGrantList implements IAuthorizationGrantList {
             cachedGrant = cacheService.get(null, CIBACacheGrant.cacheKey(authenticationRequestId, null));
             log.trace("Failed to fetch CIBA grant from cache, authenticationRequestId: " + authenticationRequestId);
         }
-        return cachedGrant instanceof CIBACacheGrant ? ((CIBACacheGrant) cachedGrant).asCIBAGrant(grantInstance) : null;
+        return cachedGrant instanceof CIBACacheGrant ? ((CIBACacheGrant) cachedGrant).asCIBAGrant(grantInstance, userService, clientService) : null;
     }
 
     @Override
@@ -145,7 +149,7 @@ public class AuthorizationGrantList implements IAuthorizationGrantList {
             cachedGrant = cacheService.get(CacheGrant.cacheKey(authorizationCode, null));
             log.trace("Failed to fetch authorization grant from cache, code: " + authorizationCode);
         }
-        return cachedGrant instanceof CacheGrant ? ((CacheGrant) cachedGrant).asCodeGrant(grantInstance) : null;
+        return cachedGrant instanceof CacheGrant ? ((CacheGrant) cachedGrant).asCodeGrant(grantInstance, userService, clientService) : null;
     }
 
     @Override
@@ -156,6 +160,28 @@ public class AuthorizationGrantList implements IAuthorizationGrantList {
         return assertTokenType(grantService.getGrantByCode(refreshTokenCode), TokenType.REFRESH_TOKEN, clientId);
     }
 
+    /**
+     * Returns grant of refresh token issued to already authenticated client. Client is not looked up again.
+     */
+    public AuthorizationGrant getAuthorizationGrantByRefreshToken(Client client, String refreshTokenCode) {
+        if (!ServerUtil.isTrue(appConfiguration.getPersistRefreshTokenInLdap())) {
+            return assertTokenType((TokenLdap) cacheService.get(TokenHashUtil.hash(refreshTokenCode)), TokenType.REFRESH_TOKEN, client);
+        }
+        return assertTokenType(grantService.getGrantByCode(refreshTokenCode), TokenType.REFRESH_TOKEN, client);
+    }
+
+    private AuthorizationGrant assertTokenType(TokenLdap tokenLdap, TokenType tokenType, Client client) {
+        if (tokenLdap == null || tokenLdap.getTokenTypeEnum() != tokenType) {
+            return null;
+        }
+
+        final AuthorizationGrant grant = asGrant(tokenLdap, client);
+        if (grant == null || !client.getClientId().equals(grant.getClientId())) {
+            return null;
+        }
+        return grant;
+    }
+
     public AuthorizationGrant assertTokenType(TokenLdap tokenLdap, TokenType tokenType, String clientId) {
         if (tokenLdap == null || tokenLdap.getTokenTypeEnum() != tokenType) {
             return null;
@@ -193,6 +219,26 @@ public class AuthorizationGrantList implements IAuthorizationGrantList {
         return getAuthorizationGrantByAccessToken(accessToken, false);
     }
 
+    /**
+     * Returns grants of access tokens. All tokens are resolved together (cache lookups and one search for misses).
+     *
+     * @param accessTokens access tokens
+     * @return map of access token to grant, tokens without grant are absent
+     */
+    public Map<String, AuthorizationGrant> getAuthorizationGrantsByAccessTokens(Collection<String> accessTokens) {
+        final Map<String, AuthorizationGrant> result = new HashMap<String, AuthorizationGrant>();
+        for (Map.Entry<String, TokenLdap> entry : grantService.getGrantsByCodes(accessTokens).entrySet()) {
+            final TokenLdap tokenLdap = entry.getValue();
+            if (tokenLdap.getTokenTypeEnum() == org.gluu.oxauth.model.ldap.TokenType.ACCESS_TOKEN || tokenLdap.getTokenTypeEnum() == org.gluu.oxauth.model.ldap.TokenType.LONG_LIVED_ACCESS_TOKEN) {
+                final AuthorizationGrant grant = asGrant(tokenLdap);
+                if (grant != null) {
+                    result.put(entry.getKey(), grant);
+                }
+            }
+        }
+        return result;
+    }
+
     public AuthorizationGrant getAuthorizationGrantByAccessToken(String accessToken, boolean onlyFromCache) {
         final TokenLdap tokenLdap = grantService.getGrantByCode(accessToken, onlyFromCache);
         if (tokenLdap != null && (tokenLdap.getTokenTypeEnum() == org.gluu.oxauth.model.ldap.TokenType.ACCESS_TOKEN || tokenLdap.getTokenTypeEnum() == org.gluu.oxauth.model.ldap.TokenType.LONG_LIVED_ACCESS_TOKEN)) {
@@ -214,11 +260,23 @@ public class AuthorizationGrantList implements IAuthorizationGrantList {
     }
 
     public AuthorizationGrant asGrant(TokenLdap tokenLdap) {
+        return asGrant(tokenLdap, null);
+    }
+
+    /**
+     * Creates grant view of token entry. User, client and request object are resolved on first access,
+     * so callers which need only token data don't pay for them.
+     *
+     * @param tokenLdap   token entry
+     * @param knownClient client of the token if caller already has it, otherwise null
+     * @return grant or null if grant type is not supported
+     */
+    public AuthorizationGrant asGrant(final TokenLdap tokenLdap, final Client knownClient) {
         if (tokenLdap != null) {
             final AuthorizationGrantType grantType = AuthorizationGrantType.fromString(tokenLdap.getGrantType());
             if (grantType != null) {
-                final User user = userService.getUser(tokenLdap.getUserId());
-                final Client client = clientService.getClient(tokenLdap.getClientId());
+                // user is resolved on first access, see setUserLoader below
+                final Client client = knownClient != null && StringUtils.equals(knownClient.getClientId(), tokenLdap.getClientId()) ? knownClient : null;
                 final Date authenticationTime = tokenLdap.getAuthenticationTime();
                 final String nonce = tokenLdap.getNonce();
 
@@ -226,25 +284,25 @@ public class AuthorizationGrantList implements IAuthorizationGrantList {
                 switch (grantType) {
                     case AUTHORIZATION_CODE:
                         AuthorizationCodeGrant authorizationCodeGrant = grantInstance.select(AuthorizationCodeGrant.class).get();
-                        authorizationCodeGrant.init(user, client, authenticationTime);
+                        authorizationCodeGrant.init(null, client, authenticationTime);
 
                         result = authorizationCodeGrant;
                         break;
                     case CLIENT_CREDENTIALS:
                         ClientCredentialsGrant clientCredentialsGrant = grantInstance.select(ClientCredentialsGrant.class).get();
-                        clientCredentialsGrant.init(user, client);
+                        clientCredentialsGrant.init(null, client);
 
                         result = clientCredentialsGrant;
                         break;
                     case IMPLICIT:
                         ImplicitGrant implicitGrant = grantInstance.select(ImplicitGrant.class).get();
-                        implicitGrant.init(user, client, authenticationTime);
+                        implicitGrant.init(null, client, authenticationTime);
 
                         result = implicitGrant;
                         break;
                     case RESOURCE_OWNER_PASSWORD_CREDENTIALS:
                         ResourceOwnerPasswordCredentialsGrant resourceOwnerPasswordCredentialsGrant = grantInstance.select(ResourceOwnerPasswordCredentialsGrant.class).get();
-                        resourceOwnerPasswordCredentialsGrant.init(user, client);
+                        resourceOwnerPasswordCredentialsGrant.init(null, client);
 
                         result = resourceOwnerPasswordCredentialsGrant;
                         break;
@@ -252,6 +310,21 @@ public class AuthorizationGrantList implements IAuthorizationGrantList {
                         return null;
                 }
 
+                result.setUserLoader(tokenLdap.getUserId(), new Supplier<User>() {
+                    @Override
+                    public User get() {
+                        return userService.getUser(tokenLdap.getUserId());
+                    }
+                });
+                if (client == null) {
+                    result.setClientLoader(tokenLdap.getClientId(), new Supplier<Client>() {
+                        @Override
+                        public Client get() {
+                            return clientService.getClient(tokenLdap.getClientId());
+                        }
+                    });
+                }
+
                 final String grantId = tokenLdap.getGrantId();
                 final String jwtRequest = tokenLdap.getJwtRequest();
                 final String authMode = tokenLdap.getAuthMode();
@@ -271,11 +344,18 @@ public class AuthorizationGrantList implements IAuthorizationGrantList {
                 result.setCodeChallengeMethod(tokenLdap.getCodeChallengeMethod());
 
                 if (StringUtils.isNotBlank(jwtRequest)) {
-                    try {
-                        result.setJwtAuthorizationRequest(new JwtAuthorizationRequest(appConfiguration, cryptoProvider, jwtRequest, client));
-                    } catch (Exception e) {
-                        log.trace(e.getMessage(), e);
-                    }
+                    final AuthorizationGrant grant = result;
+                    result.setJwtAuthorizationRequestLoader(new Supplier<JwtAuthorizationRequest>() {
+                        @Override
+                        public JwtAuthorizationRequest get() {
+                            try {
+                                return requestObjectService.getJwtAuthorizationRequest(jwtRequest, grant.getClient());
+                            } catch (Exception e) {
+                                log.trace(e.getMessage(), e);
+                                return null;
+                            }
+                        }
+                    });
                 }
 
                 result.setAcrValues(authMode);
@@ -6,23 +6,39 @@
 
 package org.gluu.oxauth.model.common;
 
+import com.google.common.base.Supplier;
 import org.apache.commons.lang.StringUtils;
 import org.gluu.oxauth.model.configuration.AppConfiguration;
 import org.gluu.oxauth.model.registration.Client;
+import org.gluu.oxauth.service.ClientService;
+import org.gluu.oxauth.service.UserService;
 
 import javax.enterprise.inject.Instance;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
 import java.util.Set;
 
 /**
+ * CIBA grant kept in cache. Like {@link CacheGrant} it is serialized in compact form with ids of user and client.
+ *
  * @author Javier Rojas Blum
  * @version September 4, 2019
  */
 public class CIBACacheGrant implements Serializable {
 
+    // serialVersionUID of previous (default serialization) format, keeps old entries readable
+    private static final long serialVersionUID = -7650729065939667564L;
+
     private String authorizationRequestId;
+    // set only for entries created on this node or written by previous versions
     private User user;
     private Client client;
+    private String userId;
+    private String userDn;
+    private String clientId;
     private Set<String> scopes;
     private String grantId;
 
@@ -41,6 +57,9 @@ public class CIBACacheGrant implements Serializable {
 
         user = grant.getUser();
         client = grant.getClient();
+        userId = user != null ? user.getUserId() : null;
+        userDn = user != null ? user.getDn() : null;
+        clientId = grant.getClientId();
         scopes = grant.getScopes();
         grantId = grant.getGrantId();
         sessionDn = grant.getSessionDn();
@@ -55,9 +74,25 @@ public class CIBACacheGrant implements Serializable {
         }
     }
 
-    public CIBAGrant asCIBAGrant(Instance<AbstractAuthorizationGrant> grantInstance) {
+    public CIBAGrant asCIBAGrant(Instance<AbstractAuthorizationGrant> grantInstance, final UserService userService, final ClientService clientService) {
         CIBAGrant grant = grantInstance.select(CIBAGrant.class).get();
         grant.init(user, client, expiresIn);
+        if (user == null && userDn != null) {
+            grant.setUserLoader(userId, new Supplier<User>() {
+                @Override
+                public User get() {
+                    return userService.getUserByDn(userDn);
+                }
+            });
+        }
+        if (client == null && clientId != null) {
+            grant.setClientLoader(clientId, new Supplier<Client>() {
+                @Override
+                public Client get() {
+                    return clientService.getClient(clientId);
+                }
+            });
+        }
 
         grant.setCIBAAuthenticationRequestId(new CIBAAuthenticationRequestId(expiresIn));
         grant.setScopes(scopes);
@@ -82,4 +117,68 @@ public class CIBACacheGrant implements Serializable {
     public int getExpiresIn() {
         return expiresIn;
     }
+
+    private Object writeReplace() {
+        // entries of previous format have user and client but no ids
+        if (userDn == null && user != null) {
+            userId = user.getUserId();
+            userDn = user.getDn();
+        }
+        if (clientId == null && client != null) {
+            clientId = client.getClientId();
+        }
+        return new CompactForm(this);
+    }
+
+    /**
+     * Versioned serialized form of {@link CIBACacheGrant}. New fields must be appended under new version.
+     */
+    static final class CompactForm implements Externalizable {
+
+        private static final long serialVersionUID = 1L;
+        private static final int VERSION = 1;
+
+        private CIBACacheGrant grant;
+
+        public CompactForm() {
+        }
+
+        CompactForm(CIBACacheGrant grant) {
+            this.grant = grant;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            CompactSerialization.writeVersion(out, VERSION);
+            CompactSerialization.writeString(out, grant.authorizationRequestId);
+            CompactSerialization.writeString(out, grant.userId);
+            CompactSerialization.writeString(out, grant.userDn);
+            CompactSerialization.writeString(out, grant.clientId);
+            CompactSerialization.writeStrings(out, grant.scopes);
+            CompactSerialization.writeString(out, grant.grantId);
+            CompactSerialization.writeString(out, grant.sessionDn);
+            out.writeInt(grant.expiresIn);
+            CompactSerialization.writeString(out, grant.clientNotificationToken);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            CompactSerialization.readVersion(in, VERSION, CIBACacheGrant.class);
+
+            grant = new CIBACacheGrant();
+            grant.authorizationRequestId = CompactSerialization.readString(in);
+            grant.userId = CompactSerialization.readString(in);
+            grant.userDn = CompactSerialization.readString(in);
+            grant.clientId = CompactSerialization.readString(in);
+            grant.scopes = CompactSerialization.readStrings(in);
+            grant.grantId = CompactSerialization.readString(in);
+            grant.sessionDn = CompactSerialization.readString(in);
+            grant.expiresIn = in.readInt();
+            grant.clientNotificationToken = CompactSerialization.readString(in);
+        }
+
+        private Object readResolve() {
+            return grant;
+        }
+    }
 }
\ No newline at end of file
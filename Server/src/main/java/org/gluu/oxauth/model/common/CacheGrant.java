@@ -6,27 +6,45 @@
 
 package org.gluu.oxauth.model.common;
 
+import com.google.common.base.Supplier;
 import org.apache.commons.lang.StringUtils;
 import org.gluu.oxauth.model.configuration.AppConfiguration;
 import org.gluu.oxauth.model.registration.Client;
+import org.gluu.oxauth.service.ClientService;
+import org.gluu.oxauth.service.UserService;
 
 import javax.enterprise.inject.Instance;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.Set;
 
 /**
+ * Authorization code grant kept in cache. It is serialized in compact form ({@link CompactForm}) which keeps
+ * only ids of user and client, they are resolved by services when grant is read. Entries written by previous
+ * versions (with full user and client) are still readable.
+ *
  * @author yuriyz
  * @version November 28, 2018
  */
 public class CacheGrant implements Serializable {
 
+    // serialVersionUID of previous (default serialization) format, keeps old entries readable
+    private static final long serialVersionUID = 4461268030233559565L;
+
     private String authorizationCodeString;
     private Date authorizationCodeCreationDate;
     private Date authorizationCodeExpirationDate;
 
+    // set only for entries created on this node or written by previous versions
     private User user;
     private Client client;
+    private String userId;
+    private String userDn;
+    private String clientId;
     private Date authenticationTime;
     private Set<String> scopes;
     private String grantId;
@@ -51,8 +69,8 @@ public class CacheGrant implements Serializable {
         }
         initExpiresIn(grant, appConfiguration);
 
-        user = grant.getUser();
-        client = grant.getClient();
+        setUser(grant.getUser());
+        setClient(grant.getClient());
         authenticationTime = grant.getAuthenticationTime();
         scopes = grant.getScopes();
         tokenBindingHash = grant.getTokenBindingHash();
@@ -91,6 +109,8 @@ public class CacheGrant implements Serializable {
 
     public void setUser(User user) {
         this.user = user;
+        this.userId = user != null ? user.getUserId() : null;
+        this.userDn = user != null ? user.getDn() : null;
     }
 
     public Set<String> getScopes() {
@@ -115,6 +135,7 @@ public class CacheGrant implements Serializable {
 
     public void setClient(Client client) {
         this.client = client;
+        this.clientId = client != null ? client.getClientId() : null;
     }
 
     public Date getAuthenticationTime() {
@@ -181,9 +202,25 @@ public class CacheGrant implements Serializable {
         this.sessionDn = sessionDn;
     }
 
-    public AuthorizationCodeGrant asCodeGrant(Instance<AbstractAuthorizationGrant> grantInstance) {
+    public AuthorizationCodeGrant asCodeGrant(Instance<AbstractAuthorizationGrant> grantInstance, final UserService userService, final ClientService clientService) {
         AuthorizationCodeGrant grant = grantInstance.select(AuthorizationCodeGrant.class).get();
         grant.init(user, client, authenticationTime);
+        if (user == null && userDn != null) {
+            grant.setUserLoader(userId, new Supplier<User>() {
+                @Override
+                public User get() {
+                    return userService.getUserByDn(userDn);
+                }
+            });
+        }
+        if (client == null && clientId != null) {
+            grant.setClientLoader(clientId, new Supplier<Client>() {
+                @Override
+                public Client get() {
+                    return clientService.getClient(clientId);
+                }
+            });
+        }
 
         grant.setAuthorizationCode(new AuthorizationCode(authorizationCodeString, authorizationCodeCreationDate, authorizationCodeExpirationDate));
         grant.setScopes(scopes);
@@ -209,13 +246,93 @@ public class CacheGrant implements Serializable {
         return code;
     }
 
+    private Object writeReplace() {
+        // entries of previous format have user and client but no ids
+        if (userDn == null && user != null) {
+            userId = user.getUserId();
+            userDn = user.getDn();
+        }
+        if (clientId == null && client != null) {
+            clientId = client.getClientId();
+        }
+        return new CompactForm(this);
+    }
+
     @Override
     public String toString() {
         return "MemcachedGrant{" +
                 "authorizationCode=" + authorizationCodeString +
-                ", user=" + user +
-                ", client=" + client +
+                ", userId=" + userId +
+                ", clientId=" + clientId +
                 ", authenticationTime=" + authenticationTime +
                 '}';
     }
+
+    /**
+     * Versioned serialized form of {@link CacheGrant}. New fields must be appended under new version.
+     */
+    static final class CompactForm implements Externalizable {
+
+        private static final long serialVersionUID = 1L;
+        private static final int VERSION = 1;
+
+        private CacheGrant grant;
+
+        public CompactForm() {
+        }
+
+        CompactForm(CacheGrant grant) {
+            this.grant = grant;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            CompactSerialization.writeVersion(out, VERSION);
+            CompactSerialization.writeString(out, grant.authorizationCodeString);
+            CompactSerialization.writeDate(out, grant.authorizationCodeCreationDate);
+            CompactSerialization.writeDate(out, grant.authorizationCodeExpirationDate);
+            CompactSerialization.writeString(out, grant.userId);
+            CompactSerialization.writeString(out, grant.userDn);
+            CompactSerialization.writeString(out, grant.clientId);
+            CompactSerialization.writeDate(out, grant.authenticationTime);
+            CompactSerialization.writeStrings(out, grant.scopes);
+            CompactSerialization.writeString(out, grant.grantId);
+            CompactSerialization.writeString(out, grant.tokenBindingHash);
+            CompactSerialization.writeString(out, grant.nonce);
+            CompactSerialization.writeString(out, grant.codeChallenge);
+            CompactSerialization.writeString(out, grant.codeChallengeMethod);
+            CompactSerialization.writeString(out, grant.claims);
+            CompactSerialization.writeString(out, grant.acrValues);
+            CompactSerialization.writeString(out, grant.sessionDn);
+            out.writeInt(grant.expiresIn);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            CompactSerialization.readVersion(in, VERSION, CacheGrant.class);
+
+            grant = new CacheGrant();
+            grant.authorizationCodeString = CompactSerialization.readString(in);
+            grant.authorizationCodeCreationDate = CompactSerialization.readDate(in);
+            grant.authorizationCodeExpirationDate = CompactSerialization.readDate(in);
+            grant.userId = CompactSerialization.readString(in);
+            grant.userDn = CompactSerialization.readString(in);
+            grant.clientId = CompactSerialization.readString(in);
+            grant.authenticationTime = CompactSerialization.readDate(in);
+            grant.scopes = CompactSerialization.readStrings(in);
+            grant.grantId = CompactSerialization.readString(in);
+            grant.tokenBindingHash = CompactSerialization.readString(in);
+            grant.nonce = CompactSerialization.readString(in);
+            grant.codeChallenge = CompactSerialization.readString(in);
+            grant.codeChallengeMethod = CompactSerialization.readString(in);
+            grant.claims = CompactSerialization.readString(in);
+            grant.acrValues = CompactSerialization.readString(in);
+            grant.sessionDn = CompactSerialization.readString(in);
+            grant.expiresIn = in.readInt();
+        }
+
+        private Object readResolve() {
+            return grant;
+        }
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.model.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Helpers for compact externalized forms of cached grants. Each value is written as is (no class descriptors),
+ * null values are marked explicitly.
+ */
+final class CompactSerialization {
+
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    private CompactSerialization() {
+    }
+
+    static void writeVersion(DataOutput out, int version) throws IOException {
+        out.writeByte(version);
+    }
+
+    static int readVersion(DataInput in, int maxSupportedVersion, Class<?> type) throws IOException {
+        final int version = in.readUnsignedByte();
+        if (version < 1 || version > maxSupportedVersion) {
+            throw new InvalidObjectException("Unsupported serialization version " + version + " of " + type.getSimpleName());
+        }
+        return version;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeDate(DataOutput out, Date value) throws IOException {
+        out.writeLong(value != null ? value.getTime() : NULL_DATE);
+    }
+
+    static Date readDate(DataInput in) throws IOException {
+        final long time = in.readLong();
+        return time != NULL_DATE ? new Date(time) : null;
+    }
+
+    static void writeStrings(DataOutput out, Collection<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    static Set<String> readStrings(DataInput in) throws IOException {
+        final int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+
+        final Set<String> values = new LinkedHashSet<String>();
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+}
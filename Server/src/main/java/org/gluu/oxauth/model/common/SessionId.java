@@ -75,6 +75,10 @@ public class SessionId implements Serializable {
     @Transient
     private transient boolean persisted;
 
+    // content of session (except lastUsedAt) as it was written to or read from cache
+    @Transient
+    private transient String persistedContent;
+
     @Transient
     private User user;
 
@@ -226,6 +230,33 @@ public class SessionId implements Serializable {
         this.persisted = persisted;
     }
 
+    public String getPersistedContent() {
+        return persistedContent;
+    }
+
+    public void setPersistedContent(String persistedContent) {
+        this.persistedContent = persistedContent;
+    }
+
+    /**
+     * Returns all data of session which is written to cache except lastUsedAt. It is used to find out whether
+     * session has to be rewritten or only its lastUsedAt can be updated.
+     */
+    public String getContent() {
+        return "dn=" + dn +
+                "|userDn=" + userDn +
+                "|authenticationTime=" + (authenticationTime != null ? authenticationTime.getTime() : null) +
+                "|state=" + state +
+                "|sessionState=" + sessionState +
+                "|permissionGranted=" + permissionGranted +
+                "|isJwt=" + isJwt +
+                "|jwt=" + jwt +
+                "|permissionGrantedMap=" + (permissionGrantedMap != null ? permissionGrantedMap.getPermissionGranted() : null) +
+                "|involvedClients=" + (involvedClients != null ? involvedClients.getPermissionGranted() : null) +
+                "|sessionAttributes=" + sessionAttributes +
+                "|user=" + (user != null ? user.getDn() : null);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
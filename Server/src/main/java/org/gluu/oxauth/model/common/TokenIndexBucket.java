@@ -0,0 +1,121 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.model.common;
+
+import com.google.common.base.Preconditions;
+import org.gluu.util.StringHelper;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * One bucket of cached token index (tokens of client or of session). Each node writes its own buckets, so buckets
+ * are never written concurrently by different nodes. Tokens of node are split into fixed number of buckets by token
+ * hash, so adding token rewrites only small bucket instead of the whole index. Each token hash keeps its expiration
+ * time, expired hashes are pruned on each write.
+ */
+public class TokenIndexBucket implements Serializable {
+
+    private static final long serialVersionUID = 3468792374218435811L;
+
+    private String indexKey;
+
+    private String nodeId;
+
+    private int bucket;
+
+    // token hash -> expiration time in milliseconds
+    private Map<String, Long> tokenHashes = new HashMap<String, Long>();
+
+    public TokenIndexBucket(String indexKey, String nodeId, int bucket) {
+        this.indexKey = indexKey;
+        this.nodeId = nodeId;
+        this.bucket = bucket;
+    }
+
+    public static int bucketOf(String tokenHash, int bucketCount) {
+        if (bucketCount <= 1) {
+            return 0;
+        }
+        return (tokenHash.hashCode() & Integer.MAX_VALUE) % bucketCount;
+    }
+
+    public static String cacheKey(String indexKey, String nodeId, int bucket) {
+        Preconditions.checkState(StringHelper.isNotEmpty(indexKey));
+        return indexKey + "_tokens_" + nodeId + "_" + bucket;
+    }
+
+    public String cacheKey() {
+        return cacheKey(indexKey, nodeId, bucket);
+    }
+
+    public String getIndexKey() {
+        return indexKey;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int getBucket() {
+        return bucket;
+    }
+
+    public Map<String, Long> getTokenHashes() {
+        return tokenHashes;
+    }
+
+    public void add(String tokenHash, long expirationTime) {
+        final Long current = tokenHashes.get(tokenHash);
+        if (current == null || current < expirationTime) {
+            tokenHashes.put(tokenHash, expirationTime);
+        }
+    }
+
+    /**
+     * Removes expired token hashes.
+     *
+     * @return number of removed hashes
+     */
+    public int removeExpired(long now) {
+        int removed = 0;
+        for (Iterator<Long> it = tokenHashes.values().iterator(); it.hasNext(); ) {
+            if (it.next() <= now) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return time (in seconds) till expiration of the last token in the bucket
+     */
+    public int getExpiresIn(long now) {
+        long max = now;
+        for (Long expirationTime : tokenHashes.values()) {
+            max = Math.max(max, expirationTime);
+        }
+        return (int) Math.max(1, (max - now + 999) / 1000);
+    }
+
+    public boolean isEmpty() {
+        return tokenHashes.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "TokenIndexBucket{" +
+                "indexKey='" + indexKey + '\'' +
+                ", nodeId='" + nodeId + '\'' +
+                ", bucket=" + bucket +
+                ", tokenHashes=" + tokenHashes.size() +
+                '}';
+    }
+}
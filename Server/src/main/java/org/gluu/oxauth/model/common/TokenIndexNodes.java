@@ -0,0 +1,99 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.model.common;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Shared registry of nodes which write cached token index. Each node writes its own buckets only, registry tells
+ * readers which nodes wrote buckets, how many buckets each of them has and until when they may hold live tokens.
+ */
+public class TokenIndexNodes implements Serializable {
+
+    private static final long serialVersionUID = -2380458237530938112L;
+
+    public static final String CACHE_KEY = "token_index_nodes";
+
+    // node id -> node
+    private Map<String, Node> nodes = new HashMap<String, Node>();
+
+    public Map<String, Node> getNodes() {
+        return nodes;
+    }
+
+    public void put(String nodeId, int bucketCount, long expirationTime) {
+        nodes.put(nodeId, new Node(bucketCount, expirationTime));
+    }
+
+    /**
+     * @return true if node is registered with given bucket count at least until given time
+     */
+    public boolean contains(String nodeId, int bucketCount, long expirationTime) {
+        final Node node = nodes.get(nodeId);
+        return node != null && node.getBucketCount() == bucketCount && node.getExpirationTime() >= expirationTime;
+    }
+
+    /**
+     * Removes nodes which can't have live tokens anymore.
+     *
+     * @return number of removed nodes
+     */
+    public int removeExpired(long now) {
+        int removed = 0;
+        for (Iterator<Node> it = nodes.values().iterator(); it.hasNext(); ) {
+            if (it.next().getExpirationTime() <= now) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return time (in seconds) till expiration of the last node
+     */
+    public int getExpiresIn(long now) {
+        long max = now;
+        for (Node node : nodes.values()) {
+            max = Math.max(max, node.getExpirationTime());
+        }
+        return (int) Math.max(1, (max - now + 999) / 1000);
+    }
+
+    @Override
+    public String toString() {
+        return "TokenIndexNodes{" +
+                "nodes=" + nodes.keySet() +
+                '}';
+    }
+
+    public static class Node implements Serializable {
+
+        private static final long serialVersionUID = 6153478012795461327L;
+
+        private int bucketCount;
+
+        // expiration time of the last token node may have indexed, in milliseconds
+        private long expirationTime;
+
+        public Node(int bucketCount, long expirationTime) {
+            this.bucketCount = bucketCount;
+            this.expirationTime = expirationTime;
+        }
+
+        public int getBucketCount() {
+            return bucketCount;
+        }
+
+        public long getExpirationTime() {
+            return expirationTime;
+        }
+    }
+}
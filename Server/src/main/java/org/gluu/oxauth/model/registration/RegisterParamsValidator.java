@@ -17,16 +17,13 @@ import org.gluu.oxauth.model.register.RegisterErrorResponseType;
 import org.gluu.oxauth.model.util.Pair;
 import org.gluu.oxauth.model.util.URLPatternList;
 import org.gluu.oxauth.model.util.Util;
+import org.gluu.oxauth.service.SectorIdentifierUriService;
 import org.gluu.oxauth.util.ServerUtil;
-import org.jboss.resteasy.client.ClientRequest;
-import org.jboss.resteasy.client.ClientResponse;
-import org.json.JSONArray;
 import org.slf4j.Logger;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.ws.rs.HttpMethod;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -52,6 +49,9 @@ public class RegisterParamsValidator {
     @Inject
     private AppConfiguration appConfiguration;
 
+    @Inject
+    private SectorIdentifierUriService sectorIdentifierUriService;
+
     private static final String HTTP = "http";
     private static final String HTTPS = "https";
     private static final String LOCALHOST = "localhost";
@@ -187,18 +187,9 @@ public class RegisterParamsValidator {
                     valid = false;
                 }
 
-                ClientRequest clientRequest = new ClientRequest(sectorIdentifierUrl);
-                clientRequest.setHttpMethod(HttpMethod.GET);
-
-                ClientResponse<String> clientResponse = clientRequest.get(String.class);
-                int status = clientResponse.getStatus();
-
-                if (status == 200) {
-                    String entity = clientResponse.getEntity(String.class);
-
-                    JSONArray sectorIdentifierJsonArray = new JSONArray(entity);
-                    valid = Util.asList(sectorIdentifierJsonArray).containsAll(redirectUris);
-                }
+                // Document is revalidated because client may have updated it right before registration
+                List<String> sectorRedirectUris = sectorIdentifierUriService.getRedirectUris(sectorIdentifierUrl, true);
+                valid = sectorRedirectUris != null && sectorRedirectUris.containsAll(redirectUris);
             } catch (Exception e) {
                 log.debug(e.getMessage(), e);
                 valid = false;
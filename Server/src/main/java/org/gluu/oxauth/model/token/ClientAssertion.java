@@ -6,7 +6,6 @@
 
 package org.gluu.oxauth.model.token;
 
-import com.google.common.base.Strings;
 import org.apache.commons.lang.StringUtils;
 import org.json.JSONObject;
 import org.gluu.oxauth.model.common.AuthenticationMethod;
@@ -20,8 +19,8 @@ import org.gluu.oxauth.model.jwt.JwtClaimName;
 import org.gluu.oxauth.model.jwt.JwtHeaderName;
 import org.gluu.oxauth.model.jwt.JwtType;
 import org.gluu.oxauth.model.registration.Client;
-import org.gluu.oxauth.model.util.JwtUtil;
 import org.gluu.oxauth.service.ClientService;
+import org.gluu.oxauth.service.JwksCacheService;
 import org.gluu.service.cdi.util.CdiUtil;
 import org.gluu.util.security.StringEncrypter;
 
@@ -105,9 +104,7 @@ public class ClientAssertion {
 
                                         // Validate the crypto segment
                                         String keyId = jwt.getHeader().getKeyId();
-                                        JSONObject jwks = Strings.isNullOrEmpty(client.getJwks()) ?
-                                                JwtUtil.getJSONWebKeys(client.getJwksUri()) :
-                                                new JSONObject(client.getJwks());
+                                        JSONObject jwks = CdiUtil.bean(JwksCacheService.class).getJwks(client, keyId);
                                         String sharedSecret = clientService.decryptSecret(client.getClientSecret());
                                         boolean validSignature = cryptoProvider.verifySignature(jwt.getSigningInput(), jwt.getEncodedSignature(),
                                                 keyId, jwks, sharedSecret, signatureAlgorithm);
@@ -61,7 +61,7 @@ public class JwtSigner {
         }
 
         ClientService clientService = CdiUtil.bean(ClientService.class);
-        return new JwtSigner(appConfiguration, webKeys, signatureAlgorithm, client.getClientId(), clientService.decryptSecret(client.getClientSecret()));
+        return new JwtSigner(appConfiguration, webKeys, signatureAlgorithm, client.getClientId(), clientService.getDecryptedSecret(client));
     }
 
     public Jwt newJwt() throws Exception {
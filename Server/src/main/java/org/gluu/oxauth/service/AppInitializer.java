@@ -140,6 +140,9 @@ public class AppInitializer {
 	@Inject
 	private KeyGeneratorTimer keyGeneratorTimer;
 
+	@Inject
+	private JwksCacheService jwksCacheService;
+
 	@Inject
 	private CustomLibrariesLoader customLibrariesLoader;
 
@@ -204,6 +207,7 @@ public class AppInitializer {
 		cleanerTimer.initTimer();
 		customScriptManager.initTimer(supportedCustomScriptTypes);
 		keyGeneratorTimer.initTimer();
+		jwksCacheService.initTimer();
 		initTimer();
 
 		// Set default authentication method after 
@@ -0,0 +1,195 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.service;
+
+import com.codahale.metrics.Timer;
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.gluu.oxauth.util.ServerUtil.daemonThreadFactory;
+
+/**
+ * Runs user lookups against several authentication backends at the same time and hands found results to caller as
+ * soon as they are found, so caller doesn't wait for slower backends. Lookups get authenticationParallelLookupTimeout
+ * milliseconds in total, lookups which are still running after that or after caller accepted a result are cancelled.
+ */
+@ApplicationScoped
+@Named
+public class AuthenticationBackendLookupService {
+
+    private static final String METRIC_LOOKUP_PREFIX = "authentication_backend_lookup_";
+    private static final String METRIC_FAILURE_PREFIX = "authentication_backend_failure_";
+    private static final String METRIC_TIMEOUT_PREFIX = "authentication_backend_timeout_";
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private MetricService metricService;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        final int threads = Math.max(1, appConfiguration.getAuthenticationParallelLookupThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), daemonThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs lookups in parallel. Each found result is passed to consumer as soon as its lookup finishes, results which
+     * are found at the same time are passed in configured order of backends. If consumer accepts result, lookups
+     * which are still running are cancelled.
+     *
+     * @param backendNames names of backends (used in metric names)
+     * @param lookups      lookups, lookup returns null if nothing is found in its backend
+     * @param consumer     returns true to accept result and stop, false to wait for next found result
+     * @return true if consumer accepted one of results, false if no found result is accepted in time
+     */
+    public <T> boolean findFirst(List<String> backendNames, List<Callable<T>> lookups, Predicate<Result<T>> consumer) throws InterruptedException {
+        final CompletionService<Result<T>> completionService = new ExecutorCompletionService<Result<T>>(executor);
+        final List<Future<Result<T>>> futures = new ArrayList<Future<Result<T>>>(lookups.size());
+        final boolean[] finished = new boolean[lookups.size()];
+
+        try {
+            for (int i = 0; i < lookups.size(); i++) {
+                futures.add(completionService.submit(new Lookup<T>(i, backendNames.get(i), lookups.get(i))));
+            }
+
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(appConfiguration.getAuthenticationParallelLookupTimeout());
+            int running = lookups.size();
+            while (running > 0) {
+                Future<Result<T>> future = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (future == null) {
+                    break; // timeout
+                }
+
+                // Take all lookups finished by now, so results are tried in configured order among them
+                final List<Result<T>> found = new ArrayList<Result<T>>();
+                while (future != null) {
+                    running--;
+                    try {
+                        final Result<T> result = future.get();
+                        finished[result.getIndex()] = true;
+                        if (result.getValue() != null) {
+                            found.add(result);
+                        }
+                    } catch (ExecutionException e) {
+                        // failure is already logged and counted by lookup, its index is not known here
+                    }
+                    future = completionService.poll();
+                }
+
+                Collections.sort(found, new Comparator<Result<T>>() {
+                    @Override
+                    public int compare(Result<T> result1, Result<T> result2) {
+                        return Integer.compare(result1.getIndex(), result2.getIndex());
+                    }
+                });
+                for (Result<T> result : found) {
+                    if (consumer.test(result)) {
+                        return true;
+                    }
+                }
+            }
+        } finally {
+            for (int i = 0; i < futures.size(); i++) {
+                final Future<Result<T>> future = futures.get(i);
+                if (!future.isDone()) {
+                    future.cancel(true);
+                    if (!finished[i]) {
+                        metricService.getComponentCounter(METRIC_TIMEOUT_PREFIX + backendNames.get(i)).inc();
+                        log.debug("User lookup in backend '{}' is cancelled", backendNames.get(i));
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private class Lookup<T> implements Callable<Result<T>> {
+
+        private final int index;
+        private final String backendName;
+        private final Callable<T> lookup;
+
+        private Lookup(int index, String backendName, Callable<T> lookup) {
+            this.index = index;
+            this.backendName = backendName;
+            this.lookup = lookup;
+        }
+
+        @Override
+        public Result<T> call() throws Exception {
+            final Timer.Context timerContext = metricService.getComponentTimer(METRIC_LOOKUP_PREFIX + backendName).time();
+            try {
+                return new Result<T>(index, lookup.call());
+            } catch (Exception e) {
+                if (!Thread.currentThread().isInterrupted()) {
+                    metricService.getComponentCounter(METRIC_FAILURE_PREFIX + backendName).inc();
+                    log.error("Failed to look up user in backend: " + backendName, e);
+                }
+                throw e;
+            } finally {
+                timerContext.stop();
+            }
+        }
+    }
+
+    public static class Result<T> {
+
+        private final int index;
+        private final T value;
+
+        private Result(int index, T value) {
+            this.index = index;
+            this.value = value;
+        }
+
+        /**
+         * @return index of backend which found the value
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+}
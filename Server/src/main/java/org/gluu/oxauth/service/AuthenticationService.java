@@ -23,9 +23,7 @@ import org.gluu.oxauth.model.registration.Client;
 import org.gluu.oxauth.model.session.SessionClient;
 import org.gluu.oxauth.security.Identity;
 import org.gluu.persist.PersistenceEntryManager;
-import org.gluu.persist.exception.EntryPersistenceException;
 import org.gluu.persist.model.base.CustomAttribute;
-import org.gluu.persist.model.base.CustomEntry;
 import org.gluu.util.StringHelper;
 import org.slf4j.Logger;
 
@@ -37,6 +35,8 @@ import javax.servlet.http.HttpServletRequest;
 import java.io.UnsupportedEncodingException;
 import java.security.Principal;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
 
 import static org.gluu.oxauth.model.authorize.AuthorizeResponseParam.SESSION_ID;
 
@@ -98,6 +98,12 @@ public class AuthenticationService {
 	@Inject
 	private AuthenticationProtectionService authenticationProtectionService;
 
+	@Inject
+	private LastAccessTimeService lastAccessTimeService;
+
+	@Inject
+	private AuthenticationBackendLookupService authenticationBackendLookupService;
+
 	/**
 	 * Authenticate user.
 	 *
@@ -184,22 +190,16 @@ public class AuthenticationService {
 	}
 
 	private boolean externalAuthenticate(String keyValue, String password) {
+		if (isParallelLookupEnabled()) {
+			return authenticateParallelImpl(keyValue, password, null, null);
+		}
+
 		for (int i = 0; i < this.ldapAuthConfigs.size(); i++) {
 			GluuLdapConfiguration ldapAuthConfig = this.ldapAuthConfigs.get(i);
 			PersistenceEntryManager ldapAuthEntryManager = this.ldapAuthEntryManagers.get(i);
 
-			String primaryKey = "uid";
-			if (StringHelper.isNotEmpty(ldapAuthConfig.getPrimaryKey())) {
-				primaryKey = ldapAuthConfig.getPrimaryKey();
-			}
-
-			String localPrimaryKey = "uid";
-			if (StringHelper.isNotEmpty(ldapAuthConfig.getLocalPrimaryKey())) {
-				localPrimaryKey = ldapAuthConfig.getLocalPrimaryKey();
-			}
-
-			boolean authenticated = authenticate(ldapAuthConfig, ldapAuthEntryManager, keyValue, password, primaryKey,
-					localPrimaryKey);
+			boolean authenticated = authenticate(ldapAuthConfig, ldapAuthEntryManager, keyValue, password,
+					getPrimaryKey(ldapAuthConfig), getLocalPrimaryKey(ldapAuthConfig));
 			if (authenticated) {
 				return authenticated;
 			}
@@ -219,14 +219,18 @@ public class AuthenticationService {
 		com.codahale.metrics.Timer.Context timerContext = metricService
 				.getTimer(MetricType.OXAUTH_USER_AUTHENTICATION_RATE).time();
 		try {
-			for (int i = 0; i < this.ldapAuthConfigs.size(); i++) {
-				GluuLdapConfiguration ldapAuthConfig = this.ldapAuthConfigs.get(i);
-				PersistenceEntryManager ldapAuthEntryManager = this.ldapAuthEntryManagers.get(i);
-
-				authenticated = authenticate(ldapAuthConfig, ldapAuthEntryManager, keyValue, password, primaryKey,
-						localPrimaryKey);
-				if (authenticated) {
-					break;
+			if (isParallelLookupEnabled()) {
+				authenticated = authenticateParallelImpl(keyValue, password, primaryKey, localPrimaryKey);
+			} else {
+				for (int i = 0; i < this.ldapAuthConfigs.size(); i++) {
+					GluuLdapConfiguration ldapAuthConfig = this.ldapAuthConfigs.get(i);
+					PersistenceEntryManager ldapAuthEntryManager = this.ldapAuthEntryManagers.get(i);
+
+					authenticated = authenticate(ldapAuthConfig, ldapAuthEntryManager, keyValue, password, primaryKey,
+							localPrimaryKey);
+					if (authenticated) {
+						break;
+					}
 				}
 			}
 		} finally {
@@ -299,52 +303,113 @@ public class AuthenticationService {
 				keyValue, System.identityHashCode(credentials));
 
 		try {
-			List<?> baseDNs;
-			if (ldapAuthConfig == null) {
-				baseDNs = Arrays.asList(userService.getDnForUser(null));
-			} else {
-				baseDNs = ldapAuthConfig.getBaseDNs();
+			for (String baseDn : getBaseDns(ldapAuthConfig)) {
+				User user = getUserByAttribute(ldapAuthEntryManager, baseDn, primaryKey, keyValue);
+				if (user != null) {
+					Boolean authenticated = bindAndConfigure(ldapAuthEntryManager, user, keyValue, password, localPrimaryKey);
+					if (authenticated != null) {
+						return authenticated;
+					}
+				}
 			}
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+		}
 
-			if (baseDNs != null && !baseDNs.isEmpty()) {
-				for (Object baseDnProperty : baseDNs) {
-					String baseDn;
-					if (baseDnProperty instanceof SimpleProperty) {
-						baseDn = ((SimpleProperty) baseDnProperty).getValue();
-					} else {
-						baseDn = baseDnProperty.toString();
-					}
+		return false;
+	}
 
-					User user = getUserByAttribute(ldapAuthEntryManager, baseDn, primaryKey, keyValue);
-					if (user != null) {
-						String userDn = user.getDn();
-						log.debug("Attempting to authenticate userDN: {}", userDn);
-						if (ldapAuthEntryManager.authenticate(userDn, password)) {
-							log.debug("User authenticated: {}", userDn);
-
-							log.debug("Attempting to find userDN by local primary key: {}", localPrimaryKey);
-							User localUser = userService.getUserByAttribute(localPrimaryKey, keyValue);
-							if (localUser != null) {
-								if (!checkUserStatus(localUser)) {
-									return false;
-								}
+	/**
+	 * Binds as found user and configures local user as authenticated one.
+	 *
+	 * @return true if user is authenticated, false if local user is not active, null if bind failed or local user
+	 *         is not found
+	 */
+	private Boolean bindAndConfigure(PersistenceEntryManager ldapAuthEntryManager, User user, String keyValue,
+			String password, String localPrimaryKey) {
+		String userDn = user.getDn();
+		log.debug("Attempting to authenticate userDN: {}", userDn);
+		if (ldapAuthEntryManager.authenticate(userDn, password)) {
+			log.debug("User authenticated: {}", userDn);
+
+			log.debug("Attempting to find userDN by local primary key: {}", localPrimaryKey);
+			User localUser = userService.getUserByAttribute(localPrimaryKey, keyValue);
+			if (localUser != null) {
+				if (!checkUserStatus(localUser)) {
+					return false;
+				}
+
+				configureAuthenticatedUser(localUser);
+				updateLastLogonUserTime(localUser);
 
-								configureAuthenticatedUser(localUser);
-								updateLastLogonUserTime(localUser);
+				log.trace(
+						"authenticate_external: credentials: '{}', credentials.userName: '{}', authenticatedUser.userId: '{}'",
+						System.identityHashCode(credentials), credentials.getUsername(),
+						getAuthenticatedUserId());
 
-								log.trace(
-										"authenticate_external: credentials: '{}', credentials.userName: '{}', authenticatedUser.userId: '{}'",
-										System.identityHashCode(credentials), credentials.getUsername(),
-										getAuthenticatedUserId());
+				return true;
+			}
+		}
+
+		return null;
+	}
+
+	private boolean isParallelLookupEnabled() {
+		return appConfiguration.getAuthenticationParallelLookupEnabled() && (this.ldapAuthConfigs != null)
+				&& (this.ldapAuthConfigs.size() > 1);
+	}
+
+	/*
+	 * Looks up user in all backends in parallel and binds as soon as some backend finds the user, like sequential
+	 * lookup does per base DN. Backends which find the user at the same time are tried in configured order. If bind
+	 * fails, next backend which finds the user is tried, lookups which are still running are cancelled after success.
+	 * If primaryKey or localPrimaryKey is null, the one from backend configuration is used.
+	 */
+	private boolean authenticateParallelImpl(final String keyValue, final String password, String primaryKey, final String localPrimaryKey) {
+		log.debug("Attempting to find userDN in {} backends by key value: '{}', credentials: '{}'", this.ldapAuthConfigs.size(),
+				keyValue, System.identityHashCode(credentials));
 
-								return true;
+		List<String> backendNames = new ArrayList<String>(this.ldapAuthConfigs.size());
+		List<Callable<List<User>>> lookups = new ArrayList<Callable<List<User>>>(this.ldapAuthConfigs.size());
+		for (int i = 0; i < this.ldapAuthConfigs.size(); i++) {
+			final GluuLdapConfiguration ldapAuthConfig = this.ldapAuthConfigs.get(i);
+			final PersistenceEntryManager ldapAuthEntryManager = this.ldapAuthEntryManagers.get(i);
+			final String backendPrimaryKey = primaryKey != null ? primaryKey : getPrimaryKey(ldapAuthConfig);
+
+			backendNames.add(StringHelper.isNotEmpty(ldapAuthConfig.getConfigId()) ? ldapAuthConfig.getConfigId() : String.valueOf(i));
+			lookups.add(new Callable<List<User>>() {
+				@Override
+				public List<User> call() {
+					return findUsers(ldapAuthConfig, ldapAuthEntryManager, backendPrimaryKey, keyValue);
+				}
+			});
+		}
+
+		try {
+			boolean authenticated = authenticationBackendLookupService.findFirst(backendNames, lookups,
+					new Predicate<AuthenticationBackendLookupService.Result<List<User>>>() {
+						@Override
+						public boolean test(AuthenticationBackendLookupService.Result<List<User>> result) {
+							GluuLdapConfiguration ldapAuthConfig = ldapAuthConfigs.get(result.getIndex());
+							PersistenceEntryManager ldapAuthEntryManager = ldapAuthEntryManagers.get(result.getIndex());
+							String backendLocalPrimaryKey = localPrimaryKey != null ? localPrimaryKey : getLocalPrimaryKey(ldapAuthConfig);
+
+							for (User user : result.getValue()) {
+								Boolean authenticated = bindAndConfigure(ldapAuthEntryManager, user, keyValue, password, backendLocalPrimaryKey);
+								if (authenticated != null) {
+									return authenticated;
+								}
 							}
+							return false;
 						}
-					}
-				}
-			} else {
-				log.error("There are no baseDns specified in authentication configuration.");
+					});
+			if (!authenticated) {
+				log.debug("User is not authenticated in authentication backends by key value: '{}'", keyValue);
 			}
+			return authenticated;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.error("Interrupted during user lookup in authentication backends", e);
 		} catch (Exception e) {
 			log.error(e.getMessage(), e);
 		}
@@ -352,6 +417,61 @@ public class AuthenticationService {
 		return false;
 	}
 
+	/*
+	 * Finds user in each base DN of backend, returns null if user is not found
+	 */
+	private List<User> findUsers(GluuLdapConfiguration ldapAuthConfig, PersistenceEntryManager ldapAuthEntryManager,
+			String primaryKey, String keyValue) {
+		List<User> users = new ArrayList<User>();
+		for (String baseDn : getBaseDns(ldapAuthConfig)) {
+			User user = getUserByAttribute(ldapAuthEntryManager, baseDn, primaryKey, keyValue);
+			if (user != null) {
+				users.add(user);
+			}
+		}
+
+		return users.isEmpty() ? null : users;
+	}
+
+	private List<String> getBaseDns(GluuLdapConfiguration ldapAuthConfig) {
+		List<?> baseDNs;
+		if (ldapAuthConfig == null) {
+			baseDNs = Arrays.asList(userService.getDnForUser(null));
+		} else {
+			baseDNs = ldapAuthConfig.getBaseDNs();
+		}
+
+		List<String> result = new ArrayList<String>();
+		if (baseDNs == null || baseDNs.isEmpty()) {
+			log.error("There are no baseDns specified in authentication configuration.");
+			return result;
+		}
+
+		for (Object baseDnProperty : baseDNs) {
+			if (baseDnProperty instanceof SimpleProperty) {
+				result.add(((SimpleProperty) baseDnProperty).getValue());
+			} else {
+				result.add(baseDnProperty.toString());
+			}
+		}
+
+		return result;
+	}
+
+	private String getPrimaryKey(GluuLdapConfiguration ldapAuthConfig) {
+		if (StringHelper.isNotEmpty(ldapAuthConfig.getPrimaryKey())) {
+			return ldapAuthConfig.getPrimaryKey();
+		}
+		return "uid";
+	}
+
+	private String getLocalPrimaryKey(GluuLdapConfiguration ldapAuthConfig) {
+		if (StringHelper.isNotEmpty(ldapAuthConfig.getLocalPrimaryKey())) {
+			return ldapAuthConfig.getLocalPrimaryKey();
+		}
+		return "uid";
+	}
+
 	public boolean authenticate(String userName) {
 		log.debug("Authenticating user with LDAP: username: '{}', credentials: '{}'", userName,
 				System.identityHashCode(credentials));
@@ -442,9 +562,7 @@ public class AuthenticationService {
 			return;
 		}
 
-		CustomEntry customEntry = new CustomEntry();
-		customEntry.setDn(user.getDn());
-
+		final String[] objectClasses;
 		List<String> personCustomObjectClassList = appConfiguration.getPersonCustomObjectClassList();
 		if ((personCustomObjectClassList != null) && !personCustomObjectClassList.isEmpty()) {
 			// Combine object classes from LDAP and configuration in one list
@@ -455,22 +573,13 @@ public class AuthenticationService {
 				customPersonCustomObjectClassList.addAll(Arrays.asList(user.getCustomObjectClasses()));
 			}
 
-			customEntry.setCustomObjectClasses(
-					customPersonCustomObjectClassList.toArray(new String[customPersonCustomObjectClassList.size()]));
+			objectClasses = customPersonCustomObjectClassList.toArray(new String[customPersonCustomObjectClassList.size()]);
 		} else {
-			customEntry.setCustomObjectClasses(UserService.USER_OBJECT_CLASSES);
+			objectClasses = UserService.USER_OBJECT_CLASSES;
 		}
 
 		Date now = new GregorianCalendar(TimeZone.getTimeZone("UTC")).getTime();
-		String nowDateString = ldapEntryManager.encodeTime(customEntry.getDn(), now);
-		CustomAttribute customAttribute = new CustomAttribute("oxLastLogonTime", nowDateString);
-		customEntry.getCustomAttributes().add(customAttribute);
-
-		try {
-			ldapEntryManager.merge(customEntry);
-		} catch (EntryPersistenceException epe) {
-			log.error("Failed to update oxLastLogonTime of user '{}'", user.getUserId());
-		}
+		lastAccessTimeService.update(user.getDn(), objectClasses, null, now);
 	}
 
 	public SessionId configureSessionUser(SessionId sessionId, Map<String, String> sessionIdAttributes) {
@@ -6,11 +6,19 @@
 
 package org.gluu.oxauth.service;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.annotation.PreDestroy;
 import javax.ejb.DependsOn;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Event;
@@ -25,6 +33,7 @@ import org.gluu.oxauth.model.configuration.AppConfiguration;
 import org.gluu.oxauth.service.fido.u2f.RequestService;
 import org.gluu.oxauth.uma.service.UmaPctService;
 import org.gluu.oxauth.uma.service.UmaResourceService;
+import org.gluu.oxauth.util.ServerUtil;
 import org.gluu.persist.PersistenceEntryManager;
 import org.gluu.persist.model.base.DeletableEntity;
 import org.gluu.search.filter.Filter;
@@ -36,10 +45,17 @@ import org.gluu.service.timer.event.TimerEvent;
 import org.gluu.service.timer.schedule.TimerSchedule;
 import org.slf4j.Logger;
 
+import com.codahale.metrics.Gauge;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.RateLimiter;
 
 /**
+ * Removes expired entries. Base DNs are cleaned in parallel by cleanServiceWorkers threads. Each base DN is
+ * cleaned chunk by chunk until it is drained or cycle time is over, chunk size of base DN is tuned to keep
+ * delete of one chunk close to cleanServiceChunkTargetDuration. Total delete rate of all workers is limited
+ * by cleanServiceRateLimit (entries per second).
+ *
  * @author Yuriy Zabrovarnyy
  * @author Javier Rojas Blum
  * @version August 9, 2017
@@ -51,6 +67,9 @@ public class CleanerTimer {
 
 	public final static int BATCH_SIZE = 1000;
 	private final static int DEFAULT_INTERVAL = 30; // 30 seconds
+	private final static int MIN_CHUNK_SIZE = 10;
+
+	private static final String METRIC_PREFIX = "cleaner_";
 
 	@Inject
 	private Logger log;
@@ -83,6 +102,9 @@ public class CleanerTimer {
 	@Inject
 	private StaticConfiguration staticConfiguration;
 
+	@Inject
+	private MetricService metricService;
+
 	@Inject
 	private Event<TimerEvent> cleanerEvent;
 
@@ -90,6 +112,13 @@ public class CleanerTimer {
 
 	private AtomicBoolean isActive;
 
+	private ExecutorService workers;
+	private int workerCount;
+
+	private RateLimiter rateLimiter;
+
+	private final ConcurrentMap<String, BaseDnState> states = new ConcurrentHashMap<String, BaseDnState>();
+
 	public void initTimer() {
 		log.debug("Initializing Cleaner Timer");
 		this.isActive = new AtomicBoolean(false);
@@ -133,6 +162,13 @@ public class CleanerTimer {
 		return timeDiffrence >= cleaningInterval;
 	}
 
+	@PreDestroy
+	public void destroy() {
+		if (workers != null) {
+			workers.shutdownNow();
+		}
+	}
+
 	public void processImpl() {
         try {
 			if (!isStartProcess()) {
@@ -140,34 +176,163 @@ public class CleanerTimer {
 				return;
 			}
 
-			int chunkSize = appConfiguration.getCleanServiceBatchChunkSize();
-            if (chunkSize <= 0)
-                chunkSize = BATCH_SIZE;
+			final int chunkSize = getInitialChunkSize();
+			final Date now = new Date();
+			final long deadline = System.currentTimeMillis() + Math.max(appConfiguration.getCleanServiceInterval(), DEFAULT_INTERVAL) * 1000L;
+
+			final RateLimiter limiter = getRateLimiter();
+
+			final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for (final String baseDn : createCleanServiceBaseDns()) {
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						cleanupBaseDn(baseDn, now, deadline, limiter);
+						return null;
+					}
+				});
+			}
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					processCache(now);
+					return null;
+				}
+			});
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					registrationPersistenceService.cleanup(now, chunkSize);
+					authenticationPersistenceService.cleanup(now, chunkSize);
+					return null;
+				}
+			});
+
+			getWorkers().invokeAll(tasks);
+
+			this.lastFinishedTime = System.currentTimeMillis();
+		} catch (InterruptedException e) {
+			log.warn("Clean up is interrupted.");
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			log.error("Failed to process clean up.", e);
+		}
+	}
+
+	/**
+	 * Removes expired entries of base DN chunk by chunk till base DN is drained or deadline is reached.
+	 */
+	private void cleanupBaseDn(String baseDn, Date now, long deadline, RateLimiter limiter) {
+		final BaseDnState state = getState(baseDn);
+		try {
+			log.debug("Start clean up for baseDn: " + baseDn);
+			final Stopwatch started = Stopwatch.createStarted();
 
-            Date now = new Date();
+			int removed = 0;
+			boolean drained = false;
+			while (System.currentTimeMillis() < deadline && !Thread.currentThread().isInterrupted()) {
+				final int chunkSize = state.chunkSize;
 
-			for (String baseDn : createCleanServiceBaseDns()) {
-				try {
-					log.debug("Start clean up for baseDn: " + baseDn);
-					final Stopwatch started = Stopwatch.createStarted();
+				final long chunkStarted = System.nanoTime();
+				final int removedInChunk = cleanup(baseDn, now, chunkSize);
+				final long chunkDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - chunkStarted);
 
-					int removed = cleanup(baseDn, now, chunkSize);
+				removed += removedInChunk;
+				state.adjustChunkSize(chunkDuration, appConfiguration.getCleanServiceChunkTargetDuration(), getMaxChunkSize());
+				metricService.getComponentCounter(metricName("removed_", baseDn)).inc(removedInChunk);
 
-					log.debug("Finished clean up for baseDn: {}, takes: {}ms, removed items: {}", baseDn, started.elapsed(TimeUnit.MILLISECONDS), removed);
-				} catch (Exception e) {
-					log.error("Failed to process clean up for baseDn: " + baseDn, e);
+				if (limiter != null && removedInChunk > 0) {
+					limiter.acquire(removedInChunk);
+				}
+				if (removedInChunk < chunkSize) {
+					drained = true;
+					break;
 				}
 			}
 
-			processCache(now);
-
-			this.registrationPersistenceService.cleanup(now, chunkSize);
-			this.authenticationPersistenceService.cleanup(now, chunkSize);
+			state.backlog = !drained;
+			if (drained) {
+				state.lastDrainedTime = System.currentTimeMillis();
+			} else {
+				log.warn("Clean up of baseDn: {} is not finished in time, expired entries are left for next run", baseDn);
+			}
 
-			this.lastFinishedTime = System.currentTimeMillis();
+			log.debug("Finished clean up for baseDn: {}, takes: {}ms, removed items: {}, next chunk size: {}", baseDn, started.elapsed(TimeUnit.MILLISECONDS), removed, state.chunkSize);
 		} catch (Exception e) {
-			log.error("Failed to process clean up.", e);
+			log.error("Failed to process clean up for baseDn: " + baseDn, e);
+		}
+	}
+
+	private BaseDnState getState(final String baseDn) {
+		BaseDnState state = states.get(baseDn);
+		if (state != null) {
+			return state;
 		}
+
+		final BaseDnState newState = new BaseDnState(getInitialChunkSize());
+		state = states.putIfAbsent(baseDn, newState);
+		if (state != null) {
+			return state;
+		}
+
+		metricService.registerComponentGauge(metricName("chunk_size_", baseDn), new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return newState.chunkSize;
+			}
+		});
+		metricService.registerComponentGauge(metricName("backlog_", baseDn), new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return newState.backlog ? 1 : 0;
+			}
+		});
+		metricService.registerComponentGauge(metricName("lag_", baseDn), new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return System.currentTimeMillis() - newState.lastDrainedTime;
+			}
+		});
+		return newState;
+	}
+
+	private static String metricName(String name, String baseDn) {
+		return METRIC_PREFIX + name + baseDn.replaceAll("[^A-Za-z0-9]+", "_");
+	}
+
+	private int getInitialChunkSize() {
+		int chunkSize = appConfiguration.getCleanServiceBatchChunkSize();
+		if (chunkSize <= 0)
+			chunkSize = BATCH_SIZE;
+		return chunkSize;
+	}
+
+	private int getMaxChunkSize() {
+		return Math.max(appConfiguration.getCleanServiceMaxChunkSize(), MIN_CHUNK_SIZE);
+	}
+
+	private synchronized ExecutorService getWorkers() {
+		final int count = Math.max(1, appConfiguration.getCleanServiceWorkers());
+		if (workers == null || workerCount != count) {
+			if (workers != null) {
+				workers.shutdown();
+			}
+			workers = Executors.newFixedThreadPool(count, ServerUtil.daemonThreadFactory());
+			workerCount = count;
+		}
+		return workers;
+	}
+
+	private synchronized RateLimiter getRateLimiter() {
+		final int rate = appConfiguration.getCleanServiceRateLimit();
+		if (rate <= 0) {
+			rateLimiter = null;
+		} else if (rateLimiter == null) {
+			rateLimiter = RateLimiter.create(rate);
+		} else if (rateLimiter.getRate() != rate) {
+			rateLimiter.setRate(rate);
+		}
+		return rateLimiter;
 	}
 
 	public Set<String> createCleanServiceBaseDns() {
@@ -217,4 +382,32 @@ public class CleanerTimer {
 			log.error("Failed to clean up cache.", e);
 		}
 	}
+
+	private static class BaseDnState {
+
+		private volatile int chunkSize;
+		private volatile boolean backlog;
+		private volatile long lastDrainedTime = System.currentTimeMillis();
+
+		private BaseDnState(int chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+
+		/**
+		 * Grows chunk by half while delete of chunk is faster than target duration and halves it when it is slower.
+		 */
+		private void adjustChunkSize(long duration, int targetDuration, int maxChunkSize) {
+			if (targetDuration <= 0) {
+				return;
+			}
+
+			int newChunkSize = chunkSize;
+			if (duration > targetDuration) {
+				newChunkSize = chunkSize / 2;
+			} else if (duration < targetDuration / 2) {
+				newChunkSize = chunkSize + chunkSize / 2;
+			}
+			chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(newChunkSize, maxChunkSize));
+		}
+	}
 }
\ No newline at end of file
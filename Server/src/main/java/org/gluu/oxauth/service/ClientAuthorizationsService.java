@@ -43,6 +43,9 @@ public class ClientAuthorizationsService {
     @Inject
     private StaticConfiguration staticConfiguration;
 
+    @Inject
+    private BranchService branchService;
+
     public void addBranch() {
         SimpleBranch branch = new SimpleBranch();
         branch.setOrganizationalUnitName("authorizations");
@@ -52,19 +55,12 @@ public class ClientAuthorizationsService {
     }
 
     public boolean containsBranch() {
-        return ldapEntryManager.contains(createDn(null), SimpleBranch.class);
+        return branchService.containsBranch(createDn(null));
     }
 
     public void prepareBranch() {
-        String baseDn = createDn(null);
-        if (!ldapEntryManager.hasBranchesSupport(baseDn)) {
-        	return;
-        }
-
         // Create client authorizations branch if needed
-        if (!containsBranch()) {
-            addBranch();
-        }
+        branchService.prepareBranch(createDn(null), "authorizations");
     }
 
     public ClientAuthorization find(String userInum, String clientId, boolean persistInLdap) {
@@ -0,0 +1,109 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.gluu.oxauth.model.registration.Client;
+import org.gluu.util.security.StringEncrypter.EncryptionException;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node local cache of decrypted client secrets. Entry is keyed by client DN and is valid only while encrypted
+ * secret of client is the same as the one it was created from, so secret changed on another node is never
+ * served stale. Client authentication compares SHA-256 digests in constant time without decryption.
+ */
+@ApplicationScoped
+@Named
+public class ClientSecretCacheService {
+
+    private static final int MAX_SIZE = 10000;
+    private static final int EXPIRE_AFTER_ACCESS_IN_MINUTES = 60;
+
+    @Inject
+    private EncryptionService encryptionService;
+
+    private final Cache<String, DecryptedSecret> secrets = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfterAccess(EXPIRE_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Checks password of client.
+     *
+     * @return true if password matches client secret
+     * @throws EncryptionException if client secret can't be decrypted
+     */
+    public boolean matches(Client client, String password) throws EncryptionException {
+        if (password == null) {
+            return false;
+        }
+
+        final DecryptedSecret secret = get(client);
+        return secret != null && MessageDigest.isEqual(secret.digest, DigestUtils.sha256(password));
+    }
+
+    /**
+     * @return decrypted client secret or null if client has no secret
+     * @throws EncryptionException if client secret can't be decrypted
+     */
+    public String getDecryptedSecret(Client client) throws EncryptionException {
+        final DecryptedSecret secret = get(client);
+        return secret != null ? secret.secret : null;
+    }
+
+    public void invalidate(String clientDn) {
+        if (clientDn != null) {
+            secrets.invalidate(clientDn);
+        }
+    }
+
+    private DecryptedSecret get(Client client) throws EncryptionException {
+        final String encryptedSecret = client.getClientSecret();
+        if (encryptedSecret == null) {
+            return null;
+        }
+
+        final String clientDn = client.getDn();
+        if (clientDn != null) {
+            final DecryptedSecret cached = secrets.getIfPresent(clientDn);
+            if (cached != null && cached.encryptedSecret.equals(encryptedSecret)) {
+                return cached;
+            }
+        }
+
+        final String decrypted = encryptionService.decrypt(encryptedSecret);
+        if (decrypted == null) {
+            return null;
+        }
+
+        final DecryptedSecret secret = new DecryptedSecret(encryptedSecret, decrypted);
+        if (clientDn != null) {
+            secrets.put(clientDn, secret);
+        }
+        return secret;
+    }
+
+    private static class DecryptedSecret {
+
+        private final String encryptedSecret;
+        private final String secret;
+        private final byte[] digest;
+
+        private DecryptedSecret(String encryptedSecret, String secret) {
+            this.encryptedSecret = encryptedSecret;
+            this.secret = secret;
+            this.digest = DigestUtils.sha256(secret);
+        }
+    }
+}
@@ -12,11 +12,9 @@ import org.gluu.oxauth.model.configuration.AppConfiguration;
 import org.gluu.oxauth.model.exception.InvalidClaimException;
 import org.gluu.oxauth.model.registration.Client;
 import org.gluu.persist.PersistenceEntryManager;
-import org.gluu.persist.exception.EntryPersistenceException;
 import org.gluu.persist.model.BatchOperation;
 import org.gluu.persist.model.SearchScope;
 import org.gluu.persist.model.base.CustomAttribute;
-import org.gluu.persist.model.base.CustomEntry;
 import org.gluu.search.filter.Filter;
 import org.gluu.service.BaseCacheService;
 import org.gluu.service.CacheService;
@@ -65,6 +63,12 @@ public class ClientService {
 	@Inject
 	private EncryptionService encryptionService;
 
+	@Inject
+	private ClientSecretCacheService clientSecretCacheService;
+
+	@Inject
+	private LastAccessTimeService lastAccessTimeService;
+
 	@Inject
 	private AppConfiguration appConfiguration;
 
@@ -78,6 +82,7 @@ public class ClientService {
 	public void merge(Client client) {
 		ldapEntryManager.merge(client);
 		removeFromCache(client);
+		clientSecretCacheService.invalidate(client.getDn());
 	}
 
 	/**
@@ -99,8 +104,7 @@ public class ClientService {
 				log.debug("Failed to find client = {}", clientId);
 				return authenticated;
 			}
-			String decryptedClientSecret = decryptSecret(client.getClientSecret());
-			authenticated = client != null && decryptedClientSecret != null && decryptedClientSecret.equals(password);
+			authenticated = clientSecretCacheService.matches(client, password);
 		} catch (StringEncrypter.EncryptionException e) {
 			log.error(e.getMessage(), e);
 		}
@@ -232,6 +236,7 @@ public class ClientService {
 	public void remove(Client client) {
 		if (client != null) {
 			removeFromCache(client);
+			clientSecretCacheService.invalidate(client.getDn());
 
 			String clientDn = client.getDn();
 			ldapEntryManager.removeRecursively(clientDn);
@@ -252,30 +257,13 @@ public class ClientService {
 			return;
 		}
 
-		String clientDn = client.getDn();
-
-		CustomEntry customEntry = new CustomEntry();
-		customEntry.setDn(clientDn);
-		customEntry.setCustomObjectClasses(CLIENT_OBJECT_CLASSES);
-
 		Date now = new GregorianCalendar(TimeZone.getTimeZone("UTC")).getTime();
-		String nowDateString = ldapEntryManager.encodeTime(customEntry.getDn(), now);
-
-		CustomAttribute customAttributeLastAccessTime = new CustomAttribute("oxLastAccessTime", nowDateString);
-		customEntry.getCustomAttributes().add(customAttributeLastAccessTime);
-
-		if (isUpdateLogonTime) {
-			CustomAttribute customAttributeLastLogonTime = new CustomAttribute("oxLastLogonTime", nowDateString);
-			customEntry.getCustomAttributes().add(customAttributeLastLogonTime);
-		}
+		lastAccessTimeService.update(client.getDn(), CLIENT_OBJECT_CLASSES, now, isUpdateLogonTime ? now : null);
 
-		try {
-			ldapEntryManager.merge(customEntry);
-		} catch (EntryPersistenceException epe) {
-			log.error("Failed to update oxLastAccessTime and oxLastLogonTime of client '{}'", clientDn);
+		// write-behind keeps cached client, timestamps in it may be stale
+		if (!lastAccessTimeService.isWriteBehindEnabled()) {
+			removeFromCache(client);
 		}
-
-		removeFromCache(client);
 	}
 
 	public Object getAttribute(Client client, String clientAttribute) throws InvalidClaimException {
@@ -335,6 +323,13 @@ public class ClientService {
 		return encryptionService.decrypt(encryptedClientSecret);
 	}
 
+	/**
+	 * Returns decrypted secret of client. Unlike {@link #decryptSecret(String)} result is cached until client is changed.
+	 */
+	public String getDecryptedSecret(Client client) throws EncryptionException {
+		return clientSecretCacheService.getDecryptedSecret(client);
+	}
+
 	public String encryptSecret(String clientSecret) throws EncryptionException {
 		return encryptionService.encrypt(clientSecret);
 	}
@@ -57,6 +57,12 @@ public class GrantService {
     @Inject
     private AppConfiguration appConfiguration;
 
+    @Inject
+    private IntrospectionCacheService introspectionCacheService;
+
+    @Inject
+    private TokenIndexService tokenIndexService;
+
     public static String generateGrantId() {
         return UUID.randomUUID().toString();
     }
@@ -101,9 +107,6 @@ public class GrantService {
 
     public void persist(TokenLdap token) {
         if (shouldPutInCache(token.getTokenTypeEnum(), token.isImplicitFlow())) {
-            ClientTokens clientTokens = getCacheClientTokens(token.getClientId());
-            clientTokens.getTokenHashes().add(token.getTokenCode());
-
             String expiration = null;
             switch (token.getTokenTypeEnum()) {
                 case ID_TOKEN:
@@ -125,13 +128,11 @@ public class GrantService {
 
             token.setIsFromCache(true);
             cacheService.put(expiration, token.getTokenCode(), token);
-            cacheService.put(expiration, clientTokens.cacheKey(), clientTokens);
 
+            final long expirationTime = System.currentTimeMillis() + Integer.parseInt(expiration) * 1000L;
+            tokenIndexService.add(token.getClientId(), token.getTokenCode(), expirationTime);
             if (StringUtils.isNotBlank(token.getSessionDn())) {
-                SessionTokens sessionTokens = getCacheSessionTokens(token.getSessionDn());
-                sessionTokens.getTokenHashes().add(token.getTokenCode());
-
-                cacheService.put(expiration, sessionTokens.cacheKey(), sessionTokens);
+                tokenIndexService.add(token.getSessionDn(), token.getTokenCode(), expirationTime);
             }
             return;
         }
@@ -139,6 +140,29 @@ public class GrantService {
         ldapEntryManager.persist(token);
     }
 
+    /**
+     * Returns tokens of cached token index, hashes of tokens which are already gone from cache are skipped.
+     * Index written by previous versions (single object with all hashes) is read as well.
+     */
+    private List<TokenLdap> getTokenIndexEntries(String indexKey, Set<String> legacyTokenHashes) {
+        final Set<String> tokenHashes = tokenIndexService.getTokenHashes(indexKey);
+        tokenHashes.addAll(legacyTokenHashes);
+        return getCacheTokensEntries(tokenHashes);
+    }
+
+    private TokenLdap getCacheTokenEntry(String tokenHash) {
+        Object o = cacheService.get(null, tokenHash);
+        if (o instanceof TokenLdap) {
+            TokenLdap token = (TokenLdap) o;
+            token.setIsFromCache(true);
+            return token;
+        }
+        return null;
+    }
+
+    /**
+     * Returns token index written by previous versions, it is read only until it expires.
+     */
     public ClientTokens getCacheClientTokens(String clientId) {
         ClientTokens clientTokens = new ClientTokens(clientId);
         Object o = cacheService.get(null, clientTokens.cacheKey());
@@ -149,6 +173,9 @@ public class GrantService {
         }
     }
 
+    /**
+     * Returns token index written by previous versions, it is read only until it expires.
+     */
     public SessionTokens getCacheSessionTokens(String sessionDn) {
         SessionTokens sessionTokens = new SessionTokens(sessionDn);
         Object o = cacheService.get(null, sessionTokens.cacheKey());
@@ -160,6 +187,7 @@ public class GrantService {
     }
 
     public void remove(TokenLdap p_token) {
+        introspectionCacheService.invalidate(p_token.getTokenCode());
         if (p_token.isFromCache()) {
             cacheService.remove(p_token.getTokenCode());
             log.trace("Removed token from cache, code: " + p_token.getTokenCode());
@@ -226,6 +254,54 @@ public class GrantService {
     }
 
 
+    /**
+     * Loads tokens by codes. Tokens are looked up in cache first, all misses are loaded from persistence by
+     * one search.
+     *
+     * @param p_codes token codes
+     * @return map of code to token, codes of not found tokens are absent
+     */
+    public Map<String, TokenLdap> getGrantsByCodes(Collection<String> p_codes) {
+        final Map<String, TokenLdap> result = new HashMap<String, TokenLdap>();
+        final Map<String, String> missedCodesByHash = new HashMap<String, String>();
+        for (String code : p_codes) {
+            if (StringUtils.isBlank(code) || result.containsKey(code)) {
+                continue;
+            }
+
+            final String hashedCode = TokenHashUtil.hash(code);
+            Object grant = cacheService.get(hashedCode);
+            if (grant instanceof TokenLdap) {
+                result.put(code, (TokenLdap) grant);
+            } else {
+                missedCodesByHash.put(hashedCode, code);
+            }
+        }
+
+        if (missedCodesByHash.isEmpty()) {
+            return result;
+        }
+
+        try {
+            final List<Filter> filters = new ArrayList<Filter>(missedCodesByHash.size());
+            for (String hashedCode : missedCodesByHash.keySet()) {
+                filters.add(Filter.createEqualityFilter("tknCde", hashedCode));
+            }
+
+            final List<TokenLdap> entries = ldapEntryManager.findEntries(tokenBaseDn(), TokenLdap.class,
+                    Filter.createORFilter(filters.toArray(new Filter[filters.size()])));
+            for (TokenLdap entry : entries) {
+                final String code = missedCodesByHash.get(entry.getTokenCode());
+                if (code != null) {
+                    result.put(code, entry);
+                }
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        return result;
+    }
+
     public TokenLdap getGrantByCode(String p_code, boolean onlyFromCache) {
         Object grant = cacheService.get(TokenHashUtil.hash(p_code));
         if (grant instanceof TokenLdap) {
@@ -284,25 +360,21 @@ public class GrantService {
         if (StringUtils.isBlank(sessionDn)) {
             return Collections.emptyList();
         }
-        return getCacheTokensEntries(getCacheSessionTokens(sessionDn).getTokenHashes());
+        final SessionTokens sessionTokens = getCacheSessionTokens(sessionDn);
+        return getTokenIndexEntries(sessionDn, sessionTokens.getTokenHashes());
     }
 
     public List<TokenLdap> getCacheClientTokensEntries(String clientId) {
-        Object o = cacheService.get(null, new ClientTokens(clientId).cacheKey());
-        if (o instanceof ClientTokens) {
-            return getCacheTokensEntries(((ClientTokens) o).getTokenHashes());
-        }
-        return Collections.emptyList();
+        final ClientTokens clientTokens = getCacheClientTokens(clientId);
+        return getTokenIndexEntries(clientId, clientTokens.getTokenHashes());
     }
 
     public List<TokenLdap> getCacheTokensEntries(Set<String> tokenHashes) {
         List<TokenLdap> tokens = new ArrayList<TokenLdap>();
 
         for (String tokenHash : tokenHashes) {
-            Object o1 = cacheService.get(null, tokenHash);
-            if (o1 instanceof TokenLdap) {
-                TokenLdap token = (TokenLdap) o1;
-                token.setIsFromCache(true);
+            final TokenLdap token = getCacheTokenEntry(tokenHash);
+            if (token != null) {
                 tokens.add(token);
             }
         }
@@ -0,0 +1,204 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import org.apache.commons.lang.StringUtils;
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.gluu.oxauth.util.TokenHashUtil;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node local cache of final introspection responses. Response is keyed by hash of introspected token, hash of
+ * Authorization header of the caller and response format. Entry lives not longer than introspected token and
+ * token of the caller, and is dropped as soon as either of them is removed via {@link GrantService}.
+ */
+@ApplicationScoped
+@Named
+public class IntrospectionCacheService {
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    private Cache<String, CachedIntrospection> responses;
+
+    // token hash -> keys of cached responses which depend on the token
+    private final ConcurrentMap<String, Set<String>> keysByTokenHash = new ConcurrentHashMap<String, Set<String>>();
+
+    @PostConstruct
+    public void init() {
+        this.responses = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(appConfiguration.getIntrospectionCacheMaxSize(), 1))
+                .expireAfterWrite(Math.max(appConfiguration.getIntrospectionCacheLifetime(), 0), TimeUnit.SECONDS)
+                .removalListener(new RemovalListener<String, CachedIntrospection>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, CachedIntrospection> notification) {
+                        if (notification.getCause() != RemovalCause.REPLACED) { // replacement has the same key and token hashes
+                            unindex(notification.getKey(), notification.getValue());
+                        }
+                    }
+                }).build();
+    }
+
+    public boolean isEnabled() {
+        return appConfiguration.getIntrospectionCacheEnabled() && appConfiguration.getIntrospectionCacheLifetime() > 0;
+    }
+
+    public String buildKey(String authorization, String token, boolean responseAsJwt) {
+        return TokenHashUtil.hash(token) + "_" + TokenHashUtil.hash(authorization) + "_" + responseAsJwt;
+    }
+
+    public CachedIntrospection get(String key) {
+        final CachedIntrospection cached = responses.getIfPresent(key);
+        if (cached == null) {
+            return null;
+        }
+
+        if (cached.getExpiresAt() <= System.currentTimeMillis()) {
+            responses.invalidate(key);
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * Puts introspection response into cache.
+     *
+     * @param key              key built by {@link #buildKey(String, String, boolean)}
+     * @param token            introspected token
+     * @param callerToken      access token used to call introspection endpoint, null in case of client authentication
+     * @param entity           response entity
+     * @param tokenExpiration  expiration date of introspected token (may be null)
+     * @param callerExpiration expiration date of caller's access token (may be null)
+     */
+    public void put(String key, String token, String callerToken, String entity, Date tokenExpiration, Date callerExpiration) {
+        long expiresAt = System.currentTimeMillis() + appConfiguration.getIntrospectionCacheLifetime() * 1000L;
+        if (tokenExpiration != null) {
+            expiresAt = Math.min(expiresAt, tokenExpiration.getTime());
+        }
+        if (callerExpiration != null) {
+            expiresAt = Math.min(expiresAt, callerExpiration.getTime());
+        }
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+
+        final String tokenHash = TokenHashUtil.hash(token);
+        final String callerTokenHash = StringUtils.isNotBlank(callerToken) ? TokenHashUtil.hash(callerToken) : null;
+
+        final CachedIntrospection cached = new CachedIntrospection(entity, expiresAt, tokenHash, callerTokenHash);
+        index(tokenHash, key);
+        if (callerTokenHash != null) {
+            index(callerTokenHash, key);
+        }
+        responses.put(key, cached);
+    }
+
+    /**
+     * Drops all cached responses for token and all responses returned to caller authenticated by this token.
+     *
+     * @param tokenHash hashed token code (as stored in token entry)
+     */
+    public void invalidate(String tokenHash) {
+        if (StringUtils.isBlank(tokenHash) || keysByTokenHash.isEmpty()) {
+            return;
+        }
+
+        final Set<String> keys = keysByTokenHash.remove(tokenHash);
+        if (keys != null) {
+            responses.invalidateAll(keys);
+            log.trace("Invalidated {} cached introspection responses", keys.size());
+        }
+    }
+
+    public void clear() {
+        responses.invalidateAll();
+        keysByTokenHash.clear();
+    }
+
+    private void index(String tokenHash, String key) {
+        Set<String> keys = keysByTokenHash.get(tokenHash);
+        if (keys == null) {
+            final Set<String> newKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            keys = keysByTokenHash.putIfAbsent(tokenHash, newKeys);
+            if (keys == null) {
+                keys = newKeys;
+            }
+        }
+        keys.add(key);
+    }
+
+    private void unindex(String key, CachedIntrospection cached) {
+        if (cached == null) {
+            return;
+        }
+
+        removeKey(cached.getTokenHash(), key);
+        if (cached.getCallerTokenHash() != null) {
+            removeKey(cached.getCallerTokenHash(), key);
+        }
+    }
+
+    private void removeKey(String tokenHash, String key) {
+        final Set<String> keys = keysByTokenHash.get(tokenHash);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByTokenHash.remove(tokenHash, keys);
+            }
+        }
+    }
+
+    public static class CachedIntrospection {
+
+        private final String entity;
+        private final long expiresAt;
+        private final String tokenHash;
+        private final String callerTokenHash;
+
+        private CachedIntrospection(String entity, long expiresAt, String tokenHash, String callerTokenHash) {
+            this.entity = entity;
+            this.expiresAt = expiresAt;
+            this.tokenHash = tokenHash;
+            this.callerTokenHash = callerTokenHash;
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public String getTokenHash() {
+            return tokenHash;
+        }
+
+        public String getCallerTokenHash() {
+            return callerTokenHash;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.service;
+
+import com.codahale.metrics.Gauge;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.client.utils.DateUtils;
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.gluu.oxauth.model.registration.Client;
+import org.gluu.oxauth.model.util.JwtUtil;
+import org.gluu.oxauth.service.cdi.event.JwksCacheRefreshEvent;
+import org.gluu.service.cdi.async.Asynchronous;
+import org.gluu.service.cdi.event.Scheduled;
+import org.gluu.service.timer.event.TimerEvent;
+import org.gluu.service.timer.schedule.TimerSchedule;
+import org.jboss.resteasy.client.ClientRequest;
+import org.jboss.resteasy.client.ClientResponse;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+
+import javax.ejb.DependsOn;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.HttpHeaders;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+import static org.gluu.oxauth.model.jwk.JWKParameter.JSON_WEB_KEY_SET;
+import static org.gluu.oxauth.model.jwk.JWKParameter.KEY_ID;
+
+/**
+ * Server wide cache of client JWKS documents keyed by jwks_uri.
+ * <p>
+ * Entries lifetime is taken from Cache-Control/Expires headers bounded by configured min/max TTL.
+ * Entries which are close to expiration are refreshed in background. Unknown kid triggers single
+ * refetch of jwks_uri which is rate limited per uri. Concurrent misses of the same uri result in one fetch.
+ * Cache holds at most MAX_SIZE uris, least recently used uri is evicted first.
+ */
+@ApplicationScoped
+@DependsOn("appInitializer")
+@Named
+public class JwksCacheService {
+
+    public static final String METRIC_HIT = "jwks_cache_hit";
+    public static final String METRIC_MISS = "jwks_cache_miss";
+    public static final String METRIC_REFRESH = "jwks_cache_refresh";
+    public static final String METRIC_KID_MISS_REFETCH = "jwks_cache_kid_miss_refetch";
+    public static final String METRIC_FETCH_FAILURE = "jwks_cache_fetch_failure";
+    public static final String METRIC_SIZE = "jwks_cache_size";
+
+    private final static int DEFAULT_INTERVAL = 30; // 30 seconds
+
+    private final static int MAX_SIZE = 10000;
+    private final static int FETCH_LOCK_STRIPES = 64;
+
+    // Refresh entry in background when less than this part of lifetime left
+    private final static double REFRESH_AHEAD_FACTOR = 0.2;
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private Event<TimerEvent> timerEvent;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private MetricService metricService;
+
+    private final Map<String, JwksCacheEntry> cache = new ConcurrentHashMap<String, JwksCacheEntry>();
+
+    private final Cache<String, JSONObject> inlineJwksCache = CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    private final Striped<Lock> fetchLocks = Striped.lock(FETCH_LOCK_STRIPES);
+
+    private AtomicBoolean isActive;
+
+    public void initTimer() {
+        log.debug("Initializing JWKS Cache Refresh Timer");
+        this.isActive = new AtomicBoolean(false);
+
+        timerEvent.fire(new TimerEvent(new TimerSchedule(DEFAULT_INTERVAL, DEFAULT_INTERVAL), new JwksCacheRefreshEvent(),
+                Scheduled.Literal.INSTANCE));
+
+        metricService.registerComponentGauge(METRIC_SIZE, new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return cache.size();
+            }
+        });
+    }
+
+    @Asynchronous
+    public void refreshTimerEvent(@Observes @Scheduled JwksCacheRefreshEvent jwksCacheRefreshEvent) {
+        if (this.isActive.get()) {
+            return;
+        }
+
+        if (!this.isActive.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            refreshEntries();
+        } catch (Exception ex) {
+            log.error("Exception happened while refreshing JWKS cache", ex);
+        } finally {
+            this.isActive.set(false);
+        }
+    }
+
+    /**
+     * Returns JWKS of client. Inline jwks has precedence over jwks_uri.
+     *
+     * @param client client
+     * @param keyId  kid which caller is going to use, may be null
+     * @return JWKS or null if it's not available
+     */
+    public JSONObject getJwks(Client client, String keyId) {
+        if (StringUtils.isNotBlank(client.getJwks())) {
+            return getInlineJwks(client.getJwks());
+        }
+
+        return getJwks(client.getJwksUri(), keyId);
+    }
+
+    public JSONObject getJwks(String jwksUri) {
+        return getJwks(jwksUri, null);
+    }
+
+    /**
+     * Returns JWKS by jwks_uri. If keyId is specified and it is not in cached JWKS, jwks_uri is refetched
+     * (not more often than jwksCacheKidMissRefetchInterval).
+     *
+     * @param jwksUri jwks_uri
+     * @param keyId   kid which caller is going to use, may be null
+     * @return JWKS or null if it's not available
+     */
+    public JSONObject getJwks(String jwksUri, String keyId) {
+        if (StringUtils.isBlank(jwksUri)) {
+            return null;
+        }
+
+        if (!appConfiguration.getJwksCacheEnabled()) {
+            return JwtUtil.getJSONWebKeys(jwksUri);
+        }
+
+        final long now = System.currentTimeMillis();
+        JwksCacheEntry entry = cache.get(jwksUri);
+        if (entry == null || entry.isExpired(now)) {
+            metricService.getComponentCounter(METRIC_MISS).inc();
+            entry = fetchOnMiss(jwksUri, entry);
+            if (entry == null) {
+                return null;
+            }
+        } else {
+            metricService.getComponentCounter(METRIC_HIT).inc();
+        }
+        entry.setLastAccessTime(now);
+
+        if (StringUtils.isNotBlank(keyId) && !containsKeyId(entry.getJwks(), keyId) && entry.tryKidMissRefetch(now, kidMissRefetchInterval())) {
+            log.debug("Kid '{}' is not found in cached JWKS, refetching {} ...", keyId, jwksUri);
+            metricService.getComponentCounter(METRIC_KID_MISS_REFETCH).inc();
+            final JwksCacheEntry refetched = fetchLocked(jwksUri, entry);
+            if (refetched != null) {
+                refetched.setLastAccessTime(now);
+                entry = refetched;
+            }
+        }
+
+        return entry.getJwks();
+    }
+
+    /**
+     * Parsed inline JWKS are reused while client jwks value is the same. It allows to keep decoded
+     * public keys indexed per JWKS document instance.
+     */
+    private JSONObject getInlineJwks(String jwks) {
+        JSONObject result = inlineJwksCache.getIfPresent(jwks);
+        if (result == null) {
+            result = new JSONObject(jwks);
+            inlineJwksCache.put(jwks, result);
+        }
+
+        return result;
+    }
+
+    public void invalidate(String jwksUri) {
+        if (jwksUri != null) {
+            cache.remove(jwksUri);
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+        inlineJwksCache.invalidateAll();
+    }
+
+    private void refreshEntries() {
+        final long now = System.currentTimeMillis();
+        final long maxIdle = TimeUnit.SECONDS.toMillis(Math.max(appConfiguration.getJwksCacheMaxTtl(), appConfiguration.getJwksCacheMinTtl()));
+
+        for (Map.Entry<String, JwksCacheEntry> mapEntry : cache.entrySet()) {
+            final String jwksUri = mapEntry.getKey();
+            final JwksCacheEntry entry = mapEntry.getValue();
+
+            // Don't keep refreshing uris which nobody uses
+            if (now - entry.getLastAccessTime() > maxIdle) {
+                log.trace("Evicting unused JWKS of {} from cache", jwksUri);
+                cache.remove(jwksUri, entry);
+                continue;
+            }
+
+            if (entry.isRefreshRequired(now)) {
+                log.trace("Refreshing JWKS of {} in background", jwksUri);
+                metricService.getComponentCounter(METRIC_REFRESH).inc();
+                fetchLocked(jwksUri, entry);
+            }
+        }
+    }
+
+    /**
+     * Only one thread fetches missing or expired uri, others wait and use its result.
+     */
+    private JwksCacheEntry fetchOnMiss(String jwksUri, JwksCacheEntry staleEntry) {
+        final Lock lock = fetchLocks.get(jwksUri);
+        lock.lock();
+        try {
+            final JwksCacheEntry current = cache.get(jwksUri);
+            if (current != null && current != staleEntry && !current.isExpired(System.currentTimeMillis())) {
+                return current;
+            }
+
+            return fetch(jwksUri, current != null ? current : staleEntry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private JwksCacheEntry fetchLocked(String jwksUri, JwksCacheEntry staleEntry) {
+        final Lock lock = fetchLocks.get(jwksUri);
+        lock.lock();
+        try {
+            return fetch(jwksUri, staleEntry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private JwksCacheEntry fetch(String jwksUri, JwksCacheEntry staleEntry) {
+        log.debug("Retrieving jwks {} ...", jwksUri);
+
+        try {
+            ClientRequest clientRequest = new ClientRequest(jwksUri);
+            clientRequest.setHttpMethod(HttpMethod.GET);
+            ClientResponse<String> clientResponse = clientRequest.get(String.class);
+            try {
+                int status = clientResponse.getStatus();
+                log.debug("Status: {}, jwks_uri: {}", status, jwksUri);
+
+                if (status == 200) {
+                    final JSONObject jwks = JwtUtil.fromJson(clientResponse.getEntity(String.class));
+                    final long now = System.currentTimeMillis();
+                    final long ttl = calculateTtl(clientResponse.getHeaderString(HttpHeaders.CACHE_CONTROL),
+                            clientResponse.getHeaderString(HttpHeaders.EXPIRES), now);
+
+                    // Document is just fetched, so kid miss refetch interval starts from now
+                    final JwksCacheEntry entry = new JwksCacheEntry(jwks, now, now + ttl);
+                    if (staleEntry != null) {
+                        entry.setLastAccessTime(staleEntry.getLastAccessTime());
+                    } else {
+                        evictIfFull();
+                    }
+                    cache.put(jwksUri, entry);
+                    log.trace("Cached JWKS of {} for {} ms", jwksUri, ttl);
+
+                    return entry;
+                }
+            } finally {
+                clientResponse.releaseConnection();
+            }
+        } catch (Exception ex) {
+            log.error("Failed to retrieve jwks " + jwksUri, ex);
+        }
+
+        metricService.getComponentCounter(METRIC_FETCH_FAILURE).inc();
+        if (staleEntry != null) {
+            log.debug("Using stale JWKS of {} because refresh failed", jwksUri);
+        }
+        return staleEntry;
+    }
+
+    private void evictIfFull() {
+        if (cache.size() < MAX_SIZE) {
+            return;
+        }
+
+        String leastRecentlyUsedUri = null;
+        long leastRecentAccessTime = Long.MAX_VALUE;
+        for (Map.Entry<String, JwksCacheEntry> mapEntry : cache.entrySet()) {
+            final long lastAccessTime = mapEntry.getValue().getLastAccessTime();
+            if (lastAccessTime < leastRecentAccessTime) {
+                leastRecentAccessTime = lastAccessTime;
+                leastRecentlyUsedUri = mapEntry.getKey();
+            }
+        }
+
+        if (leastRecentlyUsedUri != null) {
+            log.trace("JWKS cache is full, evicting {}", leastRecentlyUsedUri);
+            cache.remove(leastRecentlyUsedUri);
+        }
+    }
+
+    private long calculateTtl(String cacheControl, String expires, long now) {
+        Long ttlSeconds = null;
+        if (StringUtils.isNotBlank(cacheControl)) {
+            for (String directive : cacheControl.split(",")) {
+                final String value = directive.trim().toLowerCase();
+                if (value.startsWith("max-age=")) {
+                    try {
+                        ttlSeconds = Long.parseLong(value.substring("max-age=".length()).trim());
+                    } catch (NumberFormatException e) {
+                        log.trace("Failed to parse Cache-Control max-age: {}", cacheControl);
+                    }
+                } else if (value.equals("no-cache") || value.equals("no-store")) {
+                    ttlSeconds = 0L;
+                }
+            }
+        }
+
+        if (ttlSeconds == null && StringUtils.isNotBlank(expires)) {
+            final Date expiresDate = DateUtils.parseDate(expires);
+            if (expiresDate != null) {
+                ttlSeconds = TimeUnit.MILLISECONDS.toSeconds(expiresDate.getTime() - now);
+            }
+        }
+
+        final long minTtl = appConfiguration.getJwksCacheMinTtl();
+        final long maxTtl = Math.max(appConfiguration.getJwksCacheMaxTtl(), minTtl);
+        if (ttlSeconds == null) {
+            ttlSeconds = maxTtl;
+        }
+
+        return TimeUnit.SECONDS.toMillis(Math.min(Math.max(ttlSeconds, minTtl), maxTtl));
+    }
+
+    private long kidMissRefetchInterval() {
+        return TimeUnit.SECONDS.toMillis(appConfiguration.getJwksCacheKidMissRefetchInterval());
+    }
+
+    private static boolean containsKeyId(JSONObject jwks, String keyId) {
+        final JSONArray keys = jwks.optJSONArray(JSON_WEB_KEY_SET);
+        if (keys == null) {
+            return false;
+        }
+
+        for (int i = 0; i < keys.length(); i++) {
+            final JSONObject key = keys.optJSONObject(i);
+            if (key != null && keyId.equals(key.optString(KEY_ID, null))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static class JwksCacheEntry {
+
+        private final JSONObject jwks;
+        private final long creationTime;
+        private final long expirationTime;
+
+        private volatile long lastAccessTime;
+        private volatile long lastKidMissRefetchTime;
+
+        JwksCacheEntry(JSONObject jwks, long creationTime, long expirationTime) {
+            this.jwks = jwks;
+            this.creationTime = creationTime;
+            this.expirationTime = expirationTime;
+            this.lastAccessTime = creationTime;
+            this.lastKidMissRefetchTime = creationTime;
+        }
+
+        JSONObject getJwks() {
+            return jwks;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expirationTime;
+        }
+
+        boolean isRefreshRequired(long now) {
+            final long refreshAhead = (long) ((expirationTime - creationTime) * REFRESH_AHEAD_FACTOR);
+            return now >= expirationTime - refreshAhead;
+        }
+
+        synchronized boolean tryKidMissRefetch(long now, long interval) {
+            if (now - lastKidMissRefetchTime < interval) {
+                return false;
+            }
+
+            lastKidMissRefetchTime = now;
+            return true;
+        }
+
+        long getLastAccessTime() {
+            return lastAccessTime;
+        }
+
+        void setLastAccessTime(long lastAccessTime) {
+            this.lastAccessTime = lastAccessTime;
+        }
+
+    }
+}
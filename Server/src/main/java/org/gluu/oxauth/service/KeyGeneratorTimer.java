@@ -113,6 +113,18 @@ public class KeyGeneratorTimer {
 		this.lastFinishedTime = System.currentTimeMillis();
 	}
 
+	/**
+	 * Returns time (in milliseconds) when keys are going to be regenerated next time by this node.
+	 */
+	public long getNextKeyRegenerationTime() {
+		int poolingInterval = appConfiguration.getKeyRegenerationInterval();
+		if (poolingInterval <= 0) {
+			poolingInterval = DEFAULT_INTERVAL;
+		}
+
+		return this.lastFinishedTime + poolingInterval * 3600 * 1000L;
+	}
+
 	private boolean isStartUpdateKeys() {
 		int poolingInterval = appConfiguration.getKeyRegenerationInterval();
         if (poolingInterval <= 0) {
@@ -140,9 +152,14 @@ public class KeyGeneratorTimer {
         conf.setRevision(nextRevision);
         ldapEntryManager.merge(conf);
 
+        // Keystore was changed, key id index has to be rebuilt
+        ServerCryptoProvider.resetKeyIdIndex();
+
         log.info("Updated JWKS successfully");
-        log.trace("JWKS keys: " + conf.getWebKeys().getKeys().stream().map(JSONWebKey::getKid).collect(Collectors.toList()));
-        log.trace("KeyStore keys: " + cryptoProvider.getKeys());
+        if (log.isTraceEnabled()) {
+            log.trace("JWKS keys: " + conf.getWebKeys().getKeys().stream().map(JSONWebKey::getKid).collect(Collectors.toList()));
+            log.trace("KeyStore keys: " + cryptoProvider.getKeys());
+        }
     }
 
     private JSONObject updateKeys(JSONObject jwks) throws Exception {
@@ -0,0 +1,213 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.service;
+
+import com.codahale.metrics.Gauge;
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.gluu.persist.PersistenceEntryManager;
+import org.gluu.persist.exception.EntryPersistenceException;
+import org.gluu.persist.model.base.CustomAttribute;
+import org.gluu.persist.model.base.CustomEntry;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.gluu.oxauth.util.ServerUtil.daemonThreadFactory;
+
+/**
+ * Write-behind of oxLastAccessTime and oxLastLogonTime of clients and users. Updates are coalesced per DN (only
+ * the latest timestamps are kept) and written every accessTimeFlushInterval seconds, at most
+ * accessTimeFlushBatchSize entries per run. Pending updates are written on shutdown. If accessTimeFlushInterval
+ * is not positive, updates are written immediately.
+ */
+@ApplicationScoped
+@Named
+public class LastAccessTimeService {
+
+    private static final String ATTRIBUTE_LAST_ACCESS_TIME = "oxLastAccessTime";
+    private static final String ATTRIBUTE_LAST_LOGON_TIME = "oxLastLogonTime";
+
+    private static final String METRIC_PENDING = "access_time_pending";
+    private static final String METRIC_COALESCING_RATIO = "access_time_coalescing_ratio";
+    private static final String METRIC_REQUESTED = "access_time_requested";
+    private static final String METRIC_WRITTEN = "access_time_written";
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private PersistenceEntryManager ldapEntryManager;
+
+    @Inject
+    private MetricService metricService;
+
+    private final ConcurrentMap<String, PendingUpdate> pending = new ConcurrentHashMap<String, PendingUpdate>();
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory());
+        final long interval = Math.max(1, appConfiguration.getAccessTimeFlushInterval());
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush(appConfiguration.getAccessTimeFlushBatchSize());
+                } catch (Exception e) {
+                    log.error("Failed to write pending access time updates.", e);
+                }
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+
+        metricService.registerComponentGauge(METRIC_PENDING, new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pending.size();
+            }
+        });
+        metricService.registerComponentGauge(METRIC_COALESCING_RATIO, new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                final long writtenCount = written.get();
+                return writtenCount > 0 ? (double) requested.get() / writtenCount : 0;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+
+        final int count = flush(Integer.MAX_VALUE);
+        log.debug("Written {} pending access time updates on shutdown", count);
+    }
+
+    public boolean isWriteBehindEnabled() {
+        return appConfiguration.getAccessTimeFlushInterval() > 0;
+    }
+
+    /**
+     * Updates oxLastAccessTime and/or oxLastLogonTime of entry.
+     *
+     * @param dn             DN of entry
+     * @param objectClasses  object classes of entry
+     * @param lastAccessTime new oxLastAccessTime or null if it should not be updated
+     * @param lastLogonTime  new oxLastLogonTime or null if it should not be updated
+     */
+    public void update(String dn, String[] objectClasses, Date lastAccessTime, Date lastLogonTime) {
+        requested.incrementAndGet();
+        metricService.getComponentCounter(METRIC_REQUESTED).inc();
+
+        final PendingUpdate update = new PendingUpdate(objectClasses, lastAccessTime, lastLogonTime);
+        if (!isWriteBehindEnabled()) {
+            write(dn, update);
+            return;
+        }
+
+        pending.merge(dn, update, PendingUpdate::merge);
+    }
+
+    /**
+     * Writes pending updates.
+     *
+     * @return number of written entries
+     */
+    public int flush(int maxCount) {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        final List<String> dns = new ArrayList<String>(pending.keySet());
+        int count = 0;
+        for (String dn : dns) {
+            if (count >= maxCount) {
+                break;
+            }
+
+            final PendingUpdate update = pending.remove(dn);
+            if (update != null) {
+                write(dn, update);
+                count++;
+            }
+        }
+
+        log.trace("Written {} access time updates, pending: {}", count, pending.size());
+        return count;
+    }
+
+    private void write(String dn, PendingUpdate update) {
+        CustomEntry customEntry = new CustomEntry();
+        customEntry.setDn(dn);
+        customEntry.setCustomObjectClasses(update.objectClasses);
+
+        if (update.lastAccessTime != null) {
+            customEntry.getCustomAttributes().add(new CustomAttribute(ATTRIBUTE_LAST_ACCESS_TIME, ldapEntryManager.encodeTime(dn, update.lastAccessTime)));
+        }
+        if (update.lastLogonTime != null) {
+            customEntry.getCustomAttributes().add(new CustomAttribute(ATTRIBUTE_LAST_LOGON_TIME, ldapEntryManager.encodeTime(dn, update.lastLogonTime)));
+        }
+
+        try {
+            ldapEntryManager.merge(customEntry);
+            written.incrementAndGet();
+            metricService.getComponentCounter(METRIC_WRITTEN).inc();
+        } catch (EntryPersistenceException epe) {
+            log.error("Failed to update oxLastAccessTime and oxLastLogonTime of '{}'", dn);
+        }
+    }
+
+    private static class PendingUpdate {
+
+        private final String[] objectClasses;
+        private final Date lastAccessTime;
+        private final Date lastLogonTime;
+
+        private PendingUpdate(String[] objectClasses, Date lastAccessTime, Date lastLogonTime) {
+            this.objectClasses = objectClasses;
+            this.lastAccessTime = lastAccessTime;
+            this.lastLogonTime = lastLogonTime;
+        }
+
+        private static PendingUpdate merge(PendingUpdate current, PendingUpdate update) {
+            return new PendingUpdate(update.objectClasses != null ? update.objectClasses : current.objectClasses,
+                    latest(current.lastAccessTime, update.lastAccessTime),
+                    latest(current.lastLogonTime, update.lastLogonTime));
+        }
+
+        private static Date latest(Date first, Date second) {
+            if (first == null) {
+                return second;
+            }
+            if (second == null) {
+                return first;
+            }
+            return first.after(second) ? first : second;
+        }
+    }
+}
@@ -6,17 +6,26 @@
 
 package org.gluu.oxauth.service;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Slf4jReporter;
+import com.codahale.metrics.Timer;
 import org.gluu.model.ApplicationType;
 import org.gluu.oxauth.model.configuration.AppConfiguration;
 import org.gluu.persist.PersistenceEntryManager;
 import org.gluu.service.metric.inject.ReportMetric;
 import org.gluu.oxauth.model.config.StaticConfiguration;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.PreDestroy;
 import javax.ejb.DependsOn;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Store and retrieve metric
@@ -30,6 +39,8 @@ public class MetricService extends org.gluu.service.metric.MetricService {
 	
 	public static final String METRIC_SERVICE_COMPONENT_NAME = "metricService";
 
+	private static final String COMPONENT_METRIC_DOMAIN = "org.gluu.oxauth.metrics";
+
 	private static final long serialVersionUID = 7875838160379126796L;
 
 	@Inject
@@ -49,8 +60,47 @@ public class MetricService extends org.gluu.service.metric.MetricService {
     @ReportMetric
     private PersistenceEntryManager ldapEntryManager;
 
+    /**
+     * Registry for internal oxAuth component metrics (caches, queues, etc.) which have no dedicated MetricType
+     */
+    private final transient MetricRegistry componentMetricRegistry = new MetricRegistry();
+
+    private transient JmxReporter componentJmxReporter;
+    private transient Slf4jReporter componentLogReporter;
+
     public void initTimer() {
     	initTimer(this.appConfiguration.getMetricReporterInterval(), this.appConfiguration.getMetricReporterKeepDataDays());
+    	initComponentReporters();
+    }
+
+    /**
+     * Component metrics have no MetricType so they can't be stored by persistence reporter. They are exposed via JMX
+     * and, if metric reporter is enabled, written to log with the same interval.
+     */
+    private void initComponentReporters() {
+        if (componentJmxReporter == null) {
+            componentJmxReporter = JmxReporter.forRegistry(componentMetricRegistry).inDomain(COMPONENT_METRIC_DOMAIN).build();
+            componentJmxReporter.start();
+        }
+
+        if (componentLogReporter == null && isMetricReporterEnabled() && this.appConfiguration.getMetricReporterInterval() > 0) {
+            componentLogReporter = Slf4jReporter.forRegistry(componentMetricRegistry)
+                    .outputTo(LoggerFactory.getLogger(COMPONENT_METRIC_DOMAIN))
+                    .convertRatesTo(TimeUnit.SECONDS).convertDurationsTo(TimeUnit.MILLISECONDS).build();
+            componentLogReporter.start(this.appConfiguration.getMetricReporterInterval(), TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroyComponentReporters() {
+        if (componentLogReporter != null) {
+            componentLogReporter.stop();
+            componentLogReporter = null;
+        }
+        if (componentJmxReporter != null) {
+            componentJmxReporter.stop();
+            componentJmxReporter = null;
+        }
     }
 
 	@Override
@@ -81,4 +131,21 @@ public class MetricService extends org.gluu.service.metric.MetricService {
         return ldapEntryManager;
     }
 
+    public MetricRegistry getComponentMetricRegistry() {
+        return componentMetricRegistry;
+    }
+
+    public Counter getComponentCounter(String metricName) {
+        return componentMetricRegistry.counter(metricName);
+    }
+
+    public Timer getComponentTimer(String metricName) {
+        return componentMetricRegistry.timer(metricName);
+    }
+
+    public void registerComponentGauge(String metricName, Gauge<?> gauge) {
+        componentMetricRegistry.remove(metricName);
+        componentMetricRegistry.register(metricName, gauge);
+    }
+
 }
\ No newline at end of file
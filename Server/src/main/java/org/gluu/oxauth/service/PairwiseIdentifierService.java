@@ -36,6 +36,9 @@ public class PairwiseIdentifierService {
     @Inject
     private AppConfiguration appConfiguration;
 
+    @Inject
+    private BranchService branchService;
+
     public void addBranch(final String userInum) {
         SimpleBranch branch = new SimpleBranch();
         branch.setOrganizationalUnitName("pairwiseIdentifiers");
@@ -45,18 +48,12 @@ public class PairwiseIdentifierService {
     }
 
     public boolean containsBranch(final String userInum) {
-        return ldapEntryManager.contains(getBaseDnForPairwiseIdentifiers(userInum), SimpleBranch.class);
+        return branchService.containsBranch(getBaseDnForPairwiseIdentifiers(userInum));
     }
 
     public void prepareBranch(final String userInum) {
-        if (!ldapEntryManager.hasBranchesSupport(userService.getDnForUser(userInum))) {
-            return;
-        }
-
         // Create pairwise identifier branch if needed
-        if (!containsBranch(userInum)) {
-            addBranch(userInum);
-        }
+        branchService.prepareBranch(getBaseDnForPairwiseIdentifiers(userInum), "pairwiseIdentifiers");
     }
 
     public PairwiseIdentifier findPairWiseIdentifier(String userInum, String sectorIdentifierUri, String clientId) throws Exception {
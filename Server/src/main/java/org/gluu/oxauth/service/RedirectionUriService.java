@@ -16,18 +16,15 @@ import org.gluu.oxauth.model.error.ErrorResponseFactory;
 import org.gluu.oxauth.model.registration.Client;
 import org.gluu.oxauth.model.session.EndSessionErrorResponseType;
 import org.gluu.oxauth.model.util.Util;
-import org.jboss.resteasy.client.ClientRequest;
-import org.jboss.resteasy.client.ClientResponse;
 import org.jetbrains.annotations.NotNull;
-import org.json.JSONArray;
 import org.slf4j.Logger;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.Response;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -51,6 +48,9 @@ public class RedirectionUriService {
     @Inject
     private AppConfiguration appConfiguration;
 
+    @Inject
+    private SectorIdentifierUriService sectorIdentifierUriService;
+
     public String validateRedirectionUri(String clientIdentifier, String redirectionUri) {
         Client client = clientService.getClient(clientIdentifier);
         if (client == null) {
@@ -65,22 +65,11 @@ public class RedirectionUriService {
             String[] redirectUris = client.getRedirectUris();
 
             if (StringUtils.isNotBlank(sectorIdentifierUri)) {
-                ClientRequest clientRequest = new ClientRequest(sectorIdentifierUri);
-                clientRequest.setHttpMethod(HttpMethod.GET);
-
-                ClientResponse<String> clientResponse = clientRequest.get(String.class);
-                int status = clientResponse.getStatus();
-
-                if (status == 200) {
-                    String entity = clientResponse.getEntity(String.class);
-                    JSONArray sectorIdentifierJsonArray = new JSONArray(entity);
-                    redirectUris = new String[sectorIdentifierJsonArray.length()];
-                    for (int i = 0; i < sectorIdentifierJsonArray.length(); i++) {
-                        redirectUris[i] = sectorIdentifierJsonArray.getString(i);
-                    }
-                } else {
+                List<String> sectorRedirectUris = sectorIdentifierUriService.getRedirectUris(sectorIdentifierUri);
+                if (sectorRedirectUris == null) {
                     return null;
                 }
+                redirectUris = sectorRedirectUris.toArray(new String[sectorRedirectUris.size()]);
             }
 
             if (StringUtils.isNotBlank(redirectionUri) && redirectUris != null) {
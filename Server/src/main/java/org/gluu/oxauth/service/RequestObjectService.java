@@ -0,0 +1,179 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.service;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.commons.lang.StringUtils;
+import org.gluu.oxauth.model.authorize.JwtAuthorizationRequest;
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.gluu.oxauth.model.crypto.AbstractCryptoProvider;
+import org.gluu.oxauth.model.exception.InvalidJweException;
+import org.gluu.oxauth.model.exception.InvalidJwtException;
+import org.gluu.oxauth.model.registration.Client;
+import org.gluu.oxauth.model.util.Base64Util;
+import org.gluu.oxauth.model.util.JwtUtil;
+import org.jboss.resteasy.client.ClientRequest;
+import org.jboss.resteasy.client.ClientResponse;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.HttpMethod;
+import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short lived node local cache of request objects passed by request_uri and of parsed JWT authorization
+ * requests. Same request object is used by authorization endpoint and by authorization page, it allows
+ * to fetch it, verify signature and decrypt it once.
+ * <p>
+ * Concurrent lookups of the same request_uri (or request object) wait for a single fetch (parse).
+ */
+@ApplicationScoped
+@Named
+public class RequestObjectService {
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private AbstractCryptoProvider cryptoProvider;
+
+    private Cache<String, Optional<String>> requestObjects;
+    private Cache<String, JwtAuthorizationRequest> jwtRequests;
+
+    @PostConstruct
+    public void init() {
+        final int maxSize = Math.max(appConfiguration.getRequestObjectCacheMaxSize(), 1);
+        final int lifetime = Math.max(appConfiguration.getRequestObjectCacheLifetime(), 0);
+
+        this.requestObjects = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(lifetime, TimeUnit.SECONDS).build();
+        this.jwtRequests = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(lifetime, TimeUnit.SECONDS).build();
+    }
+
+    /**
+     * Returns request object referenced by request_uri. If request_uri has fragment, it's checked against
+     * SHA-256 hash of the request object.
+     *
+     * @param requestUri request_uri
+     * @return request object or null if request_uri doesn't return it or hash doesn't match
+     * @throws Exception if request object can't be retrieved
+     */
+    public String getRequestObject(final String requestUri) throws Exception {
+        if (StringUtils.isBlank(requestUri)) {
+            return null;
+        }
+
+        if (!appConfiguration.getRequestObjectCacheEnabled()) {
+            return fetchRequestObject(requestUri).orNull();
+        }
+
+        try {
+            // Key includes fragment, so request objects with different hashes are never mixed
+            return requestObjects.get(requestUri, new Callable<Optional<String>>() {
+                @Override
+                public Optional<String> call() throws Exception {
+                    return fetchRequestObject(requestUri);
+                }
+            }).orNull();
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Returns parsed (decrypted and verified) JWT authorization request.
+     *
+     * @param request request object
+     * @param client  client which sent request
+     * @return JWT authorization request
+     */
+    public JwtAuthorizationRequest getJwtAuthorizationRequest(final String request, final Client client) throws InvalidJwtException, InvalidJweException {
+        if (!appConfiguration.getRequestObjectCacheEnabled() || StringUtils.isBlank(request) || client == null) {
+            return new JwtAuthorizationRequest(appConfiguration, cryptoProvider, request, client);
+        }
+
+        final String key;
+        try {
+            key = client.getClientId() + "_" + Base64Util.base64urlencode(JwtUtil.getMessageDigestSHA256(request));
+        } catch (Exception e) {
+            throw new InvalidJwtException(e);
+        }
+
+        try {
+            return jwtRequests.get(key, new Callable<JwtAuthorizationRequest>() {
+                @Override
+                public JwtAuthorizationRequest call() throws Exception {
+                    return new JwtAuthorizationRequest(appConfiguration, cryptoProvider, request, client);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            final Exception cause = unwrap(e);
+            if (cause instanceof InvalidJwtException) {
+                throw (InvalidJwtException) cause;
+            }
+            if (cause instanceof InvalidJweException) {
+                throw (InvalidJweException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new InvalidJwtException(cause);
+        }
+    }
+
+    private Optional<String> fetchRequestObject(String requestUri) throws Exception {
+        URI reqUri = new URI(requestUri);
+        String reqUriHash = reqUri.getFragment();
+        String reqUriWithoutFragment = reqUri.getScheme() + ":" + reqUri.getSchemeSpecificPart();
+
+        log.debug("Retrieving request object {} ...", reqUriWithoutFragment);
+
+        ClientRequest clientRequest = new ClientRequest(reqUriWithoutFragment);
+        clientRequest.setHttpMethod(HttpMethod.GET);
+
+        ClientResponse<String> clientResponse = clientRequest.get(String.class);
+        try {
+            int status = clientResponse.getStatus();
+            if (status != 200) {
+                log.debug("Failed to retrieve request object, status: {}, request_uri: {}", status, reqUriWithoutFragment);
+                return Optional.absent();
+            }
+
+            String request = clientResponse.getEntity(String.class);
+            if (StringUtils.isNotBlank(reqUriHash)) {
+                String hash = Base64Util.base64urlencode(JwtUtil.getMessageDigestSHA256(request));
+                if (!StringUtils.equals(reqUriHash, hash)) {
+                    log.debug("Request object hash doesn't match request_uri fragment, request_uri: {}", reqUriWithoutFragment);
+                    return Optional.absent();
+                }
+            }
+
+            return Optional.fromNullable(request);
+        } finally {
+            clientResponse.releaseConnection();
+        }
+    }
+
+    private static Exception unwrap(Exception e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        return e;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.service;
+
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.jboss.resteasy.client.ClientRequest;
+import org.jboss.resteasy.client.ClientResponse;
+import org.json.JSONArray;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node local cache of sector_identifier_uri documents (JSON array of redirect_uri values).
+ * <p>
+ * Documents are kept for configured lifetime and then revalidated with conditional request
+ * (If-None-Match/If-Modified-Since). Fetch failures are cached for shorter lifetime. If revalidation fails because
+ * document host is unreachable or returns server error, previously retrieved document is served stale (but not to
+ * callers which asked for revalidation) and revalidation is retried after failure lifetime. Document is served stale
+ * at most {@link #MAX_STALE_TIME} after it was last retrieved or confirmed by document host.
+ */
+@ApplicationScoped
+@Named
+public class SectorIdentifierUriService {
+
+    public static final String METRIC_HIT = "sector_identifier_cache_hit";
+    public static final String METRIC_MISS = "sector_identifier_cache_miss";
+    public static final String METRIC_NOT_MODIFIED = "sector_identifier_not_modified";
+    public static final String METRIC_FETCH = "sector_identifier_fetch";
+
+    static final long MAX_STALE_TIME = TimeUnit.HOURS.toMillis(1);
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private MetricService metricService;
+
+    private Cache<String, SectorIdentifierEntry> cache;
+
+    @PostConstruct
+    public void init() {
+        this.cache = CacheBuilder.newBuilder().maximumSize(Math.max(appConfiguration.getSectorIdentifierCacheMaxSize(), 1)).build();
+    }
+
+    /**
+     * Returns redirect_uri values listed in sector_identifier_uri document.
+     *
+     * @param sectorIdentifierUri sector_identifier_uri
+     * @return redirect uris or null if document can't be retrieved or parsed
+     */
+    public List<String> getRedirectUris(String sectorIdentifierUri) {
+        return getRedirectUris(sectorIdentifierUri, false);
+    }
+
+    /**
+     * Returns redirect_uri values listed in sector_identifier_uri document.
+     *
+     * @param sectorIdentifierUri sector_identifier_uri
+     * @param revalidate          if true cached document is revalidated even if it's not expired yet and stale
+     *                            document is never returned
+     * @return redirect uris or null if document can't be retrieved or parsed
+     */
+    public List<String> getRedirectUris(String sectorIdentifierUri, boolean revalidate) {
+        if (StringUtils.isBlank(sectorIdentifierUri)) {
+            return null;
+        }
+
+        if (!appConfiguration.getSectorIdentifierCacheEnabled()) {
+            final SectorIdentifierEntry entry = fetch(sectorIdentifierUri, null);
+            return entry.getRedirectUris();
+        }
+
+        SectorIdentifierEntry entry = cache.getIfPresent(sectorIdentifierUri);
+        if (entry != null && !revalidate && !entry.isExpired(System.currentTimeMillis())) {
+            metricService.getComponentCounter(METRIC_HIT).inc();
+            return entry.getRedirectUris();
+        }
+
+        metricService.getComponentCounter(METRIC_MISS).inc();
+        entry = fetch(sectorIdentifierUri, entry);
+        cache.put(sectorIdentifierUri, entry);
+
+        if (revalidate && entry.isStale()) {
+            return null;
+        }
+        return entry.getRedirectUris();
+    }
+
+    public void invalidate(String sectorIdentifierUri) {
+        if (sectorIdentifierUri != null) {
+            cache.invalidate(sectorIdentifierUri);
+        }
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    private SectorIdentifierEntry fetch(String sectorIdentifierUri, SectorIdentifierEntry cachedEntry) {
+        log.debug("Retrieving sector identifier document {} ...", sectorIdentifierUri);
+
+        boolean transientFailure = false;
+        final Timer.Context timerContext = metricService.getComponentTimer(METRIC_FETCH).time();
+        try {
+            ClientRequest clientRequest = new ClientRequest(sectorIdentifierUri);
+            clientRequest.setHttpMethod(HttpMethod.GET);
+            if (cachedEntry != null && cachedEntry.isValid()) {
+                if (cachedEntry.getETag() != null) {
+                    clientRequest.header(HttpHeaders.IF_NONE_MATCH, cachedEntry.getETag());
+                }
+                if (cachedEntry.getLastModified() != null) {
+                    clientRequest.header(HttpHeaders.IF_MODIFIED_SINCE, cachedEntry.getLastModified());
+                }
+            }
+
+            ClientResponse<String> clientResponse = clientRequest.get(String.class);
+            try {
+                int status = clientResponse.getStatus();
+                log.debug("Status: {}, sector_identifier_uri: {}", status, sectorIdentifierUri);
+
+                if (status == 304 && cachedEntry != null && cachedEntry.isValid()) {
+                    metricService.getComponentCounter(METRIC_NOT_MODIFIED).inc();
+                    return new SectorIdentifierEntry(cachedEntry.getRedirectUris(), cachedEntry.getETag(),
+                            cachedEntry.getLastModified(), expirationTime(appConfiguration.getSectorIdentifierCacheLifetime()),
+                            System.currentTimeMillis(), false);
+                }
+
+                if (status == 200) {
+                    final JSONArray sectorIdentifierJsonArray = new JSONArray(clientResponse.getEntity(String.class));
+                    final List<String> redirectUris = new ArrayList<String>(sectorIdentifierJsonArray.length());
+                    for (int i = 0; i < sectorIdentifierJsonArray.length(); i++) {
+                        redirectUris.add(sectorIdentifierJsonArray.getString(i));
+                    }
+
+                    return new SectorIdentifierEntry(Collections.unmodifiableList(redirectUris),
+                            clientResponse.getHeaderString(HttpHeaders.ETAG), clientResponse.getHeaderString(HttpHeaders.LAST_MODIFIED),
+                            expirationTime(appConfiguration.getSectorIdentifierCacheLifetime()), System.currentTimeMillis(), false);
+                }
+
+                transientFailure = status >= 500;
+            } finally {
+                clientResponse.releaseConnection();
+            }
+        } catch (Exception ex) {
+            transientFailure = ExceptionUtils.indexOfType(ex, IOException.class) >= 0;
+            log.debug("Failed to retrieve sector identifier document " + sectorIdentifierUri, ex);
+        } finally {
+            timerContext.stop();
+        }
+
+        final long now = System.currentTimeMillis();
+        final long failureExpirationTime = expirationTime(appConfiguration.getSectorIdentifierCacheFailureLifetime());
+        if (transientFailure && cachedEntry != null && cachedEntry.isValid()) {
+            final long staleUntil = cachedEntry.getValidatedTime() + MAX_STALE_TIME;
+            if (now < staleUntil) {
+                log.debug("Using stale sector identifier document of {} because revalidation failed", sectorIdentifierUri);
+                return new SectorIdentifierEntry(cachedEntry.getRedirectUris(), cachedEntry.getETag(),
+                        cachedEntry.getLastModified(), Math.min(failureExpirationTime, staleUntil), cachedEntry.getValidatedTime(), true);
+            }
+        }
+
+        return new SectorIdentifierEntry(null, null, null, failureExpirationTime, now, false);
+    }
+
+    private static long expirationTime(int lifetimeInSeconds) {
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Math.max(lifetimeInSeconds, 0));
+    }
+
+    private static class SectorIdentifierEntry {
+
+        private final List<String> redirectUris;
+        private final String eTag;
+        private final String lastModified;
+        private final long expirationTime;
+        private final long validatedTime;
+        private final boolean stale;
+
+        SectorIdentifierEntry(List<String> redirectUris, String eTag, String lastModified, long expirationTime, long validatedTime, boolean stale) {
+            this.redirectUris = redirectUris;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.expirationTime = expirationTime;
+            this.validatedTime = validatedTime;
+            this.stale = stale;
+        }
+
+        List<String> getRedirectUris() {
+            return redirectUris;
+        }
+
+        String getETag() {
+            return eTag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return time when document was last retrieved or confirmed by document host
+         */
+        long getValidatedTime() {
+            return validatedTime;
+        }
+
+        boolean isStale() {
+            return stale;
+        }
+
+        boolean isValid() {
+            return redirectUris != null;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expirationTime;
+        }
+    }
+}
@@ -2,9 +2,12 @@ package org.gluu.oxauth.service;
 
 import org.apache.log4j.Logger;
 import org.gluu.oxauth.model.config.ConfigurationFactory;
+import org.gluu.oxauth.model.config.WebKeysConfiguration;
 import org.gluu.oxauth.model.crypto.AbstractCryptoProvider;
+import org.gluu.oxauth.model.crypto.signature.AlgorithmFamily;
 import org.gluu.oxauth.model.crypto.signature.SignatureAlgorithm;
 import org.gluu.oxauth.model.jwk.Algorithm;
+import org.gluu.oxauth.model.jwk.JSONWebKey;
 import org.gluu.oxauth.model.jwk.JSONWebKeySet;
 import org.gluu.oxauth.model.jwk.Use;
 import org.gluu.service.cdi.util.CdiUtil;
@@ -13,6 +16,13 @@ import org.msgpack.core.Preconditions;
 
 import java.security.KeyStoreException;
 import java.security.PrivateKey;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author Yuriy Zabrovarnyy
@@ -21,6 +31,17 @@ public class ServerCryptoProvider extends AbstractCryptoProvider {
 
     private static final Logger LOG = Logger.getLogger(ServerCryptoProvider.class);
 
+    // (alg, use) -> kid index of server web keys. It's shared by all instances because provider is created per call
+    private static final AtomicReference<KeyIdIndex> KEY_ID_INDEX = new AtomicReference<KeyIdIndex>();
+
+    // Configuration is reloaded on kid miss not more often than this interval
+    private static final long MIN_RELOAD_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+    private static final Object RELOAD_LOCK = new Object();
+    private static volatile long reloadCount;
+    private static volatile long lastReloadTime;
+    private static volatile boolean lastReloadResult;
+
     private final ConfigurationFactory configurationFactory;
     private final AbstractCryptoProvider cryptoProvider;
 
@@ -31,24 +52,109 @@ public class ServerCryptoProvider extends AbstractCryptoProvider {
         Preconditions.checkNotNull(cryptoProvider);
     }
 
+    /**
+     * Drops (alg, use) -> kid index. It's rebuilt on next key id lookup from current web keys and keystore.
+     */
+    public static void resetKeyIdIndex() {
+        KEY_ID_INDEX.set(null);
+    }
+
     @Override
     public String getKeyId(JSONWebKeySet jsonWebKeySet, Algorithm algorithm, Use use) throws Exception {
+        if (algorithm == null || AlgorithmFamily.HMAC.equals(algorithm.getFamily())) {
+            return null;
+        }
+
+        if (jsonWebKeySet instanceof WebKeysConfiguration) {
+            return getServerKeyId((WebKeysConfiguration) jsonWebKeySet, algorithm, use);
+        }
+
         try {
             final String kid = cryptoProvider.getKeyId(jsonWebKeySet, algorithm, use);
-            if (!cryptoProvider.getKeys().contains(kid) && configurationFactory.reloadConfFromLdap()) {
+            if (!cryptoProvider.containsKey(kid) && reloadConfiguration()) {
                 return cryptoProvider.getKeyId(jsonWebKeySet, algorithm, use);
             }
             return kid;
 
         } catch (KeyStoreException e) {
             LOG.trace("Try to re-load configuration due to keystore exception (it can be rotated).");
-            if (configurationFactory.reloadConfFromLdap()) {
+            if (reloadConfiguration()) {
                 return cryptoProvider.getKeyId(jsonWebKeySet, algorithm, use);
             }
         }
         return null;
     }
 
+    private String getServerKeyId(WebKeysConfiguration webKeys, Algorithm algorithm, Use use) {
+        KeyIdIndex index = getKeyIdIndex(webKeys);
+        final String kid = index.getKeyId(algorithm, use);
+        if (kid != null && index.isInKeyStore(kid)) {
+            return kid;
+        }
+
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("kid is not in keystore, algorithm: " + algorithm + ", kid: " + kid);
+        }
+        if (reloadConfiguration()) {
+            index = getKeyIdIndex(webKeys);
+            return index.getKeyId(algorithm, use);
+        }
+        return kid;
+    }
+
+    private KeyIdIndex getKeyIdIndex(WebKeysConfiguration webKeys) {
+        final KeyIdIndex index = KEY_ID_INDEX.get();
+        if (index != null && index.isBuiltFrom(webKeys, cryptoProvider)) {
+            return index;
+        }
+
+        final KeyIdIndex newIndex = new KeyIdIndex(webKeys, cryptoProvider);
+        KEY_ID_INDEX.compareAndSet(index, newIndex);
+
+        return newIndex;
+    }
+
+    /**
+     * Reloads configuration from LDAP. Only one thread performs reload, threads which requested reload
+     * while it was in progress get its result instead of querying LDAP again. Reload is not attempted
+     * more often than MIN_RELOAD_INTERVAL, so unknown kids can't make every request query LDAP.
+     */
+    private boolean reloadConfiguration() {
+        final long reloadCountBefore = reloadCount;
+        if (isReloadRateLimited()) {
+            return false;
+        }
+
+        synchronized (RELOAD_LOCK) {
+            if (reloadCount != reloadCountBefore) {
+                return lastReloadResult;
+            }
+            if (isReloadRateLimited()) {
+                return false;
+            }
+
+            try {
+                lastReloadResult = configurationFactory.reloadConfFromLdap();
+            } finally {
+                lastReloadTime = System.currentTimeMillis();
+                reloadCount++;
+            }
+
+            if (lastReloadResult) {
+                resetKeyIdIndex();
+            }
+            return lastReloadResult;
+        }
+    }
+
+    private static boolean isReloadRateLimited() {
+        if (System.currentTimeMillis() - lastReloadTime < MIN_RELOAD_INTERVAL) {
+            LOG.trace("Skipping configuration reload, it was reloaded less than " + MIN_RELOAD_INTERVAL + " ms ago");
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public JSONObject generateKey(Algorithm algorithm, Long expirationTime, Use use) throws Exception {
         return cryptoProvider.generateKey(algorithm, expirationTime, use);
@@ -78,4 +184,69 @@ public class ServerCryptoProvider extends AbstractCryptoProvider {
     public PrivateKey getPrivateKey(String keyId) throws Exception {
         return cryptoProvider.getPrivateKey(keyId);
     }
+
+    private static class KeyIdIndex {
+
+        private final WebKeysConfiguration webKeys;
+        private final AbstractCryptoProvider cryptoProvider;
+
+        private final Map<String, String> keyIds;
+        private final Set<String> keyStoreKeyIds;
+
+        KeyIdIndex(WebKeysConfiguration webKeys, AbstractCryptoProvider cryptoProvider) {
+            this.webKeys = webKeys;
+            this.cryptoProvider = cryptoProvider;
+
+            this.keyStoreKeyIds = Collections.unmodifiableSet(new HashSet<String>(cryptoProvider.getKeys()));
+
+            // For each (alg, use) prefer first key which is in keystore, otherwise last key with such alg and use
+            // (same selection as OxAuthCryptoProvider.getKeyId)
+            Map<String, String> index = new HashMap<String, String>();
+            Map<String, String> fallbackIndex = new HashMap<String, String>();
+            for (JSONWebKey key : webKeys.getKeys()) {
+                if (key.getAlg() == null || key.getKid() == null) {
+                    continue;
+                }
+
+                if (keyStoreKeyIds.contains(key.getKid())) {
+                    putIfAbsent(index, indexKey(key.getAlg(), null), key.getKid());
+                    if (key.getUse() != null) {
+                        putIfAbsent(index, indexKey(key.getAlg(), key.getUse()), key.getKid());
+                    }
+                } else {
+                    fallbackIndex.put(indexKey(key.getAlg(), null), key.getKid());
+                    if (key.getUse() != null) {
+                        fallbackIndex.put(indexKey(key.getAlg(), key.getUse()), key.getKid());
+                    }
+                }
+            }
+            for (Map.Entry<String, String> entry : fallbackIndex.entrySet()) {
+                putIfAbsent(index, entry.getKey(), entry.getValue());
+            }
+
+            this.keyIds = Collections.unmodifiableMap(index);
+        }
+
+        boolean isBuiltFrom(WebKeysConfiguration webKeys, AbstractCryptoProvider cryptoProvider) {
+            return this.webKeys == webKeys && this.cryptoProvider == cryptoProvider;
+        }
+
+        String getKeyId(Algorithm algorithm, Use use) {
+            return keyIds.get(indexKey(algorithm, use));
+        }
+
+        boolean isInKeyStore(String kid) {
+            return keyStoreKeyIds.contains(kid);
+        }
+
+        private static String indexKey(Algorithm algorithm, Use use) {
+            return use == null ? algorithm.getParamName() : algorithm.getParamName() + "|" + use.getParamName();
+        }
+
+        private static void putIfAbsent(Map<String, String> map, String key, String value) {
+            if (!map.containsKey(key)) {
+                map.put(key, value);
+            }
+        }
+    }
 }
@@ -76,6 +76,8 @@ public class SessionIdService {
     public static final String CONSENT_SESSION_ID_COOKIE_NAME = "consent_session_id";
     public static final String SESSION_CUSTOM_STATE = "session_custom_state";
 
+    private static final String LAST_USED_AT_KEY_SUFFIX = "_last_used_at";
+
     @Inject
     private Logger log;
 
@@ -692,6 +694,12 @@ public class SessionIdService {
             if ((unusedLifetime > 0 && isPersisted(prompts)) || forceUpdate) {
                 boolean update = modified;
 
+                if (update && sessionId.isPersisted() && sessionId.getPersistedContent() != null) {
+                    // caller may have changed session, rewrite it only if content is really changed
+                    update = !sessionId.getPersistedContent().equals(sessionId.getContent());
+                }
+
+                boolean touch = false;
                 if (updateLastUsedAt) {
                     Date lastUsedAt = new Date();
                     if (sessionId.getLastUsedAt() != null) {
@@ -703,8 +711,8 @@ public class SessionIdService {
                             return false;
                         }
 
-                        if (diff > 500) { // update only if diff is more than 500ms
-                            update = true;
+                        if (diff > appConfiguration.getSessionIdLastUsedAtGranularity()) { // update only if diff is more than granularity
+                            touch = true;
                             sessionId.setLastUsedAt(lastUsedAt);
                         }
                     } else {
@@ -718,14 +726,22 @@ public class SessionIdService {
                     sessionId.setPersisted(true);
                 }
 
+                // Cache expiration of unauthenticated session is its unused lifetime, so touch must refresh the session key itself
+                if (touch && (!appConfiguration.getSessionIdLastUsedAtSeparateKey() || sessionId.getState() == SessionIdState.UNAUTHENTICATED)) {
+                    update = true;
+                }
+
                 if (isExpired(sessionId)) {
                     log.debug("Session id expired: {} by lifetime property, remove it.", sessionId.getId());
                     remove(sessionId); // expired
                     update = false;
+                    touch = false;
                 }
 
                 if (update) {
                     mergeWithRetry(sessionId, 3);
+                } else if (touch) {
+                    putLastUsedAtInCache(sessionId);
                 }
             }
         } catch (Exception e) {
@@ -762,15 +778,44 @@ public class SessionIdService {
         return AppConfiguration.DEFAULT_SESSION_ID_LIFETIME;
     }
 
-    private void putInCache(SessionId sessionId) {
-        int expirationInSeconds = sessionId.getState() == SessionIdState.UNAUTHENTICATED ?
+    private int getCacheExpirationInSeconds(SessionId sessionId) {
+        return sessionId.getState() == SessionIdState.UNAUTHENTICATED ?
                 appConfiguration.getSessionIdUnauthenticatedUnusedLifetime() :
                 getServerSessionIdLifetimeInSeconds();
-        cacheService.put(expirationInSeconds, sessionId.getId(), sessionId); // first parameter is expiration instead of region for memcached
+    }
+
+    private void putInCache(SessionId sessionId) {
+        cacheService.put(getCacheExpirationInSeconds(sessionId), sessionId.getId(), sessionId); // first parameter is expiration instead of region for memcached
+        sessionId.setPersistedContent(sessionId.getContent());
+    }
+
+    /**
+     * Writes only lastUsedAt of session to small separate key. It is merged into session on read.
+     */
+    private void putLastUsedAtInCache(SessionId sessionId) {
+        cacheService.put(getCacheExpirationInSeconds(sessionId), lastUsedAtKey(sessionId.getId()), sessionId.getLastUsedAt().getTime());
+    }
+
+    private static String lastUsedAtKey(String sessionId) {
+        return sessionId + LAST_USED_AT_KEY_SUFFIX;
     }
 
     private SessionId getFromCache(String sessionId) {
-        return (SessionId) cacheService.get(null, sessionId);
+        final SessionId session = (SessionId) cacheService.get(null, sessionId);
+        if (session == null) {
+            return null;
+        }
+
+        if (appConfiguration.getSessionIdLastUsedAtSeparateKey()) {
+            final Object lastUsedAt = cacheService.get(null, lastUsedAtKey(sessionId));
+            if (lastUsedAt instanceof Long && (session.getLastUsedAt() == null || session.getLastUsedAt().getTime() < (Long) lastUsedAt)) {
+                session.setLastUsedAt(new Date((Long) lastUsedAt));
+            }
+        }
+
+        session.setPersisted(true);
+        session.setPersistedContent(session.getContent());
+        return session;
     }
 
     private SessionId mergeWithRetry(final SessionId sessionId, int maxAttempts) {
@@ -845,6 +890,9 @@ public class SessionIdService {
     public boolean remove(SessionId sessionId) {
         try {
             cacheService.remove(sessionId.getId());
+            if (appConfiguration.getSessionIdLastUsedAtSeparateKey()) {
+                cacheService.remove(lastUsedAtKey(sessionId.getId()));
+            }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
 
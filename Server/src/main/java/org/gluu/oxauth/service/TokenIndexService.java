@@ -0,0 +1,223 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.service;
+
+import com.google.common.util.concurrent.Striped;
+import org.gluu.oxauth.model.common.TokenIndexBucket;
+import org.gluu.oxauth.model.common.TokenIndexNodes;
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.gluu.service.CacheService;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import static org.gluu.oxauth.util.ServerUtil.daemonThreadFactory;
+
+/**
+ * Cached index of token hashes by client id and by session DN.
+ * <p>
+ * Cache has no compare-and-set, so shared keys written by several nodes lose updates. Each node therefore writes its
+ * own buckets only (bucket key contains node id) and serializes writes of the same bucket with node local lock.
+ * Nodes are listed in shared {@link TokenIndexNodes} registry together with the bucket count they use, so readers
+ * find all buckets of all nodes. Bucket count is taken from tokenIndexBucketCount when node starts and is not
+ * changed till restart.
+ * <p>
+ * Registry itself is written by several nodes. Node which lost its registration to concurrent write of another node
+ * adds itself again on the next check, checks are run every {@link #REGISTRATION_CHECK_INTERVAL} seconds.
+ */
+@ApplicationScoped
+@Named
+public class TokenIndexService {
+
+    private static final int REGISTRATION_CHECK_INTERVAL = 30;
+    private static final long MIN_REGISTRATION_LIFETIME = TimeUnit.DAYS.toMillis(1);
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private CacheService cacheService;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Striped<Lock> locks = Striped.lock(256);
+
+    private final Object registrationLock = new Object();
+
+    private int bucketCount;
+
+    // node is registered at least until this time
+    private volatile long registeredUntil;
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        this.bucketCount = Math.max(1, appConfiguration.getTokenIndexBucketCount());
+        this.executor = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory());
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    checkRegistration();
+                } catch (Exception e) {
+                    log.error("Failed to check token index registration.", e);
+                }
+            }
+        }, REGISTRATION_CHECK_INTERVAL, REGISTRATION_CHECK_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds token hash to index. Only bucket of this node which the hash belongs to is read and written back,
+     * expired hashes of that bucket are pruned on the way.
+     */
+    public void add(String indexKey, String tokenHash, long expirationTime) {
+        register(expirationTime);
+
+        final int bucketNumber = TokenIndexBucket.bucketOf(tokenHash, bucketCount);
+        final String bucketKey = TokenIndexBucket.cacheKey(indexKey, nodeId, bucketNumber);
+
+        final Lock lock = locks.get(bucketKey);
+        lock.lock();
+        try {
+            TokenIndexBucket bucket = getBucket(bucketKey);
+            if (bucket == null) {
+                bucket = new TokenIndexBucket(indexKey, nodeId, bucketNumber);
+            }
+
+            final long now = System.currentTimeMillis();
+            bucket.removeExpired(now);
+            bucket.add(tokenHash, expirationTime);
+
+            cacheService.put(Integer.toString(bucket.getExpiresIn(now)), bucketKey, bucket);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns hashes of not expired tokens of index. Buckets of all registered nodes are read one by one, they are
+     * not written back here, expired hashes are pruned by next write of the bucket.
+     */
+    public Set<String> getTokenHashes(String indexKey) {
+        final Set<String> result = new HashSet<String>();
+        final TokenIndexNodes nodes = getNodes();
+        if (nodes == null) {
+            return result;
+        }
+
+        final long now = System.currentTimeMillis();
+        for (Map.Entry<String, TokenIndexNodes.Node> node : nodes.getNodes().entrySet()) {
+            if (node.getValue().getExpirationTime() <= now) {
+                continue;
+            }
+
+            for (int i = 0; i < node.getValue().getBucketCount(); i++) {
+                final TokenIndexBucket bucket = getBucket(TokenIndexBucket.cacheKey(indexKey, node.getKey(), i));
+                if (bucket == null) {
+                    continue;
+                }
+
+                for (Map.Entry<String, Long> entry : bucket.getTokenHashes().entrySet()) {
+                    if (entry.getValue() > now) {
+                        result.add(entry.getKey());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Registers node till expiration of given token. Registration is extended at least by
+     * {@link #MIN_REGISTRATION_LIFETIME}, so registry is rewritten rarely.
+     */
+    private void register(long expirationTime) {
+        if (expirationTime <= registeredUntil) {
+            return;
+        }
+
+        synchronized (registrationLock) {
+            if (expirationTime <= registeredUntil) {
+                return;
+            }
+
+            final long until = Math.max(expirationTime, System.currentTimeMillis() + MIN_REGISTRATION_LIFETIME);
+            putRegistration(until);
+            registeredUntil = until;
+        }
+    }
+
+    /**
+     * Adds node to registry again if its registration was lost to concurrent registry write of another node.
+     */
+    void checkRegistration() {
+        synchronized (registrationLock) {
+            final long until = registeredUntil;
+            if (until <= System.currentTimeMillis()) {
+                return;
+            }
+
+            final TokenIndexNodes nodes = getNodes();
+            if (nodes == null || !nodes.contains(nodeId, bucketCount, until)) {
+                log.debug("Token index registration of node {} is lost, registering again", nodeId);
+                putRegistration(until);
+            }
+        }
+    }
+
+    private void putRegistration(long until) {
+        TokenIndexNodes nodes = getNodes();
+        if (nodes == null) {
+            nodes = new TokenIndexNodes();
+        }
+
+        final long now = System.currentTimeMillis();
+        nodes.removeExpired(now);
+        nodes.put(nodeId, bucketCount, until);
+
+        cacheService.put(Integer.toString(nodes.getExpiresIn(now)), TokenIndexNodes.CACHE_KEY, nodes);
+    }
+
+    private TokenIndexNodes getNodes() {
+        Object o = cacheService.get(null, TokenIndexNodes.CACHE_KEY);
+        if (o instanceof TokenIndexNodes) {
+            return (TokenIndexNodes) o;
+        }
+        return null;
+    }
+
+    private TokenIndexBucket getBucket(String bucketKey) {
+        Object o = cacheService.get(null, bucketKey);
+        if (o instanceof TokenIndexBucket) {
+            return (TokenIndexBucket) o;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.service;
+
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.gluu.oxauth.util.PrecomputedDocument;
+import org.gluu.service.cdi.event.ConfigurationUpdate;
+import org.slf4j.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps pre-encoded well-known documents (discovery, JWKS). Document is built once per configuration
+ * revision (configuration reload, key rotation) and rebuilt not later than wellKnownDocumentCacheLifetime
+ * seconds, so changes of scopes and custom scripts are picked up as well.
+ */
+@ApplicationScoped
+@Named
+public class WellKnownDocumentService {
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static final String HEADER_VARY = "Vary";
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private KeyGeneratorTimer keyGeneratorTimer;
+
+    private final AtomicLong revision = new AtomicLong();
+    private final ConcurrentMap<String, PrecomputedDocument> documents = new ConcurrentHashMap<String, PrecomputedDocument>();
+
+    public void updateConfiguration(@Observes @ConfigurationUpdate AppConfiguration appConfiguration) {
+        revision.incrementAndGet();
+        log.trace("Well-known documents are invalidated by configuration update");
+    }
+
+    public void invalidate() {
+        revision.incrementAndGet();
+    }
+
+    public PrecomputedDocument getDocument(String name, Callable<String> builder) throws Exception {
+        final long currentRevision = revision.get();
+        if (!appConfiguration.getWellKnownDocumentCacheEnabled()) {
+            return PrecomputedDocument.create(builder.call(), currentRevision);
+        }
+
+        PrecomputedDocument document = documents.get(name);
+        if (isValid(document, currentRevision)) {
+            return document;
+        }
+
+        synchronized (documents) {
+            document = documents.get(name);
+            if (isValid(document, currentRevision)) {
+                return document;
+            }
+
+            document = PrecomputedDocument.create(builder.call(), currentRevision);
+            documents.put(name, document);
+            log.debug("Built well-known document: {}, revision: {}, etag: {}", name, currentRevision, document.getEtag());
+            return document;
+        }
+    }
+
+    private boolean isValid(PrecomputedDocument document, long currentRevision) {
+        return document != null && document.getRevision() == currentRevision
+                && System.currentTimeMillis() - document.getCreatedAt() < appConfiguration.getWellKnownDocumentCacheLifetime() * 1000L;
+    }
+
+    /**
+     * Returns max-age for Cache-Control. It does not exceed time left till next key rotation, so clients
+     * re-fetch documents when new keys are published.
+     */
+    public int getMaxAge() {
+        int maxAge = Math.max(0, appConfiguration.getWellKnownDocumentMaxAge());
+        if (appConfiguration.getKeyRegenerationEnabled()) {
+            final long nextRotation = keyGeneratorTimer.getNextKeyRegenerationTime();
+            if (nextRotation > 0) {
+                maxAge = (int) Math.min(maxAge, Math.max(0, (nextRotation - System.currentTimeMillis()) / 1000));
+            }
+        }
+        return maxAge;
+    }
+
+    public void write(HttpServletRequest request, HttpServletResponse response, PrecomputedDocument document) throws IOException {
+        response.setHeader(HEADER_ETAG, document.getEtag());
+        response.setHeader(HEADER_CACHE_CONTROL, "public, max-age=" + getMaxAge());
+        response.setHeader(HEADER_VARY, HEADER_ACCEPT_ENCODING);
+
+        if (document.isNotModified(request.getHeader(HEADER_IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] content = document.getContent();
+        if (PrecomputedDocument.acceptsGzip(request.getHeader(HEADER_ACCEPT_ENCODING))) {
+            content = document.getGzipContent();
+            response.setHeader(HEADER_CONTENT_ENCODING, "gzip");
+        }
+
+        response.setContentLength(content.length);
+        try (OutputStream out = response.getOutputStream()) {
+            out.write(content);
+        }
+    }
+
+    public Response.ResponseBuilder toResponse(HttpServletRequest request, PrecomputedDocument document) {
+        final Response.ResponseBuilder builder;
+        if (document.isNotModified(request.getHeader(HEADER_IF_NONE_MATCH))) {
+            builder = Response.notModified();
+        } else if (PrecomputedDocument.acceptsGzip(request.getHeader(HEADER_ACCEPT_ENCODING))) {
+            builder = Response.ok(document.getGzipContent()).header(HEADER_CONTENT_ENCODING, "gzip");
+        } else {
+            builder = Response.ok(document.getContent());
+        }
+
+        return builder.header(HEADER_ETAG, document.getEtag())
+                .header(HEADER_CACHE_CONTROL, "public, max-age=" + getMaxAge())
+                .header(HEADER_VARY, HEADER_ACCEPT_ENCODING);
+    }
+}
@@ -0,0 +1,7 @@
+package org.gluu.oxauth.service.cdi.event;
+
+/**
+ * Periodic event which triggers background refresh of cached client JWKS documents
+ */
+public class JwksCacheRefreshEvent {
+}
@@ -17,6 +17,7 @@ import org.gluu.search.filter.Filter;
 import org.gluu.util.StringHelper;
 import org.slf4j.Logger;
 import org.gluu.oxauth.model.config.StaticConfiguration;
+import org.gluu.oxauth.service.BranchService;
 import org.gluu.oxauth.service.UserService;
 
 import javax.ejb.Stateless;
@@ -47,6 +48,9 @@ public class DeviceRegistrationService {
 	@Inject
 	private StaticConfiguration staticConfiguration;
 
+	@Inject
+	private BranchService branchService;
+
 	public void addBranch(final String userInum) {
 		SimpleBranch branch = new SimpleBranch();
 		branch.setOrganizationalUnitName("fido");
@@ -56,19 +60,12 @@ public class DeviceRegistrationService {
 	}
 
 	public boolean containsBranch(final String userInum) {
-		return ldapEntryManager.contains(getBaseDnForU2fUserDevices(userInum), SimpleBranch.class);
+		return branchService.containsBranch(getBaseDnForU2fUserDevices(userInum));
 	}
 
 	public void prepareBranch(final String userInum) {
-        String baseDn = getBaseDnForU2fUserDevices(userInum);
-        if (!ldapEntryManager.hasBranchesSupport(baseDn)) {
-        	return;
-        }
-
 		// Create U2F user device registrations branch if needed
-		if (!containsBranch(userInum)) {
-			addBranch(userInum);
-		}
+		branchService.prepareBranch(getBaseDnForU2fUserDevices(userInum), "fido");
 	}
 
 	public DeviceRegistration findUserDeviceRegistration(String userInum, String deviceId, String... returnAttributes) {
@@ -17,8 +17,10 @@ import org.gluu.oxauth.model.common.ScopeType;
 import org.gluu.oxauth.model.configuration.AppConfiguration;
 import org.gluu.oxauth.service.AttributeService;
 import org.gluu.oxauth.service.ScopeService;
+import org.gluu.oxauth.service.WellKnownDocumentService;
 import org.gluu.oxauth.service.external.ExternalAuthenticationService;
 import org.gluu.oxauth.service.external.ExternalDynamicScopeService;
+import org.gluu.oxauth.util.PrecomputedDocument;
 import org.gluu.oxauth.util.ServerUtil;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -31,7 +33,6 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.*;
 
 import static org.gluu.oxauth.model.configuration.ConfigurationResponseClaim.*;
@@ -47,6 +48,8 @@ public class OpenIdConfiguration extends HttpServlet {
 
 	private static final long serialVersionUID = -8224898157373678903L;
 
+	private static final String DOCUMENT_NAME = "openid-configuration";
+
 	@Inject
 	private Logger log;
 
@@ -71,6 +74,9 @@ public class OpenIdConfiguration extends HttpServlet {
 	@Inject
 	private CIBAConfigurationProxy cibaConfigurationProxy;
 
+	@Inject
+	private WellKnownDocumentService wellKnownDocumentService;
+
 	/**
 	 * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
 	 * methods.
@@ -81,7 +87,15 @@ public class OpenIdConfiguration extends HttpServlet {
 	protected void processRequest(HttpServletRequest servletRequest, HttpServletResponse httpResponse) {
 
 		httpResponse.setContentType("application/json");
-        try (PrintWriter out = httpResponse.getWriter()) {
+        try {
+            final PrecomputedDocument document = wellKnownDocumentService.getDocument(DOCUMENT_NAME, this::createDocument);
+            wellKnownDocumentService.write(servletRequest, httpResponse, document);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+	}
+
+	private String createDocument() throws Exception {
             JSONObject jsonObj = new JSONObject();
 
             jsonObj.put(ISSUER, appConfiguration.getIssuer());
@@ -298,10 +312,7 @@ public class OpenIdConfiguration extends HttpServlet {
             // CIBA Configuration
             cibaConfigurationProxy.processConfiguration(jsonObj);
 
-            out.println(ServerUtil.toPrettyJson(jsonObj).replace("\\/", "/"));
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-        }
+            return ServerUtil.toPrettyJson(jsonObj).replace("\\/", "/");
 	}
 
 	/**
@@ -0,0 +1,193 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.session.ws.rs;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.gluu.oxauth.service.MetricService;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient4Engine;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Form;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.gluu.oxauth.util.ServerUtil.daemonThreadFactory;
+
+/**
+ * Delivers back-channel logout requests to RPs. All end_session requests share one bounded pool of
+ * threads and one pool of keep-alive HTTP connections. Failed calls are retried with exponential back-off.
+ */
+@ApplicationScoped
+@Named
+public class BackchannelLogoutDispatcher {
+
+    private static final String METRIC_PENDING = "backchannel_logout_pending";
+    private static final String METRIC_REJECTED = "backchannel_logout_rejected";
+    private static final String METRIC_DELIVERY = "backchannel_logout_delivery";
+    private static final String METRIC_FAILURE = "backchannel_logout_failure";
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private MetricService metricService;
+
+    private ScheduledThreadPoolExecutor executor;
+    private Client httpClient;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        final int threads = Math.max(1, appConfiguration.getBackchannelLogoutThreads());
+        this.executor = new ScheduledThreadPoolExecutor(threads, daemonThreadFactory());
+        this.executor.setRemoveOnCancelPolicy(true);
+
+        final int timeout = appConfiguration.getBackchannelLogoutTimeout();
+        final PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
+        cm.setMaxTotal(threads * 2);
+        cm.setDefaultMaxPerRoute(threads);
+
+        final CloseableHttpClient client = HttpClients.custom()
+                .setDefaultRequestConfig(RequestConfig.custom().setCookieSpec(CookieSpecs.STANDARD)
+                        .setConnectTimeout(timeout).setConnectionRequestTimeout(timeout).setSocketTimeout(timeout).build())
+                .setConnectionManager(cm).build();
+        final ApacheHttpClient4Engine engine = new ApacheHttpClient4Engine(client);
+        engine.setFollowRedirects(true);
+        this.httpClient = new ResteasyClientBuilder().httpEngine(engine).build();
+
+        metricService.registerComponentGauge(METRIC_PENDING, new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pending.get();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+    /**
+     * Schedules delivery of logout_token to RP.
+     *
+     * @return future which is completed with true if RP accepted logout_token, false if delivery failed or was rejected
+     */
+    public CompletableFuture<Boolean> dispatch(String clientId, String backchannelLogoutUri, String logoutToken) {
+        final CompletableFuture<Boolean> result = new CompletableFuture<Boolean>();
+        if (pending.incrementAndGet() > appConfiguration.getBackchannelLogoutQueueCapacity()) {
+            pending.decrementAndGet();
+            metricService.getComponentCounter(METRIC_REJECTED).inc();
+            log.error("Back-channel logout queue is full, skipped call of backchannel_logout_uri: " + backchannelLogoutUri);
+            result.complete(false);
+            return result;
+        }
+
+        schedule(new Delivery(clientId, backchannelLogoutUri, logoutToken, result), 0);
+        return result;
+    }
+
+    private void schedule(Delivery delivery, long delay) {
+        try {
+            executor.schedule(delivery, delay, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.error("Failed to schedule call of backchannel_logout_uri: " + delivery.backchannelLogoutUri, e);
+            delivery.finish(false);
+        }
+    }
+
+    private boolean callRp(Delivery delivery) {
+        log.debug("Calling RP with backchannel, client_id: " + delivery.clientId + ", backchannel_logout_uri: " + delivery.backchannelLogoutUri);
+
+        final Timer.Context timerContext = metricService.getComponentTimer(METRIC_DELIVERY).time();
+        try (Response response = httpClient.target(delivery.backchannelLogoutUri).request().post(Entity.form(new Form("logout_token", delivery.logoutToken)))) {
+            final int status = response.getStatus();
+            log.debug("Backchannel RP response, status: " + status + ", client_id: " + delivery.clientId + ", backchannel_logout_uri: " + delivery.backchannelLogoutUri);
+            if (status >= 500) {
+                delivery.retryable = true;
+                return false;
+            }
+            delivery.retryable = false;
+            return status < 400;
+        } catch (Exception e) {
+            log.error("Failed to call backchannel_logout_uri: " + delivery.backchannelLogoutUri + ", client_id: " + delivery.clientId + ", attempt: " + (delivery.attempt + 1) + ", message: " + e.getMessage());
+            delivery.retryable = true;
+            return false;
+        } finally {
+            timerContext.stop();
+        }
+    }
+
+    private class Delivery implements Runnable {
+
+        private final String clientId;
+        private final String backchannelLogoutUri;
+        private final String logoutToken;
+        private final CompletableFuture<Boolean> result;
+
+        private int attempt;
+        private boolean retryable;
+
+        private Delivery(String clientId, String backchannelLogoutUri, String logoutToken, CompletableFuture<Boolean> result) {
+            this.clientId = clientId;
+            this.backchannelLogoutUri = backchannelLogoutUri;
+            this.logoutToken = logoutToken;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            if (callRp(this)) {
+                finish(true);
+                return;
+            }
+
+            if (retryable && attempt < appConfiguration.getBackchannelLogoutRetries()) {
+                final long delay = (long) appConfiguration.getBackchannelLogoutRetryDelay() << Math.min(attempt, 16);
+                attempt++;
+                schedule(this, delay);
+                return;
+            }
+
+            metricService.getComponentCounter(METRIC_FAILURE).inc();
+            log.error("Back-channel logout failed, client_id: " + clientId + ", backchannel_logout_uri: " + backchannelLogoutUri + ", attempts: " + (attempt + 1));
+            finish(false);
+        }
+
+        private void finish(boolean success) {
+            pending.decrementAndGet();
+            result.complete(success);
+        }
+    }
+}
@@ -48,10 +48,14 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * @author Javier Rojas Blum
@@ -101,6 +105,9 @@ public class EndSessionRestWebServiceImpl implements EndSessionRestWebService {
     @Inject
     private LogoutTokenFactory logoutTokenFactory;
 
+    @Inject
+    private BackchannelLogoutDispatcher backchannelLogoutDispatcher;
+
     @Override
     public Response requestEndSession(String idTokenHint, String postLogoutRedirectUri, String state, String sessionId,
                                       HttpServletRequest httpRequest, HttpServletResponse httpResponse, SecurityContext sec) {
@@ -190,17 +197,26 @@ public class EndSessionRestWebServiceImpl implements EndSessionRestWebService {
 
         log.trace("backchannel_redirect_uri's: " + backchannelUris);
 
-        final ExecutorService executorService = EndSessionUtils.getExecutorService();
+        final List<CompletableFuture<Boolean>> deliveries = new ArrayList<CompletableFuture<Boolean>>();
         for (final Map.Entry<String, Client> entry : backchannelUris.entrySet()) {
             final JsonWebResponse logoutToken = logoutTokenFactory.createLogoutToken(entry.getValue(), grant != null ? grant.getUser() : null, sessionId);
             if (logoutToken == null) {
                 log.error("Failed to create logout_token for client: " + entry.getValue().getClientId());
                 return;
             }
-            executorService.execute(() -> EndSessionUtils.callRpWithBackchannelUri(entry.getKey(), logoutToken.toString()));
+            deliveries.add(backchannelLogoutDispatcher.dispatch(entry.getValue().getClientId(), entry.getKey(), logoutToken.toString()));
+        }
+
+        if (appConfiguration.getBackchannelLogoutAsynchronous()) {
+            log.trace("Backchannel calls are delivered asynchronously.");
+            return;
+        }
+
+        try {
+            CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[deliveries.size()])).get(30, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            log.debug("Not all backchannel calls are finished: " + e.getMessage());
         }
-        executorService.shutdown();
-        executorService.awaitTermination(30, TimeUnit.SECONDS);
         log.trace("Finished backchannel calls.");
     }
 
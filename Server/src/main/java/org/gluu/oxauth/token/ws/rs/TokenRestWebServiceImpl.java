@@ -184,6 +184,7 @@ public class TokenRestWebServiceImpl implements TokenRestWebService {
                 validatePKCE(authorizationCodeGrant, codeVerifier, oAuth2AuditLog);
 
                 authorizationCodeGrant.setIsCachedWithNoPersistence(false);
+                authorizationCodeGrant.deferSave(); // grant modifications made below are written once by flushSave()
                 authorizationCodeGrant.save();
 
                 RefreshToken reToken = null;
@@ -217,6 +218,7 @@ public class TokenRestWebServiceImpl implements TokenRestWebService {
                             authorizationCodeGrant, includeIdTokenClaims, authorizationCodePreProcessing);
                 }
 
+                authorizationCodeGrant.flushSave();
 
                 oAuth2AuditLog.updateOAuth2AuditLog(authorizationCodeGrant, true);
 
@@ -231,16 +233,18 @@ public class TokenRestWebServiceImpl implements TokenRestWebService {
                     return response(error(400, TokenErrorResponseType.INVALID_GRANT, "grant_type is not present in client."), oAuth2AuditLog);
                 }
 
-                AuthorizationGrant authorizationGrant = authorizationGrantList.getAuthorizationGrantByRefreshToken(client.getClientId(), refreshToken);
+                AuthorizationGrant authorizationGrant = authorizationGrantList.getAuthorizationGrantByRefreshToken(client, refreshToken);
 
                 if (authorizationGrant == null) {
                     return response(error(400, TokenErrorResponseType.INVALID_GRANT, "Unable to find grant object by refresh token or otherwise token type or client does not match."), oAuth2AuditLog);
                 }
 
+                authorizationGrant.deferSave();
+
                 // The authorization server MAY issue a new refresh token, in which case
                 // the client MUST discard the old refresh token and replace it with the new refresh token.
                 RefreshToken reToken = authorizationGrant.createRefreshToken();
-                grantService.removeByCode(refreshToken);
+                authorizationGrant.removeToken(refreshToken);
 
                 if (scope != null && !scope.isEmpty()) {
                     scope = authorizationGrant.checkScopesPolicy(scope);
@@ -258,6 +262,8 @@ public class TokenRestWebServiceImpl implements TokenRestWebService {
                             null, authorizationGrant, includeIdTokenClaims, idTokenTokingBindingPreprocessing);
                 }
 
+                authorizationGrant.flushSave();
+
                 builder.entity(getJSonResponse(accToken,
                         accToken.getTokenType(),
                         accToken.getExpiresIn(),
@@ -271,6 +277,7 @@ public class TokenRestWebServiceImpl implements TokenRestWebService {
                 }
 
                 ClientCredentialsGrant clientCredentialsGrant = authorizationGrantList.createClientCredentialsGrant(new User(), client); // TODO: fix the user arg
+                clientCredentialsGrant.deferSave();
 
                 if (scope != null && !scope.isEmpty()) {
                     scope = clientCredentialsGrant.checkScopesPolicy(scope);
@@ -287,6 +294,8 @@ public class TokenRestWebServiceImpl implements TokenRestWebService {
                             null, clientCredentialsGrant, includeIdTokenClaims, idTokenTokingBindingPreprocessing);
                 }
 
+                clientCredentialsGrant.flushSave();
+
                 oAuth2AuditLog.updateOAuth2AuditLog(clientCredentialsGrant, true);
                 builder.entity(getJSonResponse(accessToken,
                         accessToken.getTokenType(),
@@ -332,6 +341,7 @@ public class TokenRestWebServiceImpl implements TokenRestWebService {
 
                 if (user != null) {
                     ResourceOwnerPasswordCredentialsGrant resourceOwnerPasswordCredentialsGrant = authorizationGrantList.createResourceOwnerPasswordCredentialsGrant(user, client);
+                    resourceOwnerPasswordCredentialsGrant.deferSave();
                     SessionId sessionId = identity.getSessionId();
                     if (sessionId != null) {
                         resourceOwnerPasswordCredentialsGrant.setAcrValues(OxConstants.SCRIPT_TYPE_INTERNAL_RESERVED_NAME);
@@ -368,6 +378,8 @@ public class TokenRestWebServiceImpl implements TokenRestWebService {
                                 null, resourceOwnerPasswordCredentialsGrant, includeIdTokenClaims, idTokenTokingBindingPreprocessing);
                     }
 
+                    resourceOwnerPasswordCredentialsGrant.flushSave();
+
                     oAuth2AuditLog.updateOAuth2AuditLog(resourceOwnerPasswordCredentialsGrant, true);
                     builder.entity(getJSonResponse(accessToken,
                             accessToken.getTokenType(),
@@ -10,6 +10,7 @@ import org.apache.commons.lang.StringUtils;
 import org.gluu.oxauth.model.configuration.AppConfiguration;
 import org.gluu.oxauth.model.uma.UmaPermissionList;
 import org.gluu.oxauth.model.uma.persistence.UmaPermission;
+import org.gluu.oxauth.service.BranchService;
 import org.gluu.persist.PersistenceEntryManager;
 import org.gluu.persist.model.base.SimpleBranch;
 import org.gluu.search.filter.Filter;
@@ -49,6 +50,9 @@ public class UmaPermissionService {
     @Inject
     private AppConfiguration appConfiguration;
 
+    @Inject
+    private BranchService branchService;
+
     public static String getDn(String clientDn, String ticket) {
         return String.format("oxTicket=%s,%s", ticket, getBranchDn(clientDn));
     }
@@ -153,13 +157,11 @@ public class UmaPermissionService {
     }
 
     public void addBranchIfNeeded(String clientDn) {
-        if (!containsBranch(clientDn)) {
-            addBranch(clientDn);
-        }
+        branchService.prepareBranch(getBranchDn(clientDn), ORGUNIT_OF_RESOURCE_PERMISSION);
     }
 
     public boolean containsBranch(String clientDn) {
-        return ldapEntryManager.contains(getBranchDn(clientDn), SimpleBranch.class);
+        return branchService.containsBranch(getBranchDn(clientDn));
     }
 
     public String changeTicket(List<UmaPermission> permissions, Map<String, String> attributes) {
@@ -16,6 +16,7 @@ import org.gluu.oxauth.model.jwt.Jwt;
 import org.gluu.oxauth.model.registration.Client;
 import org.gluu.oxauth.model.token.JwtSigner;
 import org.gluu.oxauth.model.uma.persistence.UmaPermission;
+import org.gluu.oxauth.service.BranchService;
 import org.gluu.oxauth.service.ClientService;
 import org.gluu.oxauth.uma.authorization.UmaPCT;
 import org.gluu.oxauth.uma.authorization.UmaRPT;
@@ -74,7 +75,8 @@ public class UmaRptService {
     @Inject
     private ClientService clientService;
 
-    private boolean containsBranch = false;
+    @Inject
+    private BranchService branchService;
 
     public String createDn(String tokenCode) {
         return String.format("tknCde=%s,%s", TokenHashUtil.hash(tokenCode), branchDn());
@@ -270,14 +272,10 @@ public class UmaRptService {
     }
 
     public void addBranchIfNeeded() {
-        if (!containsBranch() && !containsBranch) {
-            addBranch();
-        } else {
-            containsBranch = true;
-        }
+        branchService.prepareBranch(branchDn(), ORGUNIT_OF_RPT);
     }
 
     public boolean containsBranch() {
-        return ldapEntryManager.contains(branchDn(), SimpleBranch.class);
+        return branchService.containsBranch(branchDn());
     }
 }
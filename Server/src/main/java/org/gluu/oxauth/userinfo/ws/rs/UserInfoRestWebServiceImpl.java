@@ -37,7 +37,6 @@ import org.gluu.oxauth.model.registration.Client;
 import org.gluu.oxauth.model.token.JsonWebResponse;
 import org.gluu.oxauth.model.userinfo.UserInfoErrorResponseType;
 import org.gluu.oxauth.model.userinfo.UserInfoParamsValidator;
-import org.gluu.oxauth.model.util.JwtUtil;
 import org.gluu.oxauth.model.util.Util;
 import org.gluu.oxauth.service.*;
 import org.gluu.oxauth.service.external.ExternalDynamicScopeService;
@@ -114,6 +113,9 @@ public class UserInfoRestWebServiceImpl implements UserInfoRestWebService {
     @Inject
     private PersistenceEntryManager entryManager;
 
+    @Inject
+    private JwksCacheService jwksCacheService;
+
     @Override
     public Response requestUserInfoGet(String accessToken, String authorization, HttpServletRequest request, SecurityContext securityContext) {
         return requestUserInfo(accessToken, authorization, request, securityContext);
@@ -177,7 +179,7 @@ public class UserInfoRestWebServiceImpl implements UserInfoRestWebService {
 
                     User currentUser = authorizationGrant.getUser();
                     try {
-                        currentUser = userService.getUserByDn(authorizationGrant.getUserDn());
+                        currentUser = userService.getUserByDnReadOnly(authorizationGrant.getUserDn());
                     } catch (EntryPersistenceException ex) {
                         log.warn("Failed to reload user entry: '{}'", authorizationGrant.getUserDn());
                     }
@@ -284,7 +286,7 @@ public class UserInfoRestWebServiceImpl implements UserInfoRestWebService {
         // Encryption
         if (keyEncryptionAlgorithm == KeyEncryptionAlgorithm.RSA_OAEP
                 || keyEncryptionAlgorithm == KeyEncryptionAlgorithm.RSA1_5) {
-            JSONObject jsonWebKeys = JwtUtil.getJSONWebKeys(authorizationGrant.getClient().getJwksUri());
+            JSONObject jsonWebKeys = jwksCacheService.getJwks(authorizationGrant.getClient().getJwksUri());
             String keyId = new ServerCryptoProvider(cryptoProvider).getKeyId(JSONWebKeySet.fromJSONObject(jsonWebKeys),
                     Algorithm.fromString(keyEncryptionAlgorithm.getName()),
                     Use.ENCRYPTION);
@@ -0,0 +1,108 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.gluu.oxauth.model.util.Base64Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Immutable pre-encoded document (UTF-8 bytes, gzip variant and strong ETag) served as is by
+ * well-known endpoints until configuration changes.
+ */
+public class PrecomputedDocument {
+
+    private final byte[] content;
+    private final byte[] gzipContent;
+    private final String etag;
+    private final long revision;
+    private final long createdAt;
+
+    private PrecomputedDocument(byte[] content, byte[] gzipContent, String etag, long revision) {
+        this.content = content;
+        this.gzipContent = gzipContent;
+        this.etag = etag;
+        this.revision = revision;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public static PrecomputedDocument create(String document, long revision) throws IOException, NoSuchAlgorithmException {
+        final byte[] content = document.getBytes(StandardCharsets.UTF_8);
+
+        final ByteArrayOutputStream gzipped = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(content);
+        }
+
+        final byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+        final String etag = "\"" + Base64Util.base64urlencode(digest) + "\"";
+
+        return new PrecomputedDocument(content, gzipped.toByteArray(), etag, revision);
+    }
+
+    /**
+     * Checks If-None-Match header value against ETag of the document.
+     *
+     * @param ifNoneMatch If-None-Match header value (may be null)
+     * @return true if client already has this document
+     */
+    public boolean isNotModified(String ifNoneMatch) {
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (StringUtils.isBlank(acceptEncoding)) {
+            return false;
+        }
+
+        for (String encoding : acceptEncoding.split(",")) {
+            final String[] parts = encoding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            // gzip;q=0 means that gzip is not acceptable
+            return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public byte[] getGzipContent() {
+        return gzipContent;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.dev;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+
+import org.gluu.oxauth.model.common.CacheGrant;
+import org.gluu.oxauth.model.common.GrantType;
+import org.gluu.oxauth.model.common.ResponseType;
+import org.gluu.oxauth.model.common.User;
+import org.gluu.oxauth.model.registration.Client;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Compares size and serialization time of compact CacheGrant with previous format (full user and client).
+ */
+public class CacheGrantSerializationBenchmark {
+
+    private static final int WARM_UP = 20000;
+    private static final int ITERATIONS = 100000;
+
+    public static void main(String[] args) throws Exception {
+        final User user = testUser();
+        final Client client = testClient();
+
+        final CacheGrant grant = testGrant(user, client);
+        final LegacyCacheGrant legacyGrant = new LegacyCacheGrant(grant, user, client);
+
+        run("legacy", legacyGrant, WARM_UP);
+        run("compact", grant, WARM_UP);
+
+        run("legacy", legacyGrant, ITERATIONS);
+        run("compact", grant, ITERATIONS);
+    }
+
+    private static void run(String name, Object object, int iterations) throws Exception {
+        int size = 0;
+        long serializationTime = 0;
+        long deserializationTime = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            final byte[] bytes = serialize(object);
+            serializationTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            deserialize(bytes);
+            deserializationTime += System.nanoTime() - start;
+
+            size = bytes.length;
+        }
+
+        System.out.println(String.format("%-8s size: %6d bytes, serialization: %6d ns/op, deserialization: %6d ns/op",
+                name, size, serializationTime / iterations, deserializationTime / iterations));
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(object);
+        }
+        return bos.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    private static User testUser() {
+        User user = new User();
+        user.setUserId("admin");
+        user.setDn("inum=" + UUID.randomUUID() + ",ou=people,o=gluu");
+        user.setAttribute("uid", "admin");
+        user.setAttribute("givenName", "Admin");
+        user.setAttribute("sn", "User");
+        user.setAttribute("displayName", "Default Admin User");
+        user.setAttribute("mail", "admin@example.com");
+        user.setAttribute("memberOf", new String[]{"inum=60B7,ou=groups,o=gluu"});
+        user.setAttribute("oxAuthPersistentJWT", new String[]{UUID.randomUUID().toString(), UUID.randomUUID().toString()});
+        user.setAttribute("oxExternalUid", new String[]{"passport-google:" + UUID.randomUUID()});
+        return user;
+    }
+
+    private static Client testClient() {
+        Client client = new Client();
+        client.setClientId(UUID.randomUUID().toString());
+        client.setDn("inum=" + client.getClientId() + ",ou=clients,o=gluu");
+        client.setClientSecret(UUID.randomUUID().toString());
+        client.setClientName("Benchmark client");
+        client.setRedirectUris(new String[]{"https://rp.example.com/callback", "https://rp.example.com/callback2"});
+        client.setResponseTypes(new ResponseType[]{ResponseType.CODE, ResponseType.ID_TOKEN});
+        client.setGrantTypes(new GrantType[]{GrantType.AUTHORIZATION_CODE, GrantType.REFRESH_TOKEN});
+        client.setContacts(new String[]{"admin@example.com"});
+        client.setJwksUri("https://rp.example.com/jwks");
+        client.setScopes(new String[]{"inum=F0C4,ou=scopes,o=gluu", "inum=43F1,ou=scopes,o=gluu", "inum=764C,ou=scopes,o=gluu"});
+        return client;
+    }
+
+    private static CacheGrant testGrant(User user, Client client) {
+        CacheGrant grant = new CacheGrant();
+        grant.setAcrValues("basic");
+        grant.setAuthenticationTime(new Date());
+        grant.setAuthorizationCodeString(UUID.randomUUID().toString());
+        grant.setClient(client);
+        grant.setGrantId(UUID.randomUUID().toString());
+        grant.setNonce(UUID.randomUUID().toString());
+        grant.setScopes(Sets.newHashSet("openid", "profile", "email"));
+        grant.setSessionDn("oxAuthSessionId=" + UUID.randomUUID() + ",ou=sessions,o=gluu");
+        grant.setUser(user);
+        return grant;
+    }
+
+    /**
+     * Same fields as CacheGrant had before compact form was introduced.
+     */
+    private static class LegacyCacheGrant implements Serializable {
+
+        private String authorizationCodeString;
+        private Date authorizationCodeCreationDate;
+        private Date authorizationCodeExpirationDate;
+
+        private User user;
+        private Client client;
+        private Date authenticationTime;
+        private Set<String> scopes;
+        private String grantId;
+        private String tokenBindingHash;
+        private String nonce;
+        private String codeChallenge;
+        private String codeChallengeMethod;
+        private String claims;
+
+        private String acrValues;
+        private String sessionDn;
+        private int expiresIn = 1;
+
+        private LegacyCacheGrant(CacheGrant grant, User user, Client client) {
+            this.authorizationCodeString = grant.getAuthorizationCodeString();
+            this.authorizationCodeCreationDate = new Date();
+            this.authorizationCodeExpirationDate = new Date();
+            this.user = user;
+            this.client = client;
+            this.authenticationTime = grant.getAuthenticationTime();
+            this.scopes = grant.getScopes();
+            this.grantId = grant.getGrantId();
+            this.nonce = grant.getNonce();
+            this.codeChallenge = grant.getCodeChallenge();
+            this.codeChallengeMethod = grant.getCodeChallengeMethod();
+            this.claims = grant.getClaims();
+            this.acrValues = grant.getAcrValues();
+            this.sessionDn = grant.getSessionDn();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.model.common;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.gluu.oxauth.model.registration.Client;
+import org.testng.annotations.Test;
+
+/**
+ * Checks compact serialized form of cached grants and reading of entries which were put in cache by previous
+ * versions with default serialization.
+ */
+public class CacheGrantSerializationTest {
+
+    private static final String USER_ID = "admin";
+    private static final String USER_DN = "inum=A8F2-DE1E-D7FB,ou=people,o=gluu";
+    private static final String CLIENT_ID = "0008-6e4f-4a4e-a0b2-d1b4";
+
+    @Test
+    public void compactCacheGrantRoundTrip() throws Exception {
+        CacheGrant grant = new CacheGrant();
+        grant.setAuthorizationCodeString("authorization_code");
+        grant.setUser(createUser());
+        grant.setClient(createClient());
+        grant.setScopes(scopes("openid", "profile"));
+        grant.setGrantId("grant_id");
+        grant.setNonce("nonce");
+        grant.setCodeChallenge("code_challenge");
+        grant.setClaims("{\"userinfo\":{}}");
+        grant.setAcrValues("basic");
+        grant.setSessionDn("oxId=session,ou=session,o=gluu");
+        setField(grant, "authorizationCodeCreationDate", new Date(1577836800000L));
+        setField(grant, "authenticationTime", new Date(1577836700000L));
+        setField(grant, "expiresIn", 60);
+
+        CacheGrant read = (CacheGrant) deserialize(serialize(grant));
+
+        assertNull(read.getUser(), "Compact form keeps only user id and dn");
+        assertNull(read.getClient(), "Compact form keeps only client id");
+        assertEquals(getField(read, "userId"), USER_ID);
+        assertEquals(getField(read, "userDn"), USER_DN);
+        assertEquals(getField(read, "clientId"), CLIENT_ID);
+        assertEquals(read.getAuthorizationCodeString(), "authorization_code");
+        assertEquals(read.getScopes(), scopes("openid", "profile"));
+        assertEquals(read.getGrantId(), "grant_id");
+        assertEquals(read.getNonce(), "nonce");
+        assertEquals(read.getCodeChallenge(), "code_challenge");
+        assertEquals(read.getClaims(), "{\"userinfo\":{}}");
+        assertEquals(read.getAcrValues(), "basic");
+        assertEquals(read.getSessionDn(), "oxId=session,ou=session,o=gluu");
+        assertEquals(read.getAuthorizationCodeCreationDate(), new Date(1577836800000L));
+        assertEquals(read.getAuthenticationTime(), new Date(1577836700000L));
+        assertEquals(read.getExpiresIn(), 60);
+    }
+
+    @Test
+    public void compactCacheGrantWithoutUserAndClientRoundTrip() throws Exception {
+        CacheGrant grant = new CacheGrant();
+        grant.setGrantId("grant_id");
+
+        CacheGrant read = (CacheGrant) deserialize(serialize(grant));
+
+        assertNull(getField(read, "userId"));
+        assertNull(getField(read, "userDn"));
+        assertNull(getField(read, "clientId"));
+        assertNull(read.getAuthorizationCodeString());
+        assertNull(read.getScopes());
+        assertNull(read.getAuthenticationTime());
+        assertEquals(read.getGrantId(), "grant_id");
+    }
+
+    @Test
+    public void previousFormatCacheGrantIsRead() throws Exception {
+        org.gluu.oxauth.model.common.legacy.CacheGrant legacy = new org.gluu.oxauth.model.common.legacy.CacheGrant(
+                "authorization_code", createUser(), createClient(), scopes("openid"), "grant_id");
+
+        CacheGrant read = (CacheGrant) deserializeLegacy(serialize(legacy));
+
+        assertEquals(read.getUser().getUserId(), USER_ID);
+        assertEquals(read.getClient().getClientId(), CLIENT_ID);
+        assertEquals(read.getAuthorizationCodeString(), "authorization_code");
+        assertEquals(read.getScopes(), scopes("openid"));
+        assertEquals(read.getGrantId(), "grant_id");
+        assertEquals(read.getNonce(), "nonce");
+        assertEquals(read.getAcrValues(), "basic");
+        assertEquals(read.getExpiresIn(), 60);
+
+        // Entry of previous format is written back in compact form with ids taken from user and client
+        CacheGrant rewritten = (CacheGrant) deserialize(serialize(read));
+        assertEquals(getField(rewritten, "userId"), USER_ID);
+        assertEquals(getField(rewritten, "userDn"), USER_DN);
+        assertEquals(getField(rewritten, "clientId"), CLIENT_ID);
+        assertEquals(rewritten.getAuthorizationCodeString(), "authorization_code");
+    }
+
+    @Test
+    public void previousFormatCacheGrantWithoutUserAndClientIsRead() throws Exception {
+        org.gluu.oxauth.model.common.legacy.CacheGrant legacy = new org.gluu.oxauth.model.common.legacy.CacheGrant(
+                "authorization_code", null, null, null, "grant_id");
+
+        CacheGrant read = (CacheGrant) deserializeLegacy(serialize(legacy));
+
+        assertNull(read.getUser());
+        assertNull(read.getClient());
+        assertNull(read.getScopes());
+        assertEquals(read.getGrantId(), "grant_id");
+
+        CacheGrant rewritten = (CacheGrant) deserialize(serialize(read));
+        assertNull(getField(rewritten, "userId"));
+        assertNull(getField(rewritten, "userDn"));
+        assertNull(getField(rewritten, "clientId"));
+        assertEquals(rewritten.getGrantId(), "grant_id");
+    }
+
+    @Test
+    public void compactCibaCacheGrantRoundTrip() throws Exception {
+        CIBACacheGrant grant = new CIBACacheGrant();
+        setField(grant, "authorizationRequestId", "auth_req_id");
+        setField(grant, "userId", USER_ID);
+        setField(grant, "userDn", USER_DN);
+        setField(grant, "clientId", CLIENT_ID);
+        setField(grant, "scopes", scopes("openid", "profile"));
+        setField(grant, "grantId", "grant_id");
+        setField(grant, "sessionDn", "oxId=session,ou=session,o=gluu");
+        setField(grant, "expiresIn", 120);
+        setField(grant, "clientNotificationToken", "notification_token");
+
+        CIBACacheGrant read = (CIBACacheGrant) deserialize(serialize(grant));
+
+        assertNull(getField(read, "user"));
+        assertNull(getField(read, "client"));
+        assertEquals(getField(read, "authorizationRequestId"), "auth_req_id");
+        assertEquals(getField(read, "userId"), USER_ID);
+        assertEquals(getField(read, "userDn"), USER_DN);
+        assertEquals(getField(read, "clientId"), CLIENT_ID);
+        assertEquals(getField(read, "scopes"), scopes("openid", "profile"));
+        assertEquals(getField(read, "grantId"), "grant_id");
+        assertEquals(getField(read, "sessionDn"), "oxId=session,ou=session,o=gluu");
+        assertEquals(read.getExpiresIn(), 120);
+        assertEquals(getField(read, "clientNotificationToken"), "notification_token");
+    }
+
+    @Test
+    public void previousFormatCibaCacheGrantIsRead() throws Exception {
+        org.gluu.oxauth.model.common.legacy.CIBACacheGrant legacy = new org.gluu.oxauth.model.common.legacy.CIBACacheGrant(
+                "auth_req_id", createUser(), createClient(), scopes("openid"), "grant_id");
+
+        CIBACacheGrant read = (CIBACacheGrant) deserializeLegacy(serialize(legacy));
+
+        assertEquals(((User) getField(read, "user")).getUserId(), USER_ID);
+        assertEquals(((Client) getField(read, "client")).getClientId(), CLIENT_ID);
+        assertEquals(getField(read, "authorizationRequestId"), "auth_req_id");
+        assertEquals(getField(read, "scopes"), scopes("openid"));
+        assertEquals(read.getExpiresIn(), 120);
+        assertEquals(getField(read, "clientNotificationToken"), "notification_token");
+
+        CIBACacheGrant rewritten = (CIBACacheGrant) deserialize(serialize(read));
+        assertEquals(getField(rewritten, "userId"), USER_ID);
+        assertEquals(getField(rewritten, "userDn"), USER_DN);
+        assertEquals(getField(rewritten, "clientId"), CLIENT_ID);
+        assertEquals(getField(rewritten, "authorizationRequestId"), "auth_req_id");
+    }
+
+    @Test
+    public void previousFormatCibaCacheGrantWithoutUserAndClientIsRead() throws Exception {
+        org.gluu.oxauth.model.common.legacy.CIBACacheGrant legacy = new org.gluu.oxauth.model.common.legacy.CIBACacheGrant(
+                "auth_req_id", null, null, null, "grant_id");
+
+        CIBACacheGrant read = (CIBACacheGrant) deserializeLegacy(serialize(legacy));
+
+        assertNull(getField(read, "user"));
+        assertNull(getField(read, "client"));
+        assertEquals(getField(read, "grantId"), "grant_id");
+
+        CIBACacheGrant rewritten = (CIBACacheGrant) deserialize(serialize(read));
+        assertNull(getField(rewritten, "userId"));
+        assertNull(getField(rewritten, "userDn"));
+        assertNull(getField(rewritten, "clientId"));
+        assertEquals(getField(rewritten, "grantId"), "grant_id");
+    }
+
+    @Test
+    public void compactFormIsSmallerThanPreviousFormat() throws Exception {
+        org.gluu.oxauth.model.common.legacy.CacheGrant legacy = new org.gluu.oxauth.model.common.legacy.CacheGrant(
+                "authorization_code", createUser(), createClient(), scopes("openid"), "grant_id");
+        byte[] legacyBytes = serialize(legacy);
+
+        byte[] compactBytes = serialize(deserializeLegacy(legacyBytes));
+        assertTrue(compactBytes.length < legacyBytes.length);
+    }
+
+    private static User createUser() {
+        User user = new User();
+        user.setDn(USER_DN);
+        user.setUserId(USER_ID);
+        return user;
+    }
+
+    private static Client createClient() {
+        Client client = new Client();
+        client.setClientId(CLIENT_ID);
+        return client;
+    }
+
+    private static Set<String> scopes(String... scopes) {
+        Set<String> result = new LinkedHashSet<String>();
+        for (String scope : scopes) {
+            result.add(scope);
+        }
+        return result;
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        try {
+            oos.writeObject(object);
+        } finally {
+            oos.close();
+        }
+        return bos.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws Exception {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+
+    /**
+     * Reads stream written by test copies of previous classes as current classes. Copies have the same simple
+     * names and serialVersionUID, so stream is the same as one written by previous version.
+     */
+    private static Object deserializeLegacy(byte[] bytes) throws Exception {
+        ObjectInputStream ois = new LegacyObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+
+    private static void setField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static Object getField(Object target, String fieldName) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+
+    private static class LegacyObjectInputStream extends ObjectInputStream {
+
+        private static final Map<String, Class<?>> CLASSES = new HashMap<String, Class<?>>();
+
+        static {
+            CLASSES.put(org.gluu.oxauth.model.common.legacy.CacheGrant.class.getName(), CacheGrant.class);
+            CLASSES.put(org.gluu.oxauth.model.common.legacy.CIBACacheGrant.class.getName(), CIBACacheGrant.class);
+        }
+
+        LegacyObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            Class<?> clazz = CLASSES.get(desc.getName());
+            return clazz != null ? clazz : super.resolveClass(desc);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.model.common.legacy;
+
+import org.gluu.oxauth.model.common.User;
+import org.gluu.oxauth.model.registration.Client;
+
+import java.io.Serializable;
+import java.util.Set;
+
+/**
+ * Fields of {@link org.gluu.oxauth.model.common.CIBACacheGrant} as they were before compact serialized form. Used to
+ * write cache entries of previous format. Class has the same simple name, so stream can be read as the current class.
+ */
+public class CIBACacheGrant implements Serializable {
+
+    private static final long serialVersionUID = -7650729065939667564L;
+
+    private String authorizationRequestId;
+    private User user;
+    private Client client;
+    private Set<String> scopes;
+    private String grantId;
+
+    private String sessionDn;
+    private int expiresIn = 1;
+    private String clientNotificationToken;
+
+    public CIBACacheGrant(String authorizationRequestId, User user, Client client, Set<String> scopes, String grantId) {
+        this.authorizationRequestId = authorizationRequestId;
+        this.user = user;
+        this.client = client;
+        this.scopes = scopes;
+        this.grantId = grantId;
+        this.sessionDn = "oxId=session,ou=session,o=gluu";
+        this.expiresIn = 120;
+        this.clientNotificationToken = "notification_token";
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.model.common.legacy;
+
+import org.gluu.oxauth.model.common.User;
+import org.gluu.oxauth.model.registration.Client;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Fields of {@link org.gluu.oxauth.model.common.CacheGrant} as they were before compact serialized form. Used to
+ * write cache entries of previous format. Class has the same simple name, so stream can be read as the current class.
+ */
+public class CacheGrant implements Serializable {
+
+    private static final long serialVersionUID = 4461268030233559565L;
+
+    private String authorizationCodeString;
+    private Date authorizationCodeCreationDate;
+    private Date authorizationCodeExpirationDate;
+
+    private User user;
+    private Client client;
+    private Date authenticationTime;
+    private Set<String> scopes;
+    private String grantId;
+    private String tokenBindingHash;
+    private String nonce;
+    private String codeChallenge;
+    private String codeChallengeMethod;
+    private String claims;
+
+    private String acrValues;
+    private String sessionDn;
+    private int expiresIn = 1;
+
+    public CacheGrant(String authorizationCodeString, User user, Client client, Set<String> scopes, String grantId) {
+        this.authorizationCodeString = authorizationCodeString;
+        this.authorizationCodeCreationDate = new Date();
+        this.authorizationCodeExpirationDate = new Date(authorizationCodeCreationDate.getTime() + 60 * 1000L);
+        this.user = user;
+        this.client = client;
+        this.authenticationTime = authorizationCodeCreationDate;
+        this.scopes = scopes;
+        this.grantId = grantId;
+        this.nonce = "nonce";
+        this.acrValues = "basic";
+        this.sessionDn = "oxId=session,ou=session,o=gluu";
+        this.expiresIn = 60;
+    }
+}
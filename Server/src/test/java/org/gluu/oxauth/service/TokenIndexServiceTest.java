@@ -0,0 +1,128 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.gluu.oxauth.model.common.TokenIndexNodes;
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.gluu.service.CacheService;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Runs two nodes which share one cache and write the same client token index.
+ */
+public class TokenIndexServiceTest {
+
+    private static final String CLIENT_ID = "0008-6e4f-4a4e-a0b2-d1b4";
+
+    private InMemoryCacheService cacheService;
+    private TokenIndexService node1;
+    private TokenIndexService node2;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        cacheService = new InMemoryCacheService();
+        node1 = createNode(8);
+        node2 = createNode(2);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        node1.destroy();
+        node2.destroy();
+    }
+
+    @Test
+    public void tokensAddedOnDifferentNodesAreFound() {
+        final long expirationTime = System.currentTimeMillis() + 60 * 1000L;
+        for (int i = 0; i < 50; i++) {
+            node1.add(CLIENT_ID, "node1_token_" + i, expirationTime);
+            node2.add(CLIENT_ID, "node2_token_" + i, expirationTime);
+        }
+
+        final Set<String> fromNode1 = node1.getTokenHashes(CLIENT_ID);
+        assertEquals(fromNode1.size(), 100);
+        assertTrue(fromNode1.contains("node1_token_0"));
+        assertTrue(fromNode1.contains("node2_token_49"));
+        assertEquals(node2.getTokenHashes(CLIENT_ID), fromNode1);
+
+        assertTrue(node1.getTokenHashes("other_client").isEmpty());
+    }
+
+    @Test
+    public void expiredTokensAreSkipped() {
+        final long now = System.currentTimeMillis();
+        node1.add(CLIENT_ID, "expired_token", now - 1);
+        node1.add(CLIENT_ID, "live_token", now + 60 * 1000L);
+
+        final Set<String> tokenHashes = node2.getTokenHashes(CLIENT_ID);
+        assertEquals(tokenHashes.size(), 1);
+        assertTrue(tokenHashes.contains("live_token"));
+    }
+
+    @Test
+    public void lostRegistrationIsRestored() {
+        final long expirationTime = System.currentTimeMillis() + 60 * 1000L;
+        node1.add(CLIENT_ID, "node1_token", expirationTime);
+
+        // registry written concurrently by another node which didn't see node1
+        cacheService.put("60", TokenIndexNodes.CACHE_KEY, new TokenIndexNodes());
+        node2.add(CLIENT_ID, "node2_token", expirationTime);
+        assertEquals(node2.getTokenHashes(CLIENT_ID).size(), 1);
+
+        node1.checkRegistration();
+        assertEquals(node2.getTokenHashes(CLIENT_ID).size(), 2);
+    }
+
+    private TokenIndexService createNode(int bucketCount) throws Exception {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setTokenIndexBucketCount(bucketCount);
+
+        TokenIndexService tokenIndexService = new TokenIndexService();
+        inject(tokenIndexService, "log", LoggerFactory.getLogger(TokenIndexService.class));
+        inject(tokenIndexService, "cacheService", cacheService);
+        inject(tokenIndexService, "appConfiguration", appConfiguration);
+        tokenIndexService.init();
+        return tokenIndexService;
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static class InMemoryCacheService extends CacheService {
+
+        private final Map<String, Object> entries = new HashMap<String, Object>();
+
+        @Override
+        public synchronized Object get(String region, String key) {
+            return entries.get(key);
+        }
+
+        @Override
+        public synchronized void put(String expirationInSeconds, String key, Object object) {
+            entries.put(key, object);
+        }
+
+        @Override
+        public synchronized void remove(String key) {
+            entries.remove(key);
+        }
+    }
+}
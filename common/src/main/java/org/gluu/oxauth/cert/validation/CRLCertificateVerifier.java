@@ -7,25 +7,44 @@
 package org.gluu.oxauth.cert.validation;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.security.NoSuchProviderException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
 import java.security.Principal;
+import java.security.PublicKey;
 import java.security.cert.CRLException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
+import javax.security.auth.x500.X500Principal;
+
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.BoundedInputStream;
 import org.bouncycastle.asn1.ASN1InputStream;
@@ -42,8 +61,6 @@ import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.GeneralName;
 import org.bouncycastle.asn1.x509.GeneralNames;
 import org.bouncycastle.asn1.x509.X509Extensions;
-import org.bouncycastle.x509.NoSuchParserException;
-import org.bouncycastle.x509.util.StreamParsingException;
 import org.gluu.oxauth.cert.validation.model.ValidationStatus;
 import org.gluu.oxauth.cert.validation.model.ValidationStatus.CertificateValidity;
 import org.gluu.oxauth.cert.validation.model.ValidationStatus.ValidatorSourceType;
@@ -51,14 +68,19 @@ import org.gluu.oxauth.model.util.SecurityProviderUtility;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 
 /**
  * Certificate verifier based on CRL
  * 
+ * Downloaded CRL is verified once and kept as a sorted index of revoked serial numbers. It's refreshed in background
+ * before its nextUpdate (at least once per hour) while the previous copy is served. If CRL folder is specified, the
+ * downloaded CRLs are stored there and used after restart instead of downloading them again.
+ * 
+ * CRLs are cached by URL and issuer key, so CRL of CA which changed its key but kept CRL URL is loaded again and
+ * verified with the new key.
+ * 
  * @author Yuriy Movchan
  * @version March 10, 2016
  */
@@ -66,25 +88,57 @@ public class CRLCertificateVerifier implements CertificateVerifier {
 
 	private static final Logger log = LoggerFactory.getLogger(CRLCertificateVerifier.class);
 
+	private static final int DEFAULT_MAX_CACHE_SIZE = 10;
+
+	private static final long MIN_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+	private static final long MAX_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(60);
+
+	// Part of time left to nextUpdate after which CRL is refreshed
+	private static final double REFRESH_FACTOR = 0.8;
+
 	private int maxCrlSize;
+	private File crlFolder;
 
-	private LoadingCache<String, X509CRL> crlCache;
+	private Cache<String, CrlIndex> crlCache;
+	private ExecutorService refreshExecutor;
+
+	// Cache keys of CRLs which are being refreshed
+	private final ConcurrentMap<String, Boolean> refreshingCrls = new ConcurrentHashMap<String, Boolean>();
 
 	public CRLCertificateVerifier(final int maxCrlSize) {
+		this(maxCrlSize, DEFAULT_MAX_CACHE_SIZE, null);
+	}
+
+	/**
+	 * @param maxCrlSize
+	 *            max size of downloaded CRL in bytes
+	 * @param maxCacheSize
+	 *            max count of cached CRLs
+	 * @param crlFolder
+	 *            folder to store downloaded CRLs in, null to keep them in memory only
+	 */
+	public CRLCertificateVerifier(final int maxCrlSize, final int maxCacheSize, final String crlFolder) {
 		SecurityProviderUtility.installBCProvider(true);
 
 		this.maxCrlSize = maxCrlSize;
-		
-		CacheLoader<String, X509CRL> checkedLoader = new CacheLoader<String, X509CRL>() {
-			public X509CRL load(String crlURL) throws CertificateException, CRLException, NoSuchProviderException, NoSuchParserException, StreamParsingException, MalformedURLException, IOException, ExecutionException {
-				X509CRL result = requestCRL(crlURL);
-				Preconditions.checkNotNull(result);
+		if (crlFolder != null) {
+			this.crlFolder = new File(crlFolder);
+			if (!this.crlFolder.isDirectory() && !this.crlFolder.mkdirs()) {
+				log.error("Failed to create CRL folder '" + crlFolder + "', CRLs will not be stored");
+				this.crlFolder = null;
+			}
+		}
 
-				return result;
+		this.refreshExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "CRLRefresh");
+				thread.setDaemon(true);
+				return thread;
 			}
-		};
+		});
 
-		this.crlCache = CacheBuilder.newBuilder().maximumSize(10).expireAfterWrite(60, TimeUnit.MINUTES).build(checkedLoader);
+		this.crlCache = CacheBuilder.newBuilder().maximumSize(maxCacheSize).build();
 	}
 
 	@Override
@@ -103,25 +157,25 @@ public class CRLCertificateVerifier implements CertificateVerifier {
 
 			log.debug("CRL's URL for '" + subjectX500Principal + "' is '" + crlURL + "'");
 
-			X509CRL x509crl = getCrl(crlURL);
-			if (!validateCRL(x509crl, certificate, issuer, validationDate)) {
+			CrlIndex crl = getCrl(crlURL, issuer);
+			if (!validateCRL(crl, certificate, issuer, validationDate)) {
 				log.error("The CRL is not valid!");
 				status.setValidity(CertificateValidity.INVALID);
 				return status;
 			}
 
-			X509CRLEntry crlEntry = x509crl.getRevokedCertificate(certificate.getSerialNumber());
-			if (crlEntry == null) {
+			Date revocationDate = crl.getRevocationDate(certificate.getSerialNumber());
+			if (revocationDate == null) {
 				log.debug("CRL status is valid for '" + subjectX500Principal + "'");
 				status.setValidity(CertificateValidity.VALID);
-			} else if (crlEntry.getRevocationDate().after(validationDate)) {
+			} else if (revocationDate.after(validationDate)) {
 				log.warn("CRL revocation time after the validation date, the certificate '" + subjectX500Principal + "' was valid at " + validationDate);
-				status.setRevocationObjectIssuingTime(x509crl.getThisUpdate());
+				status.setRevocationObjectIssuingTime(crl.thisUpdate);
 				status.setValidity(CertificateValidity.VALID);
 			} else {
-				log.info("CRL for certificate '" + subjectX500Principal + "' is revoked since " + crlEntry.getRevocationDate());
-				status.setRevocationObjectIssuingTime(x509crl.getThisUpdate());
-				status.setRevocationDate(crlEntry.getRevocationDate());
+				log.info("CRL for certificate '" + subjectX500Principal + "' is revoked since " + revocationDate);
+				status.setRevocationObjectIssuingTime(crl.thisUpdate);
+				status.setRevocationDate(revocationDate);
 				status.setValidity(CertificateValidity.REVOKED);
 			}
 		} catch (Exception ex) {
@@ -131,40 +185,25 @@ public class CRLCertificateVerifier implements CertificateVerifier {
 		return status;
 	}
 
-	private boolean validateCRL(X509CRL x509crl, X509Certificate certificate, X509Certificate issuerCertificate, Date validationDate) {
+	private boolean validateCRL(CrlIndex crl, X509Certificate certificate, X509Certificate issuerCertificate, Date validationDate) {
 		Principal subjectX500Principal = certificate.getSubjectX500Principal();
 
-		if (x509crl == null) {
+		if (crl == null) {
 			log.error("No CRL found for certificate '" + subjectX500Principal + "'");
 			return false;
 		}
 
-		if (log.isTraceEnabled()) {
-			try {
-				log.trace("CRL number: " + getCrlNumber(x509crl));
-			} catch (IOException ex) {
-				log.error("Failed to get CRL number", ex);
-			}
-		}
-
-		if (!x509crl.getIssuerX500Principal().equals(issuerCertificate.getSubjectX500Principal())) {
+		if (!crl.issuer.equals(issuerCertificate.getSubjectX500Principal())) {
 			log.error("The CRL must be signed by the issuer '" + subjectX500Principal + "' but instead is signed by '"
-					+ x509crl.getIssuerX500Principal() + "'");
-			return false;
-		}
-
-		try {
-			x509crl.verify(issuerCertificate.getPublicKey());
-		} catch (Exception ex) {
-			log.error("The signature verification for CRL cannot be performed", ex);
+					+ crl.issuer + "'");
 			return false;
 		}
 
 		log.debug("CRL validationDate: " + validationDate);
-		log.debug("CRL nextUpdate: " + x509crl.getThisUpdate());
-		log.debug("CRL thisUpdate: " + x509crl.getNextUpdate());
+		log.debug("CRL thisUpdate: " + crl.thisUpdate);
+		log.debug("CRL nextUpdate: " + crl.nextUpdate);
 
-		if (x509crl.getNextUpdate() != null && validationDate.after(x509crl.getNextUpdate())) {
+		if (crl.nextUpdate != null && validationDate.after(crl.nextUpdate)) {
 			log.error("CRL is too old");
 			return false;
 		}
@@ -183,31 +222,172 @@ public class CRLCertificateVerifier implements CertificateVerifier {
 
 	}
 
-	private X509CRL getCrl(String url) throws CertificateException, CRLException, NoSuchProviderException, NoSuchParserException, StreamParsingException,
-			MalformedURLException, IOException, ExecutionException {
+	private CrlIndex getCrl(final String url, X509Certificate issuerCertificate) {
 		if (!(url.startsWith("http://") || url.startsWith("https://"))) {
 			log.error("It's possible to download CRL via HTTP and HTTPS only");
 			return null;
 		}
 		
-		String cacheKey = url.toLowerCase();
-		X509CRL crl = crlCache.get(cacheKey);
+		final String crlUrl = url.toLowerCase();
+		final PublicKey issuerKey = issuerCertificate.getPublicKey();
+
+		// CRL is verified with issuer key when it's loaded
+		final String cacheKey = crlUrl + "|" + DigestUtils.sha256Hex(issuerKey.getEncoded());
+		try {
+			// Only one thread loads missing CRL, others wait for it
+			CrlIndex crl = crlCache.get(cacheKey, new Callable<CrlIndex>() {
+				@Override
+				public CrlIndex call() throws Exception {
+					CrlIndex crl = loadStoredCrl(crlUrl, issuerKey);
+					if (crl == null) {
+						crl = downloadCrl(crlUrl, issuerKey);
+					}
+
+					return crl;
+				}
+			});
+
+			if (System.currentTimeMillis() >= crl.getRefreshAt()) {
+				refreshCrl(cacheKey, crlUrl, issuerKey, crl);
+			}
+
+			return crl;
+		} catch (ExecutionException ex) {
+			log.error("Failed to load CRL from '" + url + "'", ex.getCause());
+		}
+
+		return null;
+	}
+
+	/**
+	 * Downloads new CRL in background, current one is served until the new one is ready. If download fails, next
+	 * attempt is made not earlier than in MIN_REFRESH_INTERVAL.
+	 */
+	private void refreshCrl(final String cacheKey, final String crlUrl, final PublicKey issuerKey, final CrlIndex oldCrl) {
+		if (refreshingCrls.putIfAbsent(cacheKey, Boolean.TRUE) != null) {
+			return;
+		}
+
+		try {
+			refreshExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						log.debug("Refreshing CRL '" + crlUrl + "'");
+						CrlIndex newCrl = downloadCrl(crlUrl, issuerKey);
+						crlCache.asMap().replace(cacheKey, oldCrl, newCrl);
+					} catch (Exception ex) {
+						log.error("Failed to refresh CRL from '" + crlUrl + "'", ex);
+						oldCrl.setRefreshAt(System.currentTimeMillis() + MIN_REFRESH_INTERVAL);
+					} finally {
+						refreshingCrls.remove(cacheKey);
+					}
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			refreshingCrls.remove(cacheKey);
+			log.error("Failed to schedule CRL refresh", ex);
+		}
+	}
+
+	private CrlIndex downloadCrl(String url, PublicKey issuerKey) throws IOException, GeneralSecurityException {
+		byte[] encodedCrl = downloadCRL(url);
+		if (encodedCrl == null) {
+			throw new IOException("Failed to download CRL from '" + url + "'");
+		}
+
+		CrlIndex crl = createIndex(parseCRL(encodedCrl), issuerKey, System.currentTimeMillis());
+		storeCrl(url, encodedCrl);
 
 		return crl;
 	}
 
-	public X509CRL requestCRL(String url) throws IOException, MalformedURLException, CertificateException, CRLException {
+	/**
+	 * @return CRL stored by previous run or null if there is no up to date copy
+	 */
+	private CrlIndex loadStoredCrl(String url, PublicKey issuerKey) {
+		File file = getCrlFile(url);
+		if ((file == null) || !file.isFile()) {
+			return null;
+		}
+
+		try {
+			X509CRL x509crl = parseCRL(Files.readAllBytes(file.toPath()));
+			if ((x509crl.getNextUpdate() != null) && x509crl.getNextUpdate().before(new Date())) {
+				log.debug("Stored CRL for '" + url + "' is too old");
+				return null;
+			}
+
+			CrlIndex crl = createIndex(x509crl, issuerKey, file.lastModified());
+			log.debug("Loaded stored CRL for '" + url + "' from '" + file + "'");
+
+			return crl;
+		} catch (Exception ex) {
+			log.error("Failed to load stored CRL from '" + file + "'", ex);
+		}
+
+		return null;
+	}
+
+	private void storeCrl(String url, byte[] encodedCrl) {
+		File file = getCrlFile(url);
+		if (file == null) {
+			return;
+		}
+
+		try {
+			File tmpFile = File.createTempFile("crl", ".tmp", crlFolder);
+			Files.write(tmpFile.toPath(), encodedCrl);
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			log.error("Failed to store CRL to '" + file + "'", ex);
+		}
+	}
+
+	private File getCrlFile(String url) {
+		if (crlFolder == null) {
+			return null;
+		}
+
+		return new File(crlFolder, DigestUtils.sha256Hex(url) + ".crl");
+	}
+
+	private CrlIndex createIndex(X509CRL x509crl, PublicKey issuerKey, long loadedAt) throws GeneralSecurityException {
+		x509crl.verify(issuerKey);
+
+		if (log.isTraceEnabled()) {
+			try {
+				log.trace("CRL number: " + getCrlNumber(x509crl));
+			} catch (IOException ex) {
+				log.error("Failed to get CRL number", ex);
+			}
+		}
+
+		long refreshInterval = MAX_REFRESH_INTERVAL;
+		if (x509crl.getNextUpdate() != null) {
+			long timeToNextUpdate = (long) ((x509crl.getNextUpdate().getTime() - loadedAt) * REFRESH_FACTOR);
+			refreshInterval = Math.max(MIN_REFRESH_INTERVAL, Math.min(MAX_REFRESH_INTERVAL, timeToNextUpdate));
+		}
+
+		return new CrlIndex(x509crl, loadedAt + refreshInterval);
+	}
+
+	private X509CRL parseCRL(byte[] encodedCrl) throws CertificateException, CRLException {
+		CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+		X509CRL crl = (X509CRL) certificateFactory.generateCRL(new ByteArrayInputStream(encodedCrl));
+		log.debug("CRL size: " + encodedCrl.length + " bytes");
+
+		return crl;
+	}
+
+	private byte[] downloadCRL(String url) throws IOException, MalformedURLException {
 		HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
 		try {
 			con.setUseCaches(false);
 
 			InputStream in = new BoundedInputStream(con.getInputStream(), maxCrlSize);
 			try {
-				CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
-				X509CRL crl = (X509CRL) certificateFactory.generateCRL(in);
-				log.debug("CRL size: " + crl.getEncoded().length + " bytes");
-
-				return crl;
+				return IOUtils.toByteArray(in);
 			} finally {
 				IOUtils.closeQuietly(in);
 			}
@@ -222,6 +402,15 @@ public class CRLCertificateVerifier implements CertificateVerifier {
 		return null;
 	}
 
+	public X509CRL requestCRL(String url) throws IOException, MalformedURLException, CertificateException, CRLException {
+		byte[] encodedCrl = downloadCRL(url);
+		if (encodedCrl == null) {
+			return null;
+		}
+
+		return parseCRL(encodedCrl);
+	}
+
 	@SuppressWarnings({ "deprecation", "resource" })
 	private BigInteger getCrlNumber(X509CRL crl) throws IOException {
 		byte[] crlNumberExtensionValue = crl.getExtensionValue(X509Extensions.CRLNumber.getId());
@@ -295,7 +484,90 @@ public class CRLCertificateVerifier implements CertificateVerifier {
 
 	@Override
 	public void destroy() {
+		refreshExecutor.shutdownNow();
 		crlCache.cleanUp();
 	}
 
+	/**
+	 * Verified CRL without X509CRL object graph. Serial numbers are kept in sorted arrays, the ones which fit into
+	 * long separately from the bigger ones.
+	 */
+	static class CrlIndex {
+
+		private final X500Principal issuer;
+		private final Date thisUpdate;
+		private final Date nextUpdate;
+		private volatile long refreshAt;
+
+		private final long[] serials;
+		private final long[] revocationDates;
+
+		private final BigInteger[] bigSerials;
+		private final long[] bigRevocationDates;
+
+		CrlIndex(X509CRL x509crl, long refreshAt) {
+			this.issuer = x509crl.getIssuerX500Principal();
+			this.thisUpdate = x509crl.getThisUpdate();
+			this.nextUpdate = x509crl.getNextUpdate();
+			this.refreshAt = refreshAt;
+
+			Set<? extends X509CRLEntry> revokedCertificates = x509crl.getRevokedCertificates();
+			List<X509CRLEntry> entries = new ArrayList<X509CRLEntry>();
+			List<X509CRLEntry> bigEntries = new ArrayList<X509CRLEntry>();
+			if (revokedCertificates != null) {
+				for (X509CRLEntry entry : revokedCertificates) {
+					if (entry.getSerialNumber().bitLength() < Long.SIZE) {
+						entries.add(entry);
+					} else {
+						bigEntries.add(entry);
+					}
+				}
+			}
+
+			Comparator<X509CRLEntry> serialComparator = new Comparator<X509CRLEntry>() {
+				@Override
+				public int compare(X509CRLEntry entry1, X509CRLEntry entry2) {
+					return entry1.getSerialNumber().compareTo(entry2.getSerialNumber());
+				}
+			};
+			Collections.sort(entries, serialComparator);
+			Collections.sort(bigEntries, serialComparator);
+
+			this.serials = new long[entries.size()];
+			this.revocationDates = new long[entries.size()];
+			for (int i = 0; i < entries.size(); i++) {
+				this.serials[i] = entries.get(i).getSerialNumber().longValue();
+				this.revocationDates[i] = entries.get(i).getRevocationDate().getTime();
+			}
+
+			this.bigSerials = new BigInteger[bigEntries.size()];
+			this.bigRevocationDates = new long[bigEntries.size()];
+			for (int i = 0; i < bigEntries.size(); i++) {
+				this.bigSerials[i] = bigEntries.get(i).getSerialNumber();
+				this.bigRevocationDates[i] = bigEntries.get(i).getRevocationDate().getTime();
+			}
+		}
+
+		long getRefreshAt() {
+			return refreshAt;
+		}
+
+		void setRefreshAt(long refreshAt) {
+			this.refreshAt = refreshAt;
+		}
+
+		/**
+		 * @return revocation date or null if certificate is not revoked
+		 */
+		Date getRevocationDate(BigInteger serialNumber) {
+			if (serialNumber.bitLength() < Long.SIZE) {
+				int index = Arrays.binarySearch(serials, serialNumber.longValue());
+				return index >= 0 ? new Date(revocationDates[index]) : null;
+			}
+
+			int index = Arrays.binarySearch(bigSerials, serialNumber);
+			return index >= 0 ? new Date(bigRevocationDates[index]) : null;
+		}
+	}
+
 }
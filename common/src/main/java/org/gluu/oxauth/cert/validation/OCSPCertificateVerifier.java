@@ -17,6 +17,16 @@ import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.IOUtils;
 import org.bouncycastle.asn1.ASN1InputStream;
@@ -50,9 +60,17 @@ import org.gluu.oxauth.model.util.SecurityProviderUtility;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * Certificate verifier based on OCSP
  * 
+ * Responses are cached by issuer and serial number until their nextUpdate (or for a default time if the responder
+ * doesn't set it). Failures are cached for a short time. Entries close to expiration are refreshed in background
+ * while the cached response is served, concurrent requests for the same certificate share one OCSP request.
+ * OCSP requests are bounded by connect and read timeouts, requests which time out are cached as failures.
+ * 
  * @author Yuriy Movchan
  * @version March 10, 2016
  */
@@ -60,8 +78,47 @@ public class OCSPCertificateVerifier implements CertificateVerifier {
 
 	private static final Logger log = LoggerFactory.getLogger(OCSPCertificateVerifier.class);
 
+	private static final int DEFAULT_MAX_CACHE_SIZE = 10000;
+
+	// Used if responder doesn't specify nextUpdate
+	private static final long DEFAULT_RESPONSE_LIFETIME = TimeUnit.MINUTES.toMillis(5);
+	private static final long MAX_RESPONSE_LIFETIME = TimeUnit.HOURS.toMillis(24);
+	private static final long FAILURE_LIFETIME = TimeUnit.SECONDS.toMillis(30);
+
+	private static final int CONNECT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(5);
+	private static final int READ_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(10);
+
+	// How long callers wait for OCSP request started by other caller
+	private static final long REQUEST_WAIT_TIMEOUT = CONNECT_TIMEOUT + READ_TIMEOUT + TimeUnit.SECONDS.toMillis(5);
+
+	// Part of response lifetime after which background refresh starts
+	private static final double REFRESH_FACTOR = 0.8;
+
+	private Cache<String, CachedResponse> responseCache;
+	private ConcurrentMap<String, CompletableFuture<CachedResponse>> inFlightRequests;
+	private ExecutorService refreshExecutor;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong refreshCount = new AtomicLong();
+
 	public OCSPCertificateVerifier() {
+		this(DEFAULT_MAX_CACHE_SIZE);
+	}
+
+	public OCSPCertificateVerifier(final int maxCacheSize) {
 		SecurityProviderUtility.installBCProvider(true);
+
+		this.responseCache = CacheBuilder.newBuilder().maximumSize(maxCacheSize).expireAfterWrite(MAX_RESPONSE_LIFETIME, TimeUnit.MILLISECONDS).build();
+		this.inFlightRequests = new ConcurrentHashMap<String, CompletableFuture<CachedResponse>>();
+		this.refreshExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "OCSPResponseRefresh");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
 	}
 
 	@Override
@@ -80,6 +137,125 @@ public class OCSPCertificateVerifier implements CertificateVerifier {
 
 			log.debug("OCSP URL for '" + subjectX500Principal + "' is '" + ocspUrl + "'");
 
+			CachedResponse response = getResponse(certificate, ocspUrl);
+			if (response.responseStatus == ResponseStatus.INVALID) {
+				status.setValidity(CertificateValidity.INVALID);
+				return status;
+			}
+
+			if (response.responseStatus != ResponseStatus.FOUND) {
+				return status;
+			}
+
+			log.debug("OCSP validationDate: " + validationDate);
+			log.debug("OCSP thisUpdate: " + response.thisUpdate);
+			log.debug("OCSP nextUpdate: " + response.nextUpdate);
+
+			status.setRevocationObjectIssuingTime(response.producedAt);
+
+			if (response.good) {
+				log.debug("OCSP status is valid for '" + certificate.getSubjectX500Principal() + "'");
+				status.setValidity(CertificateValidity.VALID);
+			} else if (response.revocationDate != null) {
+				log.warn("OCSP status is revoked for: " + subjectX500Principal);
+				if (validationDate.before(response.revocationDate)) {
+					log.warn("OCSP revocation time after the validation date, the certificate '" + subjectX500Principal + "' was valid at " + validationDate);
+					status.setValidity(CertificateValidity.VALID);
+				} else {
+					log.info("OCSP for certificate '" + subjectX500Principal + "' is revoked since " + response.revocationDate);
+					status.setRevocationDate(response.revocationDate);
+					status.setRevocationObjectIssuingTime(response.thisUpdate);
+					status.setValidity(CertificateValidity.REVOKED);
+				}
+			}
+		} catch (Exception ex) {
+			log.error("OCSP exception: ", ex);
+		}
+
+		return status;
+	}
+
+	private CachedResponse getResponse(final X509Certificate certificate, final String ocspUrl) throws InterruptedException, ExecutionException {
+		final String cacheKey = certificate.getIssuerX500Principal().getName() + "|" + certificate.getSerialNumber();
+		final long now = System.currentTimeMillis();
+
+		CachedResponse cachedResponse = responseCache.getIfPresent(cacheKey);
+		if ((cachedResponse != null) && (now < cachedResponse.expiresAt)) {
+			hitCount.incrementAndGet();
+			if (now >= cachedResponse.refreshAt) {
+				refreshResponse(cacheKey, certificate, ocspUrl);
+			}
+
+			return cachedResponse;
+		}
+
+		missCount.incrementAndGet();
+
+		CompletableFuture<CachedResponse> request = new CompletableFuture<CachedResponse>();
+		CompletableFuture<CachedResponse> existingRequest = inFlightRequests.putIfAbsent(cacheKey, request);
+		if (existingRequest != null) {
+			try {
+				return existingRequest.get(REQUEST_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException ex) {
+				log.error("OCSP request for '{}' timed out", cacheKey);
+				inFlightRequests.remove(cacheKey, existingRequest);
+
+				CachedResponse failure = CachedResponse.failure(ResponseStatus.FAILED, System.currentTimeMillis());
+				responseCache.put(cacheKey, failure);
+				return failure;
+			}
+		}
+
+		loadResponse(cacheKey, certificate, ocspUrl, request);
+
+		return request.get();
+	}
+
+	private void refreshResponse(final String cacheKey, final X509Certificate certificate, final String ocspUrl) {
+		final CompletableFuture<CachedResponse> request = new CompletableFuture<CachedResponse>();
+		if (inFlightRequests.putIfAbsent(cacheKey, request) != null) {
+			return;
+		}
+
+		refreshCount.incrementAndGet();
+		try {
+			refreshExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					loadResponse(cacheKey, certificate, ocspUrl, request);
+				}
+			});
+		} catch (RuntimeException ex) {
+			inFlightRequests.remove(cacheKey, request);
+			log.error("Failed to schedule OCSP response refresh", ex);
+		}
+	}
+
+	private void loadResponse(String cacheKey, X509Certificate certificate, String ocspUrl, CompletableFuture<CachedResponse> request) {
+		try {
+			CachedResponse response = requestResponse(certificate, ocspUrl);
+			if (response.responseStatus != ResponseStatus.FOUND) {
+				// Failed refresh should not replace response which is still valid
+				final long now = System.currentTimeMillis();
+				CachedResponse previousResponse = responseCache.getIfPresent(cacheKey);
+				if ((previousResponse != null) && (previousResponse.responseStatus == ResponseStatus.FOUND) && (now < previousResponse.expiresAt)) {
+					log.debug("Failed to refresh OCSP response, keeping previous one for '{}'", cacheKey);
+					response = previousResponse.retryRefreshLater(now);
+				}
+			}
+			responseCache.put(cacheKey, response);
+			request.complete(response);
+		} catch (Throwable ex) {
+			request.completeExceptionally(ex);
+		} finally {
+			inFlightRequests.remove(cacheKey, request);
+		}
+	}
+
+	private CachedResponse requestResponse(X509Certificate certificate, String ocspUrl) {
+		final long now = System.currentTimeMillis();
+
+		try {
 			DigestCalculator digestCalculator = new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1);
 			CertificateID certificateId = new CertificateID(digestCalculator, new JcaX509CertificateHolder(certificate), certificate.getSerialNumber());
 
@@ -90,11 +266,9 @@ public class OCSPCertificateVerifier implements CertificateVerifier {
 			OCSPResp ocspResp = requestOCSPResponse(ocspUrl, ocspReq);
 			if (ocspResp.getStatus() != OCSPRespBuilder.SUCCESSFUL) {
 				log.error("OCSP response is invalid!");
-				status.setValidity(CertificateValidity.INVALID);
-				return status;
+				return CachedResponse.failure(ResponseStatus.INVALID, now);
 			}
 
-			boolean foundResponse = false;
 			BasicOCSPResp basicOCSPResp = (BasicOCSPResp) ocspResp.getResponseObject();
 			SingleResp[] singleResps = basicOCSPResp.getResponses();
 			for (SingleResp singleResp : singleResps) {
@@ -103,43 +277,22 @@ public class OCSPCertificateVerifier implements CertificateVerifier {
 					continue;
 				}
 
-				foundResponse = true;
-
-				log.debug("OCSP validationDate: " + validationDate);
-				log.debug("OCSP thisUpdate: " + singleResp.getThisUpdate());
-				log.debug("OCSP nextUpdate: " + singleResp.getNextUpdate());
-
-				status.setRevocationObjectIssuingTime(basicOCSPResp.getProducedAt());
-
 				Object certStatus = singleResp.getCertStatus();
-				if (certStatus == CertificateStatus.GOOD) {
-					log.debug("OCSP status is valid for '" + certificate.getSubjectX500Principal() + "'");
-					status.setValidity(CertificateValidity.VALID);
-				} else {
-					if (singleResp.getCertStatus() instanceof RevokedStatus) {
-						log.warn("OCSP status is revoked for: " + subjectX500Principal);
-						if (validationDate.before(((RevokedStatus) singleResp.getCertStatus()).getRevocationTime())) {
-							log.warn("OCSP revocation time after the validation date, the certificate '" + subjectX500Principal + "' was valid at " + validationDate);
-							status.setValidity(CertificateValidity.VALID);
-						} else {
-							Date revocationDate = ((RevokedStatus) singleResp.getCertStatus()).getRevocationTime();
-							log.info("OCSP for certificate '" + subjectX500Principal + "' is revoked since " + revocationDate);
-							status.setRevocationDate(revocationDate);
-							status.setRevocationObjectIssuingTime(singleResp.getThisUpdate());
-							status.setValidity(CertificateValidity.REVOKED);
-						}
-					}
+				boolean good = certStatus == CertificateStatus.GOOD;
+				Date revocationDate = null;
+				if (certStatus instanceof RevokedStatus) {
+					revocationDate = ((RevokedStatus) certStatus).getRevocationTime();
 				}
-			}
 
-			if (!foundResponse) {
-				log.error("There is no matching OCSP response entries");
+				return CachedResponse.found(good, revocationDate, basicOCSPResp.getProducedAt(), singleResp.getThisUpdate(), singleResp.getNextUpdate(), now);
 			}
+
+			log.error("There is no matching OCSP response entries");
+			return CachedResponse.failure(ResponseStatus.NOT_FOUND, now);
 		} catch (Exception ex) {
 			log.error("OCSP exception: ", ex);
+			return CachedResponse.failure(ResponseStatus.FAILED, now);
 		}
-
-		return status;
 	}
 
 	private OCSPReq generateOCSPRequest(CertificateID certificateId) throws OCSPException, OperatorCreationException, CertificateEncodingException {
@@ -198,6 +351,8 @@ public class OCSPCertificateVerifier implements CertificateVerifier {
 			con.setDoInput(true);
 			con.setDoOutput(true);
 			con.setUseCaches(false);
+			con.setConnectTimeout(CONNECT_TIMEOUT);
+			con.setReadTimeout(READ_TIMEOUT);
 
 			OutputStream out = con.getOutputStream();
 			try {
@@ -237,8 +392,88 @@ public class OCSPCertificateVerifier implements CertificateVerifier {
 		return aIn.readObject();
 	}
 
+	public long getCacheHitCount() {
+		return hitCount.get();
+	}
+
+	public long getCacheMissCount() {
+		return missCount.get();
+	}
+
+	public long getCacheRefreshCount() {
+		return refreshCount.get();
+	}
+
+	public double getCacheHitRatio() {
+		long hits = hitCount.get();
+		long requests = hits + missCount.get();
+
+		return requests == 0 ? 1.0 : (double) hits / requests;
+	}
+
+	public long getCacheSize() {
+		return responseCache.size();
+	}
+
 	@Override
 	public void destroy() {
+		refreshExecutor.shutdownNow();
+		responseCache.invalidateAll();
+	}
+
+	private enum ResponseStatus {
+		FOUND, NOT_FOUND, INVALID, FAILED
+	}
+
+	private static class CachedResponse {
+
+		private final ResponseStatus responseStatus;
+		private final boolean good;
+		private final Date revocationDate;
+		private final Date producedAt;
+		private final Date thisUpdate;
+		private final Date nextUpdate;
+
+		private final long expiresAt;
+		private final long refreshAt;
+
+		private CachedResponse(ResponseStatus responseStatus, boolean good, Date revocationDate, Date producedAt, Date thisUpdate, Date nextUpdate,
+				long expiresAt, long refreshAt) {
+			this.responseStatus = responseStatus;
+			this.good = good;
+			this.revocationDate = revocationDate;
+			this.producedAt = producedAt;
+			this.thisUpdate = thisUpdate;
+			this.nextUpdate = nextUpdate;
+			this.expiresAt = expiresAt;
+			this.refreshAt = refreshAt;
+		}
+
+		private static CachedResponse found(boolean good, Date revocationDate, Date producedAt, Date thisUpdate, Date nextUpdate, long now) {
+			long expiresAt;
+			if (nextUpdate != null) {
+				expiresAt = Math.min(nextUpdate.getTime(), now + MAX_RESPONSE_LIFETIME);
+			} else {
+				expiresAt = now + DEFAULT_RESPONSE_LIFETIME;
+			}
+
+			long refreshAt = now + (long) ((expiresAt - now) * REFRESH_FACTOR);
+
+			return new CachedResponse(ResponseStatus.FOUND, good, revocationDate, producedAt, thisUpdate, nextUpdate, expiresAt, refreshAt);
+		}
+
+		private CachedResponse retryRefreshLater(long now) {
+			long nextRefreshAt = Math.min(now + FAILURE_LIFETIME, expiresAt);
+
+			return new CachedResponse(responseStatus, good, revocationDate, producedAt, thisUpdate, nextUpdate, expiresAt, nextRefreshAt);
+		}
+
+		private static CachedResponse failure(ResponseStatus responseStatus, long now) {
+			// Failures are not refreshed in background
+			long expiresAt = now + FAILURE_LIFETIME;
+
+			return new CachedResponse(responseStatus, false, null, null, null, null, expiresAt, expiresAt);
+		}
 	}
 
 }
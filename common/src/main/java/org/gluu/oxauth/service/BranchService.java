@@ -0,0 +1,121 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.gluu.persist.PersistenceEntryManager;
+import org.gluu.persist.exception.EntryPersistenceException;
+import org.gluu.persist.model.base.SimpleBranch;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node local registry of branches (ou entries) which are known to exist. Services which write entries under
+ * per-user or per-client branches use it instead of checking branch existence before every write. Missing branch
+ * is created optimistically, "already exists" failure is treated as success.
+ * <p>
+ * Branches removed by empty branch clean up are invalidated. Entries also expire after clean up interval, so
+ * branch removed by clean up on another node is not trusted longer than one clean up period.
+ */
+@ApplicationScoped
+@Named
+public class BranchService {
+
+    private static final int MAX_SIZE = 100000;
+    private static final int DEFAULT_EXPIRATION_IN_SECONDS = 600;
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private PersistenceEntryManager ldapEntryManager;
+
+    private Cache<String, Boolean> knownBranches;
+
+    @PostConstruct
+    public void init() {
+        int expiration = appConfiguration.getCleanServiceInterval();
+        if (expiration <= 0) {
+            expiration = DEFAULT_EXPIRATION_IN_SECONDS;
+        }
+
+        this.knownBranches = CacheBuilder.newBuilder()
+                .maximumSize(MAX_SIZE)
+                .expireAfterWrite(expiration, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Creates branch if it's not known to exist.
+     *
+     * @param dn                     DN of branch
+     * @param organizationalUnitName ou of branch
+     */
+    public void prepareBranch(String dn, String organizationalUnitName) {
+        if (knownBranches.getIfPresent(dn) != null) {
+            return;
+        }
+
+        if (!ldapEntryManager.hasBranchesSupport(dn)) {
+            return;
+        }
+
+        SimpleBranch branch = new SimpleBranch();
+        branch.setOrganizationalUnitName(organizationalUnitName);
+        branch.setDn(dn);
+
+        try {
+            ldapEntryManager.persist(branch);
+            log.trace("Created branch: {}", dn);
+        } catch (EntryPersistenceException e) {
+            // Branch is created by another request or node
+            if (!ldapEntryManager.contains(dn, SimpleBranch.class)) {
+                throw e;
+            }
+        }
+
+        knownBranches.put(dn, Boolean.TRUE);
+    }
+
+    /**
+     * @return true if branch exists
+     */
+    public boolean containsBranch(String dn) {
+        if (knownBranches.getIfPresent(dn) != null) {
+            return true;
+        }
+
+        boolean contains = ldapEntryManager.contains(dn, SimpleBranch.class);
+        if (contains) {
+            knownBranches.put(dn, Boolean.TRUE);
+        }
+        return contains;
+    }
+
+    /**
+     * Should be called after branch is removed.
+     */
+    public void invalidate(String dn) {
+        if (dn != null) {
+            knownBranches.invalidate(dn);
+        }
+    }
+
+    public void invalidateAll() {
+        knownBranches.invalidateAll();
+    }
+}
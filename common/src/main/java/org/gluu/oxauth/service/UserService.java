@@ -6,6 +6,9 @@
 
 package org.gluu.oxauth.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang.SerializationUtils;
 import org.gluu.model.GluuStatus;
 import org.gluu.oxauth.model.common.User;
 import org.gluu.oxauth.model.config.StaticConfiguration;
@@ -14,15 +17,18 @@ import org.gluu.oxauth.model.util.Util;
 import org.gluu.persist.PersistenceEntryManager;
 import org.gluu.persist.model.base.CustomAttribute;
 import org.gluu.search.filter.Filter;
+import org.gluu.service.CacheService;
 import org.gluu.util.ArrayHelper;
 import org.gluu.util.StringHelper;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides operations with users.
@@ -36,6 +42,8 @@ public class UserService {
 
 	public static final String[] USER_OBJECT_CLASSES = new String[] { "gluuPerson" };
 
+	private static final String USER_MODIFICATION_CACHE_KEY_PREFIX = "user_modification_";
+
     @Inject
     private Logger log;
 
@@ -51,6 +59,18 @@ public class UserService {
     @Inject
     private AppConfiguration appConfiguration;
 
+    @Inject
+    private CacheService cacheService;
+
+    // Full user entries by "uid:" + uid and "dn:" + dn. Entries with subset of attributes are never put here
+    private Cache<String, CachedUser> userCache;
+
+    @PostConstruct
+    public void init() {
+        this.userCache = CacheBuilder.newBuilder().maximumSize(Math.max(appConfiguration.getUserCacheMaxSize(), 1))
+                .expireAfterWrite(Math.max(appConfiguration.getUserCacheLifetime(), 0), TimeUnit.SECONDS).build();
+    }
+
     /**
      * returns User by Dn
      *
@@ -58,10 +78,37 @@ public class UserService {
      */
     @Nullable
     public User getUserByDn(String dn, String... returnAttributes) {
+        return getUserByDn(dn, true, returnAttributes);
+    }
+
+    /**
+     * Same as {@link #getUserByDn(String, String...)} but may return instance shared by user cache, so returned user
+     * must not be modified.
+     */
+    @Nullable
+    public User getUserByDnReadOnly(String dn) {
+        return getUserByDn(dn, false);
+    }
+
+    private User getUserByDn(String dn, boolean copy, String... returnAttributes) {
         if (Util.isNullOrEmpty(dn)) {
             return null;
         }
-        return ldapEntryManager.find(dn, User.class, returnAttributes);
+
+        final boolean cacheable = isUserCacheable(returnAttributes);
+        if (cacheable) {
+            User user = getCachedUser(dnCacheKey(dn), copy);
+            if (user != null) {
+                return user;
+            }
+        }
+
+        User user = ldapEntryManager.find(dn, User.class, returnAttributes);
+        if (cacheable) {
+            putCachedUser(user);
+        }
+
+        return user;
     }
 
 	public User getUserByInum(String inum, String... returnAttributes) {
@@ -85,13 +132,25 @@ public class UserService {
 			return null;
 		}
 
+		final boolean cacheable = isUserCacheable(returnAttributes);
+		if (cacheable) {
+			User user = getCachedUser(uidCacheKey(userId), true);
+			if (user != null) {
+				return user;
+			}
+		}
+
 		Filter userUidFilter = Filter.createEqualityFilter(Filter.createLowercaseFilter("uid"), StringHelper.toLowerCase(userId));
 
 		List<User> entries = ldapEntryManager.findEntries(staticConfiguration.getBaseDn().getPeople(), User.class, userUidFilter, returnAttributes);
 		log.debug("Found {} entries for user id = {}", entries.size(), userId);
 
 		if (entries.size() > 0) {
-			return entries.get(0);
+			User user = entries.get(0);
+			if (cacheable) {
+				putCachedUser(user);
+			}
+			return user;
 		} else {
 			return null;
 		}
@@ -114,7 +173,105 @@ public class UserService {
 	}
 
     public User updateUser(User user) {
-		return ldapEntryManager.merge(user);
+		try {
+			return ldapEntryManager.merge(user);
+		} finally {
+			invalidateCachedUser(user);
+		}
+	}
+
+	/**
+	 * Removes user from local cache. If distributed invalidation is enabled other nodes are notified via
+	 * cache provider.
+	 */
+	public void invalidateCachedUser(User user) {
+		if (user == null || !appConfiguration.getUserCacheEnabled()) {
+			return;
+		}
+
+		if (StringHelper.isNotEmpty(user.getDn())) {
+			userCache.invalidate(dnCacheKey(user.getDn()));
+		}
+		if (StringHelper.isNotEmpty(user.getUserId())) {
+			userCache.invalidate(uidCacheKey(user.getUserId()));
+		}
+
+		if (appConfiguration.getUserCacheDistributedInvalidation() && StringHelper.isNotEmpty(user.getDn())) {
+			try {
+				cacheService.put(Integer.toString(Math.max(appConfiguration.getUserCacheLifetime(), 1)),
+						modificationCacheKey(user.getDn()), System.currentTimeMillis());
+			} catch (Exception e) {
+				log.error("Failed to publish user modification: " + user.getDn(), e);
+			}
+		}
+	}
+
+	private boolean isUserCacheable(String... returnAttributes) {
+		return appConfiguration.getUserCacheEnabled() && ArrayHelper.isEmpty(returnAttributes);
+	}
+
+	/*
+	 * Modifications on other nodes are checked at most once per userCacheModificationCheckInterval per entry.
+	 * Cached instance is copied if caller is allowed to modify returned user.
+	 */
+	private User getCachedUser(String key, boolean copy) {
+		CachedUser cachedUser = userCache.getIfPresent(key);
+		if (cachedUser == null) {
+			return null;
+		}
+
+		if (appConfiguration.getUserCacheDistributedInvalidation()) {
+			final long now = System.currentTimeMillis();
+			if (now - cachedUser.getCheckTime() >= TimeUnit.SECONDS.toMillis(appConfiguration.getUserCacheModificationCheckInterval())) {
+				if (isModifiedAfter(cachedUser)) {
+					userCache.invalidate(dnCacheKey(cachedUser.getUser().getDn()));
+					if (StringHelper.isNotEmpty(cachedUser.getUser().getUserId())) {
+						userCache.invalidate(uidCacheKey(cachedUser.getUser().getUserId()));
+					}
+					return null;
+				}
+				cachedUser.setCheckTime(now);
+			}
+		}
+
+		if (copy) {
+			return (User) SerializationUtils.clone(cachedUser.getUser());
+		}
+		return cachedUser.getUser();
+	}
+
+	private void putCachedUser(User user) {
+		if (user == null || StringHelper.isEmpty(user.getDn())) {
+			return;
+		}
+
+		CachedUser cachedUser = new CachedUser((User) SerializationUtils.clone(user), System.currentTimeMillis());
+		userCache.put(dnCacheKey(user.getDn()), cachedUser);
+		if (StringHelper.isNotEmpty(user.getUserId())) {
+			userCache.put(uidCacheKey(user.getUserId()), cachedUser);
+		}
+	}
+
+	private boolean isModifiedAfter(CachedUser cachedUser) {
+		try {
+			Object modificationTime = cacheService.get(modificationCacheKey(cachedUser.getUser().getDn()));
+			return modificationTime instanceof Long && (Long) modificationTime >= cachedUser.getLoadTime();
+		} catch (Exception e) {
+			log.error("Failed to check user modification: " + cachedUser.getUser().getDn(), e);
+			return true;
+		}
+	}
+
+	private static String uidCacheKey(String userId) {
+		return "uid:" + StringHelper.toLowerCase(userId);
+	}
+
+	private static String dnCacheKey(String dn) {
+		return "dn:" + StringHelper.toLowerCase(dn);
+	}
+
+	private static String modificationCacheKey(String dn) {
+		return USER_MODIFICATION_CACHE_KEY_PREFIX + StringHelper.toLowerCase(dn);
 	}
 
     public User addDefaultUser(String uid) {
@@ -454,4 +611,33 @@ public class UserService {
 		return ldapEntryManager.decodeTime(baseDn, date);
 	}
 
+	private static class CachedUser {
+
+		private final User user;
+		private final long loadTime;
+		private volatile long checkTime;
+
+		CachedUser(User user, long loadTime) {
+			this.user = user;
+			this.loadTime = loadTime;
+			this.checkTime = loadTime;
+		}
+
+		User getUser() {
+			return user;
+		}
+
+		long getLoadTime() {
+			return loadTime;
+		}
+
+		long getCheckTime() {
+			return checkTime;
+		}
+
+		void setCheckTime(long checkTime) {
+			this.checkTime = checkTime;
+		}
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2014, Gluu
+ */
+
+package org.gluu.oxauth.cert.validation;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.cert.X509CRL;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class CrlIndexTest {
+
+    private static final BigInteger SMALL_SERIAL = BigInteger.valueOf(1000);
+    private static final BigInteger NEGATIVE_SERIAL = BigInteger.valueOf(-42);
+    private static final BigInteger MAX_LONG_SERIAL = BigInteger.valueOf(Long.MAX_VALUE);
+    private static final BigInteger SERIAL_64_BIT = BigInteger.ONE.shiftLeft(63);
+    private static final BigInteger SERIAL_128_BIT = new BigInteger("b7c1a5e0d3f24e6c9a81f0e2d4c6b8a1", 16);
+
+    private CRLCertificateVerifier.CrlIndex crlIndex;
+
+    @BeforeClass
+    public void createIndex() throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        Date now = new Date();
+        X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(new X500Name("CN=Test CA"), now);
+        crlBuilder.setNextUpdate(new Date(now.getTime() + 3600 * 1000L));
+        crlBuilder.addCRLEntry(SMALL_SERIAL, revocationDate(1), CRLReason.keyCompromise);
+        crlBuilder.addCRLEntry(NEGATIVE_SERIAL, revocationDate(2), CRLReason.keyCompromise);
+        crlBuilder.addCRLEntry(MAX_LONG_SERIAL, revocationDate(3), CRLReason.keyCompromise);
+        crlBuilder.addCRLEntry(SERIAL_64_BIT, revocationDate(4), CRLReason.keyCompromise);
+        crlBuilder.addCRLEntry(SERIAL_128_BIT, revocationDate(5), CRLReason.keyCompromise);
+
+        X509CRL x509crl = new JcaX509CRLConverter().setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .getCRL(crlBuilder.build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate())));
+
+        crlIndex = new CRLCertificateVerifier.CrlIndex(x509crl, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void revokedSerialsAreFound() {
+        assertEquals(crlIndex.getRevocationDate(SMALL_SERIAL), revocationDate(1));
+        assertEquals(crlIndex.getRevocationDate(NEGATIVE_SERIAL), revocationDate(2));
+        assertEquals(crlIndex.getRevocationDate(MAX_LONG_SERIAL), revocationDate(3));
+        assertEquals(crlIndex.getRevocationDate(SERIAL_64_BIT), revocationDate(4));
+        assertEquals(crlIndex.getRevocationDate(SERIAL_128_BIT), revocationDate(5));
+    }
+
+    @Test
+    public void notRevokedSerialsAreNotFound() {
+        assertNull(crlIndex.getRevocationDate(BigInteger.valueOf(999)));
+        assertNull(crlIndex.getRevocationDate(BigInteger.valueOf(42)));
+        assertNull(crlIndex.getRevocationDate(BigInteger.valueOf(Long.MIN_VALUE)));
+        assertNull(crlIndex.getRevocationDate(SERIAL_64_BIT.add(BigInteger.ONE)));
+        assertNull(crlIndex.getRevocationDate(SERIAL_128_BIT.negate()));
+        // Serial which differs from revoked one only in bits above 64 must not match
+        assertNull(crlIndex.getRevocationDate(SERIAL_128_BIT.subtract(BigInteger.ONE.shiftLeft(100))));
+        assertNull(crlIndex.getRevocationDate(SMALL_SERIAL.add(BigInteger.ONE.shiftLeft(64))));
+    }
+
+    private static Date revocationDate(int daysAgo) {
+        // CRL dates have seconds precision
+        long midnight = 1577836800000L; // 2020-01-01T00:00:00Z
+        return new Date(midnight - daysAgo * 24 * 3600 * 1000L);
+    }
+}
@@ -31,11 +31,14 @@ import org.gluu.util.StringHelper;
 import org.slf4j.Logger;
 import org.gluu.oxauth.model.common.User;
 import org.gluu.oxauth.model.config.StaticConfiguration;
+import org.gluu.oxauth.service.BranchService;
 import org.gluu.oxauth.service.UserService;
 
 @ApplicationScoped
 public class AuthenticationPersistenceService {
 
+    private static final String PENDING_CACHE_KEY_PREFIX = "fido2_auth_";
+
     @Inject
     private Logger log;
 
@@ -51,14 +54,27 @@ public class AuthenticationPersistenceService {
     @Inject
     private PersistenceEntryManager ldapEntryManager;
 
-    public List<Fido2AuthenticationEntry> findByChallenge(String challenge) {
-        String baseDn = getBaseDnForFido2AuthenticationEntries(null);
+    @Inject
+    private ChallengeCacheService challengeCacheService;
+
+    @Inject
+    private BranchService branchService;
 
-        Filter codeChallengFilter = Filter.createEqualityFilter("oxCodeChallenge", challenge);
+    public void savePending(Fido2AuthenticationData authenticationData) {
+        Date now = new GregorianCalendar(TimeZone.getTimeZone("UTC")).getTime();
 
-        List<Fido2AuthenticationEntry> fido2AuthenticationEntries = ldapEntryManager.findEntries(baseDn, Fido2AuthenticationEntry.class, codeChallengFilter);
+        authenticationData.setCreatedDate(now);
+        authenticationData.setCreatedBy(authenticationData.getUsername());
 
-        return fido2AuthenticationEntries;
+        challengeCacheService.put(PENDING_CACHE_KEY_PREFIX, authenticationData.getChallenge(), authenticationData);
+    }
+
+    public Fido2AuthenticationData consumePending(String challenge) {
+        return challengeCacheService.consume(PENDING_CACHE_KEY_PREFIX, challenge, Fido2AuthenticationData.class);
+    }
+
+    public boolean isHistoryEnabled() {
+        return appConfiguration.getFido2Configuration().isAuthenticationHistoryEnabled();
     }
 
     public void save(Fido2AuthenticationData authenticationData) {
@@ -90,19 +106,6 @@ public class AuthenticationPersistenceService {
         ldapEntryManager.persist(authenticationEntity);
     }
 
-    public void update(Fido2AuthenticationEntry authenticationEntity) {
-        Date now = new GregorianCalendar(TimeZone.getTimeZone("UTC")).getTime();
-
-        Fido2AuthenticationData authenticationData = authenticationEntity.getAuthenticationData();
-        authenticationData.setUpdatedDate(now);
-        authenticationData.setUpdatedBy(authenticationData.getUsername());
-
-        authenticationEntity.setAuthenticationStatus(authenticationData.getStatus());
-
-        ldapEntryManager.merge(authenticationEntity);
-        System.err.println("Updated: " + authenticationEntity.getDn());
-    }
-
     public void addBranch(final String baseDn) {
         SimpleBranch branch = new SimpleBranch();
         branch.setOrganizationalUnitName("fido2_auth");
@@ -112,19 +115,12 @@ public class AuthenticationPersistenceService {
     }
 
     public boolean containsBranch(final String baseDn) {
-        return ldapEntryManager.contains(baseDn, SimpleBranch.class);
+        return branchService.containsBranch(baseDn);
     }
 
     public void prepareBranch(final String userInum) {
-        String baseDn = getBaseDnForFido2AuthenticationEntries(userInum);
-        if (!ldapEntryManager.hasBranchesSupport(baseDn)) {
-        	return;
-        }
-
         // Create Fido2 base branch for authentication entries if needed
-        if (!containsBranch(baseDn)) {
-            addBranch(baseDn);
-        }
+        branchService.prepareBranch(getBaseDnForFido2AuthenticationEntries(userInum), "fido2_auth");
     }
 
     public String getDnForAuthenticationEntry(String userInum, String oxId) {
@@ -182,6 +178,7 @@ public class AuthenticationPersistenceService {
 	                for (SimpleBranch p : entries) {
 	                    try {
 	                        ldapEntryManager.remove(p);
+	                        branchService.invalidate(p.getDn());
 	                    } catch (Exception e) {
 	                        log.error("Failed to remove entry", e);
 	                    }
@@ -0,0 +1,83 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2018, Gluu
+ */
+
+package org.gluu.oxauth.fido2.persist;
+
+import java.util.concurrent.locks.Lock;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.gluu.oxauth.fido2.model.entry.Fido2Data;
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.gluu.service.CacheService;
+import org.slf4j.Logger;
+
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Keeps pending registration and authentication requests in cache by challenge until they are completed or expired
+ *
+ */
+@ApplicationScoped
+public class ChallengeCacheService {
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private AppConfiguration appConfiguration;
+
+    @Inject
+    private CacheService cacheService;
+
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+
+    public void put(String prefix, String challenge, Fido2Data data) {
+        cacheService.put(Integer.toString(getUnfinishedRequestExpiration()), getCacheKey(prefix, challenge), data);
+    }
+
+    /**
+     * Removes pending request from cache. Only one caller gets the request on this node.
+     *
+     * @return pending request or null if there is no request with this challenge or it's expired
+     */
+    public <T extends Fido2Data> T consume(String prefix, String challenge, Class<T> type) {
+        final String key = getCacheKey(prefix, challenge);
+
+        final Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            Object cached = cacheService.get(key);
+            if (cached == null) {
+                return null;
+            }
+
+            cacheService.remove(key);
+
+            if (!type.isInstance(cached)) {
+                log.error("Unexpected pending request type in cache: {}", cached.getClass());
+                return null;
+            }
+
+            return type.cast(cached);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int getUnfinishedRequestExpiration() {
+        int unfinishedRequestExpiration = appConfiguration.getFido2Configuration().getUnfinishedRequestExpiration();
+        return unfinishedRequestExpiration == 0 ? 120 : unfinishedRequestExpiration;
+    }
+
+    private String getCacheKey(String prefix, String challenge) {
+        return prefix + challenge;
+    }
+
+}
@@ -33,11 +33,14 @@ import org.gluu.util.StringHelper;
 import org.slf4j.Logger;
 import org.gluu.oxauth.model.common.User;
 import org.gluu.oxauth.model.config.StaticConfiguration;
+import org.gluu.oxauth.service.BranchService;
 import org.gluu.oxauth.service.UserService;
 
 @ApplicationScoped
 public class RegistrationPersistenceService {
 
+    private static final String PENDING_CACHE_KEY_PREFIX = "fido2_register_";
+
     @Inject
     private Logger log;
 
@@ -53,6 +56,12 @@ public class RegistrationPersistenceService {
     @Inject
     private PersistenceEntryManager ldapEntryManager;
 
+    @Inject
+    private ChallengeCacheService challengeCacheService;
+
+    @Inject
+    private BranchService branchService;
+
     public Optional<Fido2RegistrationEntry> findByPublicKeyId(String publicKeyId) {
         String baseDn = getBaseDnForFido2RegistrationEntries(null);
 
@@ -108,16 +117,19 @@ public class RegistrationPersistenceService {
         return fido2RegistrationnEntries;
     }
 
-    public List<Fido2RegistrationEntry> findAllByChallenge(String challenge) {
-        String baseDn = getBaseDnForFido2RegistrationEntries(null);
-
-        Filter codeChallengFilter = Filter.createEqualityFilter("oxCodeChallenge", challenge);
-        Filter codeChallengHashCodeFilter = Filter.createEqualityFilter("oxCodeChallengeHash", String.valueOf(getChallengeHashCode(challenge)));
-        Filter filter = Filter.createANDFilter(codeChallengFilter, codeChallengHashCodeFilter);
+    public void savePending(Fido2RegistrationData registrationData) {
+        if (!appConfiguration.getFido2Configuration().isUserAutoEnrollment()) {
+            User user = userService.getUser(registrationData.getUsername(), "inum");
+            if (user == null) {
+                throw new Fido2RPRuntimeException("Auto user enrollment was disabled. User not exists!");
+            }
+        }
 
-        List<Fido2RegistrationEntry> fido2RegistrationnEntries = ldapEntryManager.findEntries(baseDn, Fido2RegistrationEntry.class, filter);
+        challengeCacheService.put(PENDING_CACHE_KEY_PREFIX, registrationData.getChallenge(), registrationData);
+    }
 
-        return fido2RegistrationnEntries;
+    public Fido2RegistrationData consumePending(String challenge) {
+        return challengeCacheService.consume(PENDING_CACHE_KEY_PREFIX, challenge, Fido2RegistrationData.class);
     }
 
     public void save(Fido2RegistrationData registrationData) {
@@ -141,26 +153,16 @@ public class RegistrationPersistenceService {
 
         String dn = getDnForRegistrationEntry(userInum, id);
         Fido2RegistrationEntry registrationEntry = new Fido2RegistrationEntry(dn, id, now, null, userInum, registrationData, challenge);
+        registrationEntry.setPublicKeyId(registrationData.getPublicKeyId());
         registrationEntry.setRegistrationStatus(registrationData.getStatus());
         registrationEntry.setChallangeHash(String.valueOf(getChallengeHashCode(challenge)));
         
         registrationData.setCreatedDate(now);
         registrationData.setCreatedBy(userName);
-
-        ldapEntryManager.persist(registrationEntry);
-    }
-
-    public void update(Fido2RegistrationEntry registrationEntry) {
-        Date now = new GregorianCalendar(TimeZone.getTimeZone("UTC")).getTime();
-
-        Fido2RegistrationData registrationData = registrationEntry.getRegistrationData();
         registrationData.setUpdatedDate(now);
-        registrationData.setUpdatedBy(registrationData.getUsername());
-        
-        registrationEntry.setPublicKeyId(registrationData.getPublicKeyId());
-        registrationEntry.setRegistrationStatus(registrationData.getStatus());
+        registrationData.setUpdatedBy(userName);
 
-        ldapEntryManager.merge(registrationEntry);
+        ldapEntryManager.persist(registrationEntry);
     }
 
     public void addBranch(final String baseDn) {
@@ -172,19 +174,12 @@ public class RegistrationPersistenceService {
     }
 
     public boolean containsBranch(final String baseDn) {
-        return ldapEntryManager.contains(baseDn, SimpleBranch.class);
+        return branchService.containsBranch(baseDn);
     }
 
     public void prepareBranch(final String userInum) {
-        String baseDn = getBaseDnForFido2RegistrationEntries(userInum);
-        if (!ldapEntryManager.hasBranchesSupport(baseDn)) {
-        	return;
-        }
-
         // Create Fido2 base branch for registration entries if needed
-        if (!containsBranch(baseDn)) {
-            addBranch(baseDn);
-        }
+        branchService.prepareBranch(getBaseDnForFido2RegistrationEntries(userInum), "fido2_register");
     }
 
     public String getDnForRegistrationEntry(String userInum, String oxId) {
@@ -242,6 +237,7 @@ public class RegistrationPersistenceService {
 	                for (SimpleBranch p : entries) {
 	                    try {
 	                        ldapEntryManager.remove(p);
+	                        branchService.invalidate(p.getDn());
 	                    } catch (Exception e) {
 	                        log.error("Failed to remove entry", e);
 	                    }
@@ -26,7 +26,6 @@ import javax.inject.Inject;
 import org.apache.commons.lang.StringUtils;
 import org.gluu.oxauth.fido2.exception.Fido2RPRuntimeException;
 import org.gluu.oxauth.fido2.model.entry.Fido2AuthenticationData;
-import org.gluu.oxauth.fido2.model.entry.Fido2AuthenticationEntry;
 import org.gluu.oxauth.fido2.model.entry.Fido2AuthenticationStatus;
 import org.gluu.oxauth.fido2.model.entry.Fido2RegistrationData;
 import org.gluu.oxauth.fido2.model.entry.Fido2RegistrationEntry;
@@ -122,10 +121,10 @@ public class AssertionService {
         String clientDataChallenge = clientDataJSONNode.get("challenge").asText();
         String clientDataOrigin = clientDataJSONNode.get("origin").asText();
 
-        Fido2AuthenticationEntry authenticationEntity = authenticationsRepository.findByChallenge(clientDataChallenge).parallelStream().findFirst()
-                .orElseThrow(() -> new Fido2RPRuntimeException(String.format("Can't find matching request by challenge '%s'", clientDataChallenge)));
-        
-        Fido2AuthenticationData authenticationData = authenticationEntity.getAuthenticationData();
+        Fido2AuthenticationData authenticationData = authenticationsRepository.consumePending(clientDataChallenge);
+        if (authenticationData == null) {
+            throw new Fido2RPRuntimeException(String.format("Can't find matching request by challenge '%s'", clientDataChallenge));
+        }
 
         // challengeVerifier.verifyChallenge(authenticationEntity.getChallenge(),
         // challenge, clientDataChallenge);
@@ -140,7 +139,9 @@ public class AssertionService {
         authenticationData.setW3cAuthenticatorAssertionResponse(response.toString());
         authenticationData.setStatus(Fido2AuthenticationStatus.authenticated);
 
-        authenticationsRepository.update(authenticationEntity);
+        if (authenticationsRepository.isHistoryEnabled()) {
+            authenticationsRepository.save(authenticationData);
+        }
 
         authenticateResponseNode.put("status", "ok");
         authenticateResponseNode.put("errorMessage", "");
@@ -225,7 +226,7 @@ public class AssertionService {
         authenticationData.setUserVerificationOption(userVerification);
         authenticationData.setStatus(Fido2AuthenticationStatus.pending);
 
-        authenticationsRepository.save(authenticationData);
+        authenticationsRepository.savePending(authenticationData);
 
         assertionOptionsResponseNode.put("status", "ok");
         assertionOptionsResponseNode.put("errorMessage", "");
@@ -123,11 +123,10 @@ public class AttestationService {
         log.info("Challenge {}", clientDataChallenge);
         // String clientDataOrigin = clientDataJSONNode.get("origin").asText();
 
-        List<Fido2RegistrationEntry> registrationEntries = registrationsRepository.findAllByChallenge(clientDataChallenge);
-        Fido2RegistrationEntry credentialEntryFound = registrationEntries.parallelStream().findAny()
-                .orElseThrow(() -> new Fido2RPRuntimeException(String.format("Can't find request with matching challenge '%s' and domain", clientDataChallenge)));
-        
-        Fido2RegistrationData credentialFound = credentialEntryFound.getRegistrationData();
+        Fido2RegistrationData credentialFound = registrationsRepository.consumePending(clientDataChallenge);
+        if (credentialFound == null) {
+            throw new Fido2RPRuntimeException(String.format("Can't find request with matching challenge '%s' and domain", clientDataChallenge));
+        }
 
         domainVerifier.verifyDomain(credentialFound.getDomain(), clientDataJSONNode.get("origin").asText());
         CredAndCounterData attestationData = authenticatorAttestationVerifier.verifyAuthenticatorAttestationResponse(response, credentialFound);
@@ -144,7 +143,7 @@ public class AttestationService {
         credentialFound.setType("public-key");
         credentialFound.setStatus(Fido2RegistrationStatus.registered);
 
-        registrationsRepository.update(credentialEntryFound);
+        registrationsRepository.save(credentialFound);
 
         ((ObjectNode) params).put("errorMessage", "");
         ((ObjectNode) params).put("status", "ok");
@@ -238,7 +237,7 @@ public class AttestationService {
         entity.setAttestationConveyancePreferenceType(attestationConveyancePreference);
         entity.setStatus(Fido2RegistrationStatus.pending);
 
-        registrationsRepository.save(entity);
+        registrationsRepository.savePending(entity);
 
         return credentialCreationOptionsNode;
     }
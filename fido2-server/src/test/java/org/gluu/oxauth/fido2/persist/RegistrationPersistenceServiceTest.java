@@ -0,0 +1,225 @@
+/*
+ * oxAuth is available under the MIT License (2008). See http://opensource.org/licenses/MIT for full text.
+ *
+ * Copyright (c) 2018, Gluu
+ */
+
+package org.gluu.oxauth.fido2.persist;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.gluu.oxauth.fido2.model.entry.Fido2RegistrationData;
+import org.gluu.oxauth.fido2.model.entry.Fido2RegistrationEntry;
+import org.gluu.oxauth.fido2.model.entry.Fido2RegistrationStatus;
+import org.gluu.oxauth.model.common.User;
+import org.gluu.oxauth.model.config.BaseDnConfiguration;
+import org.gluu.oxauth.model.config.StaticConfiguration;
+import org.gluu.oxauth.model.configuration.AppConfiguration;
+import org.gluu.oxauth.model.configuration.Fido2Configuration;
+import org.gluu.oxauth.service.BranchService;
+import org.gluu.oxauth.service.UserService;
+import org.gluu.persist.PersistenceEntryManager;
+import org.gluu.service.CacheService;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Runs registration through the same persistence calls attestation and assertion use: pending request is put
+ * in cache on options, consumed and saved on attestation result, and found by public key id on assertion.
+ */
+public class RegistrationPersistenceServiceTest {
+
+    private static final String USER_NAME = "test_user";
+    private static final String USER_INUM = "A8F2-DE1E-D7FB";
+
+    private RegistrationPersistenceService registrationPersistenceService;
+    private List<Fido2RegistrationEntry> persistedEntries;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        persistedEntries = new ArrayList<Fido2RegistrationEntry>();
+
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setFido2Configuration(new Fido2Configuration());
+
+        BaseDnConfiguration baseDn = new BaseDnConfiguration();
+        baseDn.setPeople("ou=people,o=gluu");
+        StaticConfiguration staticConfiguration = new StaticConfiguration();
+        staticConfiguration.setBaseDn(baseDn);
+
+        PersistenceEntryManager entryManager = createEntryManager(persistedEntries);
+
+        ChallengeCacheService challengeCacheService = new ChallengeCacheService();
+        inject(challengeCacheService, "log", LoggerFactory.getLogger(ChallengeCacheService.class));
+        inject(challengeCacheService, "appConfiguration", appConfiguration);
+        inject(challengeCacheService, "cacheService", new InMemoryCacheService());
+
+        BranchService branchService = new BranchService();
+        inject(branchService, "log", LoggerFactory.getLogger(BranchService.class));
+        inject(branchService, "appConfiguration", appConfiguration);
+        inject(branchService, "ldapEntryManager", entryManager);
+        branchService.init();
+
+        registrationPersistenceService = new RegistrationPersistenceService();
+        inject(registrationPersistenceService, "log", LoggerFactory.getLogger(RegistrationPersistenceService.class));
+        inject(registrationPersistenceService, "staticConfiguration", staticConfiguration);
+        inject(registrationPersistenceService, "appConfiguration", appConfiguration);
+        inject(registrationPersistenceService, "userService", new TestUserService());
+        inject(registrationPersistenceService, "ldapEntryManager", entryManager);
+        inject(registrationPersistenceService, "challengeCacheService", challengeCacheService);
+        inject(registrationPersistenceService, "branchService", branchService);
+    }
+
+    @Test
+    public void registeredCredentialIsFoundByPublicKeyId() {
+        // Attestation options
+        Fido2RegistrationData pending = new Fido2RegistrationData();
+        pending.setUsername(USER_NAME);
+        pending.setChallenge("attestation_challenge");
+        pending.setStatus(Fido2RegistrationStatus.pending);
+        registrationPersistenceService.savePending(pending);
+
+        // Attestation result
+        Fido2RegistrationData registrationData = registrationPersistenceService.consumePending("attestation_challenge");
+        assertNotNull(registrationData);
+        assertNull(registrationPersistenceService.consumePending("attestation_challenge"), "Challenge can be used only once");
+
+        registrationData.setPublicKeyId("public_key_id");
+        registrationData.setStatus(Fido2RegistrationStatus.registered);
+        registrationPersistenceService.save(registrationData);
+
+        assertEquals(persistedEntries.size(), 1);
+        Fido2RegistrationEntry persisted = persistedEntries.get(0);
+        assertEquals(persisted.getPublicKeyId(), "public_key_id");
+        assertEquals(persisted.getRegistrationStatus(), Fido2RegistrationStatus.registered);
+        assertNotNull(persisted.getRegistrationData().getCreatedDate());
+        assertNotNull(persisted.getRegistrationData().getUpdatedDate());
+        assertEquals(persisted.getRegistrationData().getUpdatedBy(), USER_NAME);
+
+        // Assertion options
+        List<Fido2RegistrationEntry> registered = registrationPersistenceService.findAllRegisteredByUsername(USER_NAME);
+        assertEquals(registered.size(), 1);
+
+        // Assertion result
+        Optional<Fido2RegistrationEntry> found = registrationPersistenceService.findByPublicKeyId("public_key_id");
+        assertTrue(found.isPresent());
+        assertEquals(found.get().getRegistrationData().getUsername(), USER_NAME);
+
+        assertTrue(!registrationPersistenceService.findByPublicKeyId("unknown_key_id").isPresent());
+    }
+
+    @Test
+    public void unknownChallengeIsNotConsumed() {
+        assertNull(registrationPersistenceService.consumePending("unknown_challenge"));
+    }
+
+    /**
+     * Keeps persisted registration entries in list. Filters are matched by their string form, which is enough
+     * for equality filters used by RegistrationPersistenceService.
+     */
+    private static PersistenceEntryManager createEntryManager(final List<Fido2RegistrationEntry> entries) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("persist".equals(method.getName()) && args[0] instanceof Fido2RegistrationEntry) {
+                    entries.add((Fido2RegistrationEntry) args[0]);
+                    return null;
+                }
+                if ("findEntries".equals(method.getName()) && args.length == 3) {
+                    String filter = String.valueOf(args[2]);
+                    List<Fido2RegistrationEntry> result = new ArrayList<Fido2RegistrationEntry>();
+                    for (Fido2RegistrationEntry entry : entries) {
+                        if (matches(entry, filter)) {
+                            result.add(entry);
+                        }
+                    }
+                    return result;
+                }
+                if (method.getReturnType() == boolean.class) {
+                    return false;
+                }
+                return null;
+            }
+        };
+
+        return (PersistenceEntryManager) Proxy.newProxyInstance(PersistenceEntryManager.class.getClassLoader(),
+                new Class<?>[] { PersistenceEntryManager.class }, handler);
+    }
+
+    private static boolean matches(Fido2RegistrationEntry entry, String filter) {
+        if (filter.contains("oxPublicKeyId") && (entry.getPublicKeyId() == null || !filter.contains(entry.getPublicKeyId()))) {
+            return false;
+        }
+        if (filter.contains("personInum") && !filter.contains(entry.getUserInum())) {
+            return false;
+        }
+        if (filter.contains("oxStatus") && (entry.getRegistrationStatus() == null || !filter.contains(entry.getRegistrationStatus().getValue()))) {
+            return false;
+        }
+        return true;
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws Exception {
+        Class<?> clazz = target.getClass();
+        while (clazz != null) {
+            try {
+                Field field = clazz.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                clazz = clazz.getSuperclass();
+            }
+        }
+        throw new NoSuchFieldException(fieldName);
+    }
+
+    private static class InMemoryCacheService extends CacheService {
+
+        private final Map<String, Object> entries = new HashMap<String, Object>();
+
+        @Override
+        public Object get(String key) {
+            return entries.get(key);
+        }
+
+        @Override
+        public void put(String expirationInSeconds, String key, Object object) {
+            entries.put(key, object);
+        }
+
+        @Override
+        public void remove(String key) {
+            entries.remove(key);
+        }
+    }
+
+    private static class TestUserService extends UserService {
+
+        @Override
+        public User getUser(String userId, String... returnAttributes) {
+            if (!USER_NAME.equals(userId)) {
+                return null;
+            }
+
+            User user = new User();
+            user.setUserId(USER_NAME);
+            user.setAttribute("inum", USER_INUM);
+            return user;
+        }
+    }
+}
@@ -42,6 +42,9 @@ public class ClientAttributes implements Serializable {
     @JsonProperty("backchannelLogoutSessionRequired")
     private Boolean backchannelLogoutSessionRequired;
 
+    @JsonProperty("introspectionResponseCacheDisabled")
+    private Boolean introspectionResponseCacheDisabled = false;
+
 
     public String getTlsClientAuthSubjectDn() {
         return tlsClientAuthSubjectDn;
@@ -118,6 +121,15 @@ public class ClientAttributes implements Serializable {
         this.backchannelLogoutSessionRequired = backchannelLogoutSessionRequired;
     }
 
+    public Boolean getIntrospectionResponseCacheDisabled() {
+        if (introspectionResponseCacheDisabled == null) introspectionResponseCacheDisabled = false;
+        return introspectionResponseCacheDisabled;
+    }
+
+    public void setIntrospectionResponseCacheDisabled(Boolean introspectionResponseCacheDisabled) {
+        this.introspectionResponseCacheDisabled = introspectionResponseCacheDisabled;
+    }
+
     @Override
     public String toString() {
         return "ClientAttributes{" +
@@ -129,6 +141,7 @@ public class ClientAttributes implements Serializable {
                 ", spontaneousScopeScriptDns=" + spontaneousScopeScriptDns +
                 ", backchannelLogoutUri=" + backchannelLogoutUri +
                 ", backchannelLogoutSessionRequired=" + backchannelLogoutSessionRequired +
+                ", introspectionResponseCacheDisabled=" + introspectionResponseCacheDisabled +
                 '}';
     }
 }